@@ -0,0 +1,664 @@
+package Acceleration;
+
+import Vectors.Vec3;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounding volume hierarchy over an indexed set of primitives.
+ * The tree is built with a binned surface area heuristic and stored as flat
+ * primitive arrays: six doubles of bounds per node plus a start/count pair.
+ * Inner nodes store the index of their left child in {@code nodeStart} with the
+ * right child directly after it; leaves store a range into {@code primitiveIndices}.
+ * Children are always allocated after their parent, which keeps bottom-up passes
+ * a simple reverse loop over the node array.
+ * Leaves are tested either one primitive at a time through a {@link PrimitiveIntersector},
+ * or as whole ranges through a {@link LeafIntersector} when the primitive storage has been
+ * reordered to {@link #getPrimitiveOrder()}.
+ */
+public class BVH {
+    private static final int BIN_COUNT = 16;
+    private static final int MAX_LEAF_SIZE = 4;
+    private static final int PARALLEL_BUILD_THRESHOLD = 4096;
+    private static final double TRAVERSAL_COST = 1.0;
+
+    private final PrimitiveIntersector intersector;
+    private final LeafIntersector leafIntersector;
+    private final int leafWidth;
+    private final int maxLeafSize;
+    private final int primitiveCount;
+    private final int[] primitiveIndices;
+    private final double[] nodeBounds;
+    private final int[] nodeStart;
+    private final int[] nodeCount;
+    private int nodesUsed;
+
+    private BVH(int primitiveCount, PrimitiveIntersector intersector, LeafIntersector leafIntersector, int leafWidth) {
+        this.intersector = intersector;
+        this.leafIntersector = leafIntersector;
+        this.leafWidth = leafWidth;
+        this.maxLeafSize = MAX_LEAF_SIZE * leafWidth;
+        this.primitiveCount = primitiveCount;
+        this.primitiveIndices = new int[primitiveCount];
+        int maxNodes = Math.max(1, 2 * primitiveCount - 1);
+        this.nodeBounds = new double[maxNodes * 6];
+        this.nodeStart = new int[maxNodes];
+        this.nodeCount = new int[maxNodes];
+    }
+
+    private BVH(LeafIntersector leafIntersector, int leafWidth, int primitiveCount, double[] nodeBounds, int[] nodeStart, int[] nodeCount) {
+        this(leafIntersector, leafWidth, primitiveCount, nodeBounds, nodeStart, nodeCount, nodeStart.length);
+    }
+
+    private BVH(LeafIntersector leafIntersector, int leafWidth, int primitiveCount, double[] nodeBounds, int[] nodeStart, int[] nodeCount, int nodesUsed) {
+        this.intersector = null;
+        this.leafIntersector = leafIntersector;
+        this.leafWidth = leafWidth;
+        this.maxLeafSize = MAX_LEAF_SIZE * leafWidth;
+        this.primitiveCount = primitiveCount;
+        this.primitiveIndices = new int[primitiveCount];
+        for (int i = 0; i < primitiveCount; i++) {
+            primitiveIndices[i] = i;
+        }
+        this.nodeBounds = nodeBounds;
+        this.nodeStart = nodeStart;
+        this.nodeCount = nodeCount;
+        this.nodesUsed = nodesUsed;
+    }
+
+    /**
+     * Builds a hierarchy on the common fork-join pool.
+     * @param primitiveBounds Six doubles per primitive: minX, minY, minZ, maxX, maxY, maxZ.
+     * @param intersector The exact intersection test for a single primitive.
+     * @return The built hierarchy.
+     */
+    public static BVH build(double[] primitiveBounds, PrimitiveIntersector intersector) {
+        return build(primitiveBounds, intersector, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds a hierarchy, constructing large subtrees in parallel on the given pool.
+     * @param primitiveBounds Six doubles per primitive: minX, minY, minZ, maxX, maxY, maxZ.
+     * @param intersector The exact intersection test for a single primitive.
+     * @param pool The pool used for parallel subtree construction.
+     * @return The built hierarchy.
+     */
+    public static BVH build(double[] primitiveBounds, PrimitiveIntersector intersector, ForkJoinPool pool) {
+        return build(primitiveBounds, intersector, null, 1, pool);
+    }
+
+    /**
+     * Builds a hierarchy whose leaves are tested as contiguous ranges. The caller must store its
+     * primitives in {@link #getPrimitiveOrder()} before the first query.
+     * @param primitiveBounds Six doubles per primitive: minX, minY, minZ, maxX, maxY, maxZ.
+     * @param leafIntersector The intersection test for a range of primitives in hierarchy order.
+     * @param leafWidth How many primitives the leaf intersector tests at the cost of one, e.g. its
+     *                  SIMD lane count. Leaves grow accordingly and the SAH prices them in batches.
+     * @return The built hierarchy.
+     */
+    public static BVH build(double[] primitiveBounds, LeafIntersector leafIntersector, int leafWidth) {
+        if (leafWidth < 1) {
+            throw new IllegalArgumentException("Leaf width must be at least 1.");
+        }
+        return build(primitiveBounds, null, leafIntersector, leafWidth, ForkJoinPool.commonPool());
+    }
+
+    private static BVH build(double[] primitiveBounds, PrimitiveIntersector intersector, LeafIntersector leafIntersector, int leafWidth, ForkJoinPool pool) {
+        if (primitiveBounds.length % 6 != 0) {
+            throw new IllegalArgumentException("Primitive bounds must contain six values per primitive.");
+        }
+        int count = primitiveBounds.length / 6;
+        BVH bvh = new BVH(count, intersector, leafIntersector, leafWidth);
+        if (count == 0) {
+            bvh.setEmptyBounds(0);
+            bvh.nodesUsed = 1;
+            return bvh;
+        }
+
+        double[] centroids = new double[count * 3];
+        for (int i = 0; i < count; i++) {
+            bvh.primitiveIndices[i] = i;
+            for (int axis = 0; axis < 3; axis++) {
+                centroids[i * 3 + axis] = 0.5 * (primitiveBounds[i * 6 + axis] + primitiveBounds[i * 6 + 3 + axis]);
+            }
+        }
+
+        AtomicInteger nodeCounter = new AtomicInteger(1);
+        BuildTask root = bvh.new BuildTask(primitiveBounds, centroids, nodeCounter, 0, 0, count);
+        if (count >= PARALLEL_BUILD_THRESHOLD) {
+            pool.invoke(root);
+        } else {
+            root.compute();
+        }
+        bvh.nodesUsed = nodeCounter.get();
+        return bvh;
+    }
+
+    /**
+     * Recreates a hierarchy from node arrays previously taken from {@link #getNodeBounds()},
+     * {@link #getNodeStarts()} and {@link #getNodePrimitiveCounts()} of a leaf-range hierarchy.
+     * The arrays are used without copying and the primitives must already be stored in hierarchy order.
+     * @param nodeBounds Six doubles per node.
+     * @param nodeStart The left child of inner nodes, the first primitive of leaves.
+     * @param nodeCount Zero for inner nodes, the primitive count of leaves.
+     * @param primitiveCount The number of primitives the leaves cover.
+     * @param leafIntersector The intersection test for a range of primitives in hierarchy order.
+     * @param leafWidth The leaf width the hierarchy was built with.
+     * @return The restored hierarchy.
+     */
+    public static BVH restore(double[] nodeBounds, int[] nodeStart, int[] nodeCount, int primitiveCount, LeafIntersector leafIntersector, int leafWidth) {
+        int nodes = nodeStart.length;
+        if (nodes < 1 || nodeCount.length != nodes || nodeBounds.length != nodes * 6) {
+            throw new IllegalArgumentException("Node arrays must describe the same, non-zero number of nodes.");
+        }
+        if (leafWidth < 1) {
+            throw new IllegalArgumentException("Leaf width must be at least 1.");
+        }
+        for (int node = 0; node < nodes; node++) {
+            boolean valid = nodeCount[node] > 0
+                    ? nodeStart[node] >= 0 && nodeStart[node] + (long) nodeCount[node] <= primitiveCount
+                    : nodeCount[node] == 0 && (primitiveCount == 0 || (nodeStart[node] > node && nodeStart[node] + 1 < nodes));
+            if (!valid) {
+                throw new IllegalArgumentException("Node " + node + " references data outside the hierarchy.");
+            }
+        }
+        return new BVH(leafIntersector, leafWidth, primitiveCount, nodeBounds, nodeStart, nodeCount);
+    }
+
+    /**
+     * Returns a hierarchy sharing this one's nodes whose leaves are tested by another leaf intersector,
+     * e.g. an occlusion test next to a closest-hit test over the same storage.
+     * @param other The intersection test for a range of primitives in hierarchy order.
+     * @return The new view of the hierarchy.
+     * @throws IllegalStateException if this hierarchy tests single primitives instead of leaves.
+     */
+    public BVH withLeafIntersector(LeafIntersector other) {
+        if (leafIntersector == null) {
+            throw new IllegalStateException("Only hierarchies built with a leaf intersector can share their nodes.");
+        }
+        return new BVH(other, leafWidth, primitiveCount, nodeBounds, nodeStart, nodeCount, nodesUsed);
+    }
+
+    public int getPrimitiveCount() {
+        return primitiveCount;
+    }
+
+    /**
+     * @return The bounds of all primitives: minX, minY, minZ, maxX, maxY, maxZ.
+     */
+    public double[] getBounds() {
+        return Arrays.copyOf(nodeBounds, 6);
+    }
+
+    public int getLeafWidth() {
+        return leafWidth;
+    }
+
+    /**
+     * @return A copy of the bounds of every used node, six doubles per node.
+     */
+    public double[] getNodeBounds() {
+        return Arrays.copyOf(nodeBounds, nodesUsed * 6);
+    }
+
+    /**
+     * @return A copy of the per-node start values: the left child of inner nodes, the first primitive of leaves.
+     */
+    public int[] getNodeStarts() {
+        return Arrays.copyOf(nodeStart, nodesUsed);
+    }
+
+    /**
+     * @return A copy of the per-node primitive counts, zero for inner nodes.
+     */
+    public int[] getNodePrimitiveCounts() {
+        return Arrays.copyOf(nodeCount, nodesUsed);
+    }
+
+    public int getNodeCount() {
+        return nodesUsed;
+    }
+
+    /**
+     * Updates the node bounds to primitives that have moved, keeping the tree structure. This costs
+     * time linear in the node count, far less than a rebuild, but the tree is only as good as the
+     * original split: as primitives drift apart the boxes grow and overlap, which
+     * {@link #getSurfaceAreaCost()} measures. Must not run concurrently with queries.
+     * @param primitiveBounds Six doubles per primitive: minX, minY, minZ, maxX, maxY, maxZ. With a
+     *                        leaf intersector, indexed by position in {@link #getPrimitiveOrder()},
+     *                        otherwise by the primitive indices the hierarchy was built with.
+     */
+    public void refit(double[] primitiveBounds) {
+        if (primitiveBounds.length != primitiveCount * 6) {
+            throw new IllegalArgumentException("Expected bounds for " + primitiveCount + " primitives.");
+        }
+        if (primitiveCount == 0) {
+            return;
+        }
+        for (int node = nodesUsed - 1; node >= 0; node--) {
+            int base = node * 6;
+            int count = nodeCount[node];
+            if (count > 0) {
+                setEmptyBounds(node);
+                int start = nodeStart[node];
+                for (int i = start; i < start + count; i++) {
+                    int offset = (leafIntersector != null ? i : primitiveIndices[i]) * 6;
+                    for (int axis = 0; axis < 3; axis++) {
+                        nodeBounds[base + axis] = Math.min(nodeBounds[base + axis], primitiveBounds[offset + axis]);
+                        nodeBounds[base + 3 + axis] = Math.max(nodeBounds[base + 3 + axis], primitiveBounds[offset + 3 + axis]);
+                    }
+                }
+            } else {
+                // Children follow their parent, so the reverse loop has already refitted them
+                int left = nodeStart[node] * 6;
+                int right = left + 6;
+                for (int axis = 0; axis < 3; axis++) {
+                    nodeBounds[base + axis] = Math.min(nodeBounds[left + axis], nodeBounds[right + axis]);
+                    nodeBounds[base + 3 + axis] = Math.max(nodeBounds[left + 3 + axis], nodeBounds[right + 3 + axis]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Estimates how expensive the hierarchy is to traverse: the summed surface area of all nodes
+     * over that of the root, which is proportional to the number of nodes a random ray entering
+     * the root visits. Comparing the value after {@link #refit(double[])} with the value after the
+     * build tells when a rebuild pays off.
+     * @return The relative surface area, at least 1 for a non-empty hierarchy.
+     */
+    public double getSurfaceAreaCost() {
+        double rootArea = surfaceArea(nodeBounds[3] - nodeBounds[0], nodeBounds[4] - nodeBounds[1], nodeBounds[5] - nodeBounds[2]);
+        if (!(rootArea > 0)) {
+            return primitiveCount == 0 ? 0 : 1;
+        }
+        double total = 0;
+        for (int node = 0; node < nodesUsed; node++) {
+            int base = node * 6;
+            total += surfaceArea(nodeBounds[base + 3] - nodeBounds[base], nodeBounds[base + 4] - nodeBounds[base + 1], nodeBounds[base + 5] - nodeBounds[base + 2]);
+        }
+        return total / rootArea;
+    }
+
+    /**
+     * Returns the order in which leaves reference primitives: position {@code i} of the
+     * hierarchy holds the primitive originally passed at index {@code getPrimitiveOrder()[i]}.
+     * @return A copy of the primitive order.
+     */
+    public int[] getPrimitiveOrder() {
+        return primitiveIndices.clone();
+    }
+
+    /**
+     * Finds the closest primitive hit by a ray. Children are visited front to back and
+     * subtrees whose boxes start beyond the current closest hit are skipped.
+     * @param origin The ray origin.
+     * @param direction The ray direction.
+     * @param hit Receives the closest hit; its current {@code t} acts as the maximum distance.
+     *            With a leaf intersector, {@code hit.primitive} is a position in {@link #getPrimitiveOrder()}.
+     * @return True if a primitive closer than the initial {@code hit.t} was found.
+     */
+    public boolean intersect(Vec3 origin, Vec3 direction, Hit hit) {
+        if (primitiveCount == 0) {
+            return false;
+        }
+        double invX = 1.0 / direction.x;
+        double invY = 1.0 / direction.y;
+        double invZ = 1.0 / direction.z;
+        boolean found = false;
+
+        if (intersectBox(0, origin, invX, invY, invZ, hit.t) == Double.MAX_VALUE) {
+            hit.nodesVisited++;
+            return false;
+        }
+        int[] stack = hit.stack;
+        double[] stackDistances = hit.stackDistances;
+        int stackSize = 0;
+        int node = 0;
+        int visited = 0;
+        while (true) {
+            visited++;
+            int count = nodeCount[node];
+            if (count > 0) {
+                int start = nodeStart[node];
+                hit.primitiveTests += count;
+                if (leafIntersector != null) {
+                    found |= leafIntersector.intersectLeaf(start, count, origin, direction, hit);
+                } else {
+                    for (int i = start; i < start + count; i++) {
+                        int primitive = primitiveIndices[i];
+                        double t = intersector.intersect(primitive, origin, direction);
+                        if (t > 0 && t < hit.t) {
+                            hit.t = t;
+                            hit.primitive = primitive;
+                            found = true;
+                        }
+                    }
+                }
+            } else {
+                int left = nodeStart[node];
+                int right = left + 1;
+                double leftDistance = intersectBox(left, origin, invX, invY, invZ, hit.t);
+                double rightDistance = intersectBox(right, origin, invX, invY, invZ, hit.t);
+                if (leftDistance > rightDistance) {
+                    int swapNode = left;
+                    left = right;
+                    right = swapNode;
+                    double swapDistance = leftDistance;
+                    leftDistance = rightDistance;
+                    rightDistance = swapDistance;
+                }
+                if (leftDistance != Double.MAX_VALUE) {
+                    if (rightDistance != Double.MAX_VALUE) {
+                        if (stackSize == stack.length) {
+                            stack = hit.stack = Arrays.copyOf(stack, stack.length * 2);
+                            stackDistances = hit.stackDistances = Arrays.copyOf(stackDistances, stack.length);
+                        }
+                        stackDistances[stackSize] = rightDistance;
+                        stack[stackSize++] = right;
+                    }
+                    node = left;
+                    continue;
+                }
+            }
+            // Pop the next subtree that can still contain a closer hit
+            do {
+                if (stackSize == 0) {
+                    hit.nodesVisited += visited;
+                    return found;
+                }
+                node = stack[--stackSize];
+            } while (stackDistances[stackSize] >= hit.t);
+        }
+    }
+
+    /**
+     * Checks whether any primitive blocks a ray segment. Unlike {@link #intersect(Vec3, Vec3, Hit)}
+     * this does not look for the closest hit and returns as soon as one occluder is found.
+     * @param origin The segment start.
+     * @param direction The ray direction.
+     * @param maxDistance Only hits with a ray parameter below this value count.
+     * @param hit Scratch state; on success {@code hit.primitive} identifies the occluder.
+     * @return True if the segment is blocked.
+     */
+    public boolean occluded(Vec3 origin, Vec3 direction, double maxDistance, Hit hit) {
+        hit.t = maxDistance;
+        hit.primitive = -1;
+        if (primitiveCount == 0) {
+            return false;
+        }
+        double invX = 1.0 / direction.x;
+        double invY = 1.0 / direction.y;
+        double invZ = 1.0 / direction.z;
+        int[] stack = hit.stack;
+        int stackSize = 0;
+        stack[stackSize++] = 0;
+        int visited = 0;
+        while (stackSize > 0) {
+            int node = stack[--stackSize];
+            visited++;
+            if (intersectBox(node, origin, invX, invY, invZ, maxDistance) == Double.MAX_VALUE) {
+                continue;
+            }
+            int count = nodeCount[node];
+            if (count > 0) {
+                int start = nodeStart[node];
+                if (leafIntersector != null) {
+                    hit.primitiveTests += count;
+                    if (leafIntersector.intersectLeaf(start, count, origin, direction, hit)) {
+                        hit.nodesVisited += visited;
+                        return true;
+                    }
+                } else {
+                    for (int i = start; i < start + count; i++) {
+                        hit.primitiveTests++;
+                        double t = intersector.intersect(primitiveIndices[i], origin, direction);
+                        if (t > 0 && t < maxDistance) {
+                            hit.t = t;
+                            hit.primitive = primitiveIndices[i];
+                            hit.nodesVisited += visited;
+                            return true;
+                        }
+                    }
+                }
+            } else {
+                if (stackSize + 2 > stack.length) {
+                    stack = hit.stack = Arrays.copyOf(stack, stack.length * 2);
+                    hit.stackDistances = Arrays.copyOf(hit.stackDistances, stack.length);
+                }
+                stack[stackSize++] = nodeStart[node] + 1;
+                stack[stackSize++] = nodeStart[node];
+            }
+        }
+        hit.nodesVisited += visited;
+        return false;
+    }
+
+    /**
+     * Slab test against a node's bounds.
+     * @return The entry distance, clamped to zero, or Double.MAX_VALUE if the box is missed
+     *         or starts beyond {@code maxDistance}.
+     */
+    private double intersectBox(int node, Vec3 origin, double invX, double invY, double invZ, double maxDistance) {
+        int base = node * 6;
+        double tx1 = (nodeBounds[base] - origin.x) * invX;
+        double tx2 = (nodeBounds[base + 3] - origin.x) * invX;
+        double tMin = Math.min(tx1, tx2);
+        double tMax = Math.max(tx1, tx2);
+        double ty1 = (nodeBounds[base + 1] - origin.y) * invY;
+        double ty2 = (nodeBounds[base + 4] - origin.y) * invY;
+        tMin = Math.max(tMin, Math.min(ty1, ty2));
+        tMax = Math.min(tMax, Math.max(ty1, ty2));
+        double tz1 = (nodeBounds[base + 2] - origin.z) * invZ;
+        double tz2 = (nodeBounds[base + 5] - origin.z) * invZ;
+        tMin = Math.max(tMin, Math.min(tz1, tz2));
+        tMax = Math.min(tMax, Math.max(tz1, tz2));
+        if (tMax >= Math.max(tMin, 0) && tMin < maxDistance) {
+            return Math.max(tMin, 0);
+        }
+        return Double.MAX_VALUE;
+    }
+
+    private void setEmptyBounds(int node) {
+        int base = node * 6;
+        for (int axis = 0; axis < 3; axis++) {
+            nodeBounds[base + axis] = Double.POSITIVE_INFINITY;
+            nodeBounds[base + 3 + axis] = Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    private static double surfaceArea(double dx, double dy, double dz) {
+        if (dx < 0 || dy < 0 || dz < 0) {
+            return 0;
+        }
+        return 2 * (dx * dy + dy * dz + dz * dx);
+    }
+
+    /**
+     * Builds the subtree rooted at one node over a range of {@code primitiveIndices}.
+     * Ranges above the parallel threshold fork their two children.
+     */
+    @SuppressWarnings("serial")
+    private final class BuildTask extends RecursiveAction {
+        private final double[] primitiveBounds;
+        private final double[] centroids;
+        private final AtomicInteger nodeCounter;
+        private final int node;
+        private final int start;
+        private final int end;
+
+        BuildTask(double[] primitiveBounds, double[] centroids, AtomicInteger nodeCounter, int node, int start, int end) {
+            this.primitiveBounds = primitiveBounds;
+            this.centroids = centroids;
+            this.nodeCounter = nodeCounter;
+            this.node = node;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            int count = end - start;
+            int base = node * 6;
+            setEmptyBounds(node);
+            double[] centroidBounds = {
+                    Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                    Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY
+            };
+            for (int i = start; i < end; i++) {
+                int primitive = primitiveIndices[i];
+                for (int axis = 0; axis < 3; axis++) {
+                    nodeBounds[base + axis] = Math.min(nodeBounds[base + axis], primitiveBounds[primitive * 6 + axis]);
+                    nodeBounds[base + 3 + axis] = Math.max(nodeBounds[base + 3 + axis], primitiveBounds[primitive * 6 + 3 + axis]);
+                    double centroid = centroids[primitive * 3 + axis];
+                    centroidBounds[axis] = Math.min(centroidBounds[axis], centroid);
+                    centroidBounds[3 + axis] = Math.max(centroidBounds[3 + axis], centroid);
+                }
+            }
+
+            if (count == 1) {
+                makeLeaf();
+                return;
+            }
+
+            int axis = 0;
+            double extent = centroidBounds[3] - centroidBounds[0];
+            for (int candidate = 1; candidate < 3; candidate++) {
+                double candidateExtent = centroidBounds[3 + candidate] - centroidBounds[candidate];
+                if (candidateExtent > extent) {
+                    extent = candidateExtent;
+                    axis = candidate;
+                }
+            }
+
+            int middle;
+            if (extent <= 0) {
+                // All centroids coincide, so no plane separates them
+                if (count <= maxLeafSize) {
+                    makeLeaf();
+                    return;
+                }
+                middle = start + count / 2;
+            } else {
+                middle = partitionBySah(axis, centroidBounds[axis], extent, count);
+                if (middle < 0) {
+                    makeLeaf();
+                    return;
+                }
+            }
+
+            int left = nodeCounter.getAndAdd(2);
+            nodeStart[node] = left;
+            nodeCount[node] = 0;
+            BuildTask leftTask = new BuildTask(primitiveBounds, centroids, nodeCounter, left, start, middle);
+            BuildTask rightTask = new BuildTask(primitiveBounds, centroids, nodeCounter, left + 1, middle, end);
+            if (count >= PARALLEL_BUILD_THRESHOLD) {
+                invokeAll(leftTask, rightTask);
+            } else {
+                leftTask.compute();
+                rightTask.compute();
+            }
+        }
+
+        private void makeLeaf() {
+            nodeStart[node] = start;
+            nodeCount[node] = end - start;
+        }
+
+        /**
+         * Bins centroids along one axis, picks the cheapest SAH split and partitions the range.
+         * @return The first index of the right half, or -1 if a leaf is cheaper than any split.
+         */
+        private int partitionBySah(int axis, double axisMin, double extent, int count) {
+            int[] binCounts = new int[BIN_COUNT];
+            double[] binBounds = new double[BIN_COUNT * 6];
+            for (int bin = 0; bin < BIN_COUNT; bin++) {
+                for (int component = 0; component < 3; component++) {
+                    binBounds[bin * 6 + component] = Double.POSITIVE_INFINITY;
+                    binBounds[bin * 6 + 3 + component] = Double.NEGATIVE_INFINITY;
+                }
+            }
+            double scale = BIN_COUNT / extent;
+            for (int i = start; i < end; i++) {
+                int primitive = primitiveIndices[i];
+                int bin = binOf(centroids[primitive * 3 + axis], axisMin, scale);
+                binCounts[bin]++;
+                for (int component = 0; component < 3; component++) {
+                    binBounds[bin * 6 + component] = Math.min(binBounds[bin * 6 + component], primitiveBounds[primitive * 6 + component]);
+                    binBounds[bin * 6 + 3 + component] = Math.max(binBounds[bin * 6 + 3 + component], primitiveBounds[primitive * 6 + 3 + component]);
+                }
+            }
+
+            // Sweep from the right to get the cost of every right-hand side
+            double[] rightCost = new double[BIN_COUNT];
+            double[] sweep = {
+                    Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                    Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY
+            };
+            int rightCount = 0;
+            for (int bin = BIN_COUNT - 1; bin > 0; bin--) {
+                rightCount += binCounts[bin];
+                growBounds(sweep, binBounds, bin);
+                rightCost[bin] = batches(rightCount) * surfaceArea(sweep[3] - sweep[0], sweep[4] - sweep[1], sweep[5] - sweep[2]);
+            }
+
+            sweep[0] = sweep[1] = sweep[2] = Double.POSITIVE_INFINITY;
+            sweep[3] = sweep[4] = sweep[5] = Double.NEGATIVE_INFINITY;
+            int leftCount = 0;
+            int bestSplit = -1;
+            double bestCost = Double.MAX_VALUE;
+            for (int split = 1; split < BIN_COUNT; split++) {
+                leftCount += binCounts[split - 1];
+                growBounds(sweep, binBounds, split - 1);
+                if (leftCount == 0 || leftCount == count) {
+                    continue;
+                }
+                double cost = batches(leftCount) * surfaceArea(sweep[3] - sweep[0], sweep[4] - sweep[1], sweep[5] - sweep[2]) + rightCost[split];
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestSplit = split;
+                }
+            }
+
+            int base = node * 6;
+            double nodeArea = surfaceArea(nodeBounds[base + 3] - nodeBounds[base], nodeBounds[base + 4] - nodeBounds[base + 1], nodeBounds[base + 5] - nodeBounds[base + 2]);
+            double splitCost = nodeArea > 0 ? TRAVERSAL_COST + bestCost / nodeArea : TRAVERSAL_COST;
+            if (bestSplit < 0 || (count <= maxLeafSize && splitCost >= batches(count))) {
+                return count <= maxLeafSize ? -1 : start + count / 2;
+            }
+
+            int i = start;
+            int j = end - 1;
+            while (i <= j) {
+                if (binOf(centroids[primitiveIndices[i] * 3 + axis], axisMin, scale) < bestSplit) {
+                    i++;
+                } else {
+                    int swap = primitiveIndices[i];
+                    primitiveIndices[i] = primitiveIndices[j];
+                    primitiveIndices[j--] = swap;
+                }
+            }
+            return i;
+        }
+
+        /**
+         * @return The number of leaf intersector calls needed to test {@code count} primitives.
+         */
+        private int batches(int count) {
+            return (count + leafWidth - 1) / leafWidth;
+        }
+
+        private int binOf(double centroid, double axisMin, double scale) {
+            return Math.min(BIN_COUNT - 1, (int) ((centroid - axisMin) * scale));
+        }
+
+        private void growBounds(double[] bounds, double[] binBounds, int bin) {
+            for (int component = 0; component < 3; component++) {
+                bounds[component] = Math.min(bounds[component], binBounds[bin * 6 + component]);
+                bounds[3 + component] = Math.max(bounds[3 + component], binBounds[bin * 6 + 3 + component]);
+            }
+        }
+    }
+}
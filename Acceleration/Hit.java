@@ -0,0 +1,65 @@
+package Acceleration;
+
+import Vectors.Vec3;
+
+/**
+ * Reusable result of a closest-hit query. Also owns the traversal stack so
+ * queries do not allocate; a Hit must therefore not be shared between threads.
+ * Queries add the work they do to {@code nodesVisited} and {@code primitiveTests}, which
+ * {@link #reset()} leaves alone so callers can collect them over many queries.
+ * Hits inside instanced geometry also name the instance; {@code instance} is -1 otherwise.
+ */
+public final class Hit {
+    public double t = Double.MAX_VALUE;
+    public int primitive = -1;
+    public int instance = -1;
+    public long nodesVisited;
+    public long primitiveTests;
+    int[] stack = new int[64];
+    double[] stackDistances = new double[64];
+    private Hit nested;
+    private Vec3 localOrigin;
+    private Vec3 localDirection;
+
+    public boolean isHit() {
+        return primitive >= 0;
+    }
+
+    public Hit reset() {
+        t = Double.MAX_VALUE;
+        primitive = -1;
+        instance = -1;
+        return this;
+    }
+
+    /**
+     * @return A second hit owned by this one, for a query that runs while this hit's traversal is
+     * in progress, e.g. into the geometry of an instance found by a top-level hierarchy.
+     */
+    public Hit nested() {
+        if (nested == null) {
+            nested = new Hit();
+        }
+        return nested;
+    }
+
+    /**
+     * @return Scratch for the ray origin transformed into an instance's object space.
+     */
+    public Vec3 localOrigin() {
+        if (localOrigin == null) {
+            localOrigin = new Vec3();
+        }
+        return localOrigin;
+    }
+
+    /**
+     * @return Scratch for the ray direction transformed into an instance's object space.
+     */
+    public Vec3 localDirection() {
+        if (localDirection == null) {
+            localDirection = new Vec3();
+        }
+        return localDirection;
+    }
+}
@@ -0,0 +1,22 @@
+package Acceleration;
+
+import Vectors.Vec3;
+
+/**
+ * Intersects a ray with all primitives of one BVH leaf at once.
+ * Leaves are addressed by position in the hierarchy's primitive order (see
+ * {@link BVH#getPrimitiveOrder()}), so storage that has been reordered to match
+ * can test a leaf as one contiguous range, e.g. with a SIMD kernel.
+ */
+@FunctionalInterface
+public interface LeafIntersector {
+    /**
+     * @param first The first position of the leaf in the hierarchy's primitive order.
+     * @param count The number of primitives in the leaf.
+     * @param origin The ray origin.
+     * @param direction The ray direction.
+     * @param hit The closest hit so far; updated if a primitive in the leaf is closer.
+     * @return True if {@code hit} was updated.
+     */
+    boolean intersectLeaf(int first, int count, Vec3 origin, Vec3 direction, Hit hit);
+}
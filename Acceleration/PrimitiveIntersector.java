@@ -0,0 +1,19 @@
+package Acceleration;
+
+import Vectors.Vec3;
+
+/**
+ * Intersects a ray with a single primitive referenced by index.
+ * Acceleration structures only deal with bounding boxes and delegate the
+ * exact primitive test to an implementation of this interface.
+ */
+@FunctionalInterface
+public interface PrimitiveIntersector {
+    /**
+     * @param primitive The index of the primitive as passed to the structure's build.
+     * @param origin The ray origin.
+     * @param direction The ray direction.
+     * @return The ray parameter of the nearest hit in front of the origin, or Double.MAX_VALUE on a miss.
+     */
+    double intersect(int primitive, Vec3 origin, Vec3 direction);
+}
@@ -0,0 +1,138 @@
+package Colors;
+
+import java.awt.Color;
+
+/**
+ * A mutable linear-light RGB color with unbounded double channels.
+ * Shading accumulates into LinearColor instances without clamping or rounding;
+ * the value is converted to a packed sRGB int exactly once, when a pixel is written.
+ * All mutating methods return the receiver to allow chaining.
+ */
+public final class LinearColor {
+    private static final int ENCODE_TABLE_SIZE = 4096;
+    private static final double[] DECODE_TABLE = new double[256];
+    private static final int[] ENCODE_TABLE = new int[ENCODE_TABLE_SIZE + 1];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            double c = i / 255.0;
+            DECODE_TABLE[i] = c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+        }
+        for (int i = 0; i <= ENCODE_TABLE_SIZE; i++) {
+            double c = (double) i / ENCODE_TABLE_SIZE;
+            double encoded = c <= 0.0031308 ? c * 12.92 : 1.055 * Math.pow(c, 1 / 2.4) - 0.055;
+            ENCODE_TABLE[i] = (int) Math.round(encoded * 255);
+        }
+    }
+
+    public double r;
+    public double g;
+    public double b;
+
+    public LinearColor() {
+    }
+
+    public LinearColor(double r, double g, double b) {
+        this.r = r;
+        this.g = g;
+        this.b = b;
+    }
+
+    /**
+     * Creates a linear color from an sRGB encoded AWT color. Alpha is ignored.
+     * @param color The sRGB color.
+     * @return A new linear color.
+     */
+    public static LinearColor of(Color color) {
+        return new LinearColor().setSRGB(color.getRGB());
+    }
+
+    public LinearColor set(double r, double g, double b) {
+        this.r = r;
+        this.g = g;
+        this.b = b;
+        return this;
+    }
+
+    public LinearColor set(LinearColor other) {
+        return set(other.r, other.g, other.b);
+    }
+
+    /**
+     * Decodes a packed sRGB int into this color.
+     * @param rgb The packed color; the alpha byte is ignored.
+     * @return This color.
+     */
+    public LinearColor setSRGB(int rgb) {
+        return set(DECODE_TABLE[(rgb >> 16) & 0xFF], DECODE_TABLE[(rgb >> 8) & 0xFF], DECODE_TABLE[rgb & 0xFF]);
+    }
+
+    public LinearColor add(LinearColor other) {
+        r += other.r;
+        g += other.g;
+        b += other.b;
+        return this;
+    }
+
+    public LinearColor scale(double factor) {
+        r *= factor;
+        g *= factor;
+        b *= factor;
+        return this;
+    }
+
+    /**
+     * Adds a weighted color, i.e. {@code this += other * weight}.
+     */
+    public LinearColor addScaled(LinearColor other, double weight) {
+        r += other.r * weight;
+        g += other.g * weight;
+        b += other.b * weight;
+        return this;
+    }
+
+    /**
+     * Moves this color towards another one by the given factor.
+     * @param other The color to blend in.
+     * @param factor The blend factor (0 keeps this color, 1 replaces it).
+     * @return This color.
+     */
+    public LinearColor blend(LinearColor other, double factor) {
+        r += (other.r - r) * factor;
+        g += (other.g - g) * factor;
+        b += (other.b - b) * factor;
+        return this;
+    }
+
+    /**
+     * Encodes this color as an opaque packed sRGB int, clamping every channel to [0, 1].
+     * @return The packed ARGB value with full alpha.
+     */
+    public int toPackedSRGB() {
+        return 0xFF000000 | (encodeChannel(r) << 16) | (encodeChannel(g) << 8) | encodeChannel(b);
+    }
+
+    public Color toColor() {
+        return new Color(toPackedSRGB());
+    }
+
+    /**
+     * Encodes a single linear channel value as an 8-bit sRGB value, clamping it to [0, 1].
+     * @param channel The linear channel value.
+     * @return The sRGB value between 0 and 255.
+     */
+    public static int encodeChannel(double channel) {
+        if (!(channel > 0)) {
+            return 0;
+        }
+        if (channel >= 1) {
+            return 255;
+        }
+        return ENCODE_TABLE[(int) (channel * ENCODE_TABLE_SIZE + 0.5)];
+    }
+
+    @Override
+    public String toString() {
+        return "[" + r + ", " + g + ", " + b + "]";
+    }
+}
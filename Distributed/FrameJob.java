@@ -0,0 +1,118 @@
+package Distributed;
+
+import java.util.ArrayDeque;
+
+/**
+ * The tiles of one distributed frame: which are still waiting for a worker, which are done,
+ * and the assembled pixels. Tiles are handed out one at a time, so fast workers simply take
+ * more of them, and tiles held by a lost worker go back to the front of the queue.
+ */
+final class FrameJob {
+    final int width;
+    final int height;
+    final int tileSize;
+    final int tilesX;
+    private final int[] pixels;
+    private final ArrayDeque<Integer> pending = new ArrayDeque<>();
+    private final boolean[] done;
+    private int remaining;
+    private boolean cancelled;
+
+    FrameJob(int width, int height, int tileSize, int[] pixels) {
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        this.tilesX = (width + tileSize - 1) / tileSize;
+        int tileCount = tilesX * ((height + tileSize - 1) / tileSize);
+        this.pixels = pixels;
+        this.done = new boolean[tileCount];
+        this.remaining = tileCount;
+        for (int tile = 0; tile < tileCount; tile++) {
+            pending.add(tile);
+        }
+    }
+
+    int tileX(int tile) {
+        return (tile % tilesX) * tileSize;
+    }
+
+    int tileY(int tile) {
+        return (tile / tilesX) * tileSize;
+    }
+
+    int tileWidth(int tile) {
+        return Math.min(tileSize, width - tileX(tile));
+    }
+
+    int tileHeight(int tile) {
+        return Math.min(tileSize, height - tileY(tile));
+    }
+
+    /**
+     * @return The next tile to render, or -1 if none is waiting.
+     */
+    synchronized int take() {
+        Integer tile = pending.poll();
+        return tile != null ? tile : -1;
+    }
+
+    /**
+     * Copies a finished tile into the frame. Results for tiles that are already done are ignored.
+     */
+    synchronized void complete(int tile, int[] tilePixels) {
+        if (tile < 0 || tile >= done.length || done[tile]) {
+            return;
+        }
+        int x0 = tileX(tile);
+        int y0 = tileY(tile);
+        int tileWidth = tileWidth(tile);
+        for (int row = 0; row < tileHeight(tile); row++) {
+            System.arraycopy(tilePixels, row * tileWidth, pixels, (y0 + row) * width + x0, tileWidth);
+        }
+        done[tile] = true;
+        remaining--;
+        if (remaining == 0) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Puts a tile of a lost worker back at the front of the queue.
+     */
+    synchronized void requeue(int tile) {
+        if (!done[tile]) {
+            pending.addFirst(tile);
+            notifyAll();
+        }
+    }
+
+    synchronized boolean isFinished() {
+        return remaining == 0 || cancelled;
+    }
+
+    synchronized void cancel() {
+        cancelled = true;
+        notifyAll();
+    }
+
+    /**
+     * Waits until a tile is requeued or the frame finishes.
+     * @param timeoutMillis The longest time to wait.
+     */
+    synchronized void awaitWork(long timeoutMillis) throws InterruptedException {
+        if (pending.isEmpty() && remaining > 0 && !cancelled) {
+            wait(timeoutMillis);
+        }
+    }
+
+    /**
+     * Waits until every tile is done.
+     * @return False if the frame was cancelled first.
+     */
+    synchronized boolean awaitDone() throws InterruptedException {
+        while (remaining > 0 && !cancelled) {
+            wait();
+        }
+        return remaining == 0;
+    }
+}
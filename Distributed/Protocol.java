@@ -0,0 +1,72 @@
+package Distributed;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Wire format shared by {@link RenderCoordinator} and {@link RenderWorker}. All values are big-endian
+ * as written by {@link DataOutputStream}.
+ * <ol>
+ *     <li>The coordinator greets with {@link #MAGIC} and {@link #VERSION}; the worker answers with the
+ *     same two values followed by its thread count.</li>
+ *     <li>The coordinator sends the scene once: a length and the bytes of a scene file.</li>
+ *     <li>The coordinator sends {@link #TILE} messages (id, x, y, tile width, tile height, frame width,
+ *     frame height) and the worker answers each with {@link #RESULT} (id followed by the packed ARGB
+ *     pixels of the tile), in any order.</li>
+ *     <li>{@link #SHUTDOWN} ends the session.</li>
+ * </ol>
+ */
+final class Protocol {
+    static final int MAGIC = 0x52544452;
+    static final int VERSION = 1;
+
+    static final byte TILE = 1;
+    static final byte RESULT = 2;
+    static final byte SHUTDOWN = 3;
+
+    private Protocol() {
+    }
+
+    /**
+     * Sends this side's greeting.
+     */
+    static void writeGreeting(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    /**
+     * Reads and checks the other side's greeting.
+     * @throws IOException if the peer does not speak this protocol version.
+     */
+    static void readGreeting(DataInputStream in) throws IOException {
+        int magic = in.readInt();
+        int version = in.readInt();
+        if (magic != MAGIC) {
+            throw new IOException("Peer is not a render node.");
+        }
+        if (version != VERSION) {
+            throw new IOException("Unsupported protocol version " + version + ", expected " + VERSION);
+        }
+    }
+
+    /**
+     * Writes tile pixels as one block of bytes.
+     */
+    static void writePixels(DataOutputStream out, int[] pixels, int count) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(count * Integer.BYTES);
+        bytes.asIntBuffer().put(pixels, 0, count);
+        out.write(bytes.array());
+    }
+
+    /**
+     * Reads tile pixels written by {@link #writePixels(DataOutputStream, int[], int)}.
+     */
+    static void readPixels(DataInputStream in, int[] pixels, int count) throws IOException {
+        byte[] bytes = new byte[count * Integer.BYTES];
+        in.readFully(bytes);
+        ByteBuffer.wrap(bytes).asIntBuffer().get(pixels, 0, count);
+    }
+}
@@ -0,0 +1,285 @@
+package Distributed;
+
+import Engine.Renderer;
+import Engine.Scene;
+import Engine.SceneFile;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Renders frames by handing tiles to {@link RenderWorker} processes over TCP.
+ * Workers connect to the coordinator's port at any time, even in the middle of a frame, and receive
+ * the scene once. Each worker then keeps twice its thread count of tiles in flight; a new tile is
+ * sent whenever a result comes back, so faster workers render more of the frame. If a worker
+ * disconnects or stops answering for longer than the worker timeout, its outstanding tiles are
+ * handed to the remaining workers.
+ */
+public class RenderCoordinator implements Closeable {
+    private static final int DEFAULT_WORKER_TIMEOUT_MILLIS = 30_000;
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final byte[] sceneBytes;
+    private final ServerSocket serverSocket;
+    private final List<Session> sessions = new CopyOnWriteArrayList<>();
+    private final Thread acceptThread;
+    private int tileSize = Renderer.DEFAULT_TILE_SIZE;
+    private int workerTimeoutMillis = DEFAULT_WORKER_TIMEOUT_MILLIS;
+    private FrameJob job;
+    private volatile boolean closed;
+
+    /**
+     * Serializes the scene and starts accepting workers.
+     * @param scene The scene every worker renders; later changes to it are not sent.
+     * @param port The port to listen on, or 0 for any free port.
+     * @throws IOException if the port cannot be bound.
+     */
+    public RenderCoordinator(Scene scene, int port) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SceneFile.write(scene, Channels.newChannel(bytes));
+        this.sceneBytes = bytes.toByteArray();
+        this.serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(port));
+        this.acceptThread = new Thread(this::acceptWorkers, "render-coordinator-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * @return The port workers connect to.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return The number of currently connected workers.
+     */
+    public int getWorkerCount() {
+        return sessions.size();
+    }
+
+    public void setTileSize(int tileSize) {
+        if (tileSize < 1) {
+            throw new IllegalArgumentException("Tile size must be at least 1.");
+        }
+        this.tileSize = tileSize;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Sets how long a worker may take to return a tile before it is considered dead.
+     * @param workerTimeoutMillis The timeout in milliseconds, at least 1.
+     */
+    public void setWorkerTimeout(int workerTimeoutMillis) {
+        if (workerTimeoutMillis < 1) {
+            throw new IllegalArgumentException("Worker timeout must be at least 1 ms.");
+        }
+        this.workerTimeoutMillis = workerTimeoutMillis;
+    }
+
+    /**
+     * Renders a frame on the connected workers, waiting for workers to connect if there are none.
+     * @param image The image to render into; integer RGB images are written directly.
+     * @throws IOException if the coordinator is closed before the frame completes.
+     * @throws InterruptedException if the calling thread is interrupted while waiting.
+     */
+    public void render(BufferedImage image) throws IOException, InterruptedException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = Renderer.directPixels(image);
+        boolean direct = pixels != null;
+        if (!direct) {
+            pixels = new int[width * height];
+        }
+        FrameJob frame = new FrameJob(width, height, tileSize, pixels);
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("The coordinator is closed.");
+            }
+            if (job != null) {
+                throw new IllegalStateException("Only one frame can be rendered at a time.");
+            }
+            job = frame;
+            notifyAll();
+        }
+        try {
+            if (!frame.awaitDone()) {
+                throw new IOException("The coordinator was closed before the frame completed.");
+            }
+        } finally {
+            synchronized (this) {
+                job = null;
+            }
+            frame.cancel();
+        }
+        if (!direct) {
+            image.setRGB(0, 0, width, height, pixels, 0, width);
+        }
+    }
+
+    /**
+     * Stops accepting workers, cancels a frame in progress and tells all workers to shut down.
+     */
+    @Override
+    public void close() throws IOException {
+        FrameJob frame;
+        synchronized (this) {
+            closed = true;
+            frame = job;
+            notifyAll();
+        }
+        if (frame != null) {
+            frame.cancel();
+        }
+        serverSocket.close();
+    }
+
+    private void acceptWorkers() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                Session session = new Session(socket);
+                sessions.add(session);
+                Thread thread = new Thread(session, "render-coordinator-" + socket.getRemoteSocketAddress());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("Failed to accept a worker: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The frame to work on, waiting until one is started, or null once the coordinator is closed.
+     */
+    private synchronized FrameJob awaitJob(FrameJob previous) throws InterruptedException {
+        while (!closed && (job == null || job == previous)) {
+            wait();
+        }
+        return closed ? null : job;
+    }
+
+    /**
+     * Serves one worker connection: sends the scene, then keeps the worker busy with tiles of the
+     * current frame until the coordinator closes or the connection fails.
+     */
+    private final class Session implements Runnable {
+        private final Socket socket;
+        private final Set<Integer> inFlight = new HashSet<>();
+        private FrameJob frame;
+
+        Session(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            try {
+                socket.setTcpNoDelay(true);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                socket.setSoTimeout(workerTimeoutMillis);
+                Protocol.writeGreeting(out);
+                out.flush();
+                Protocol.readGreeting(in);
+                int window = Math.max(1, in.readInt() * 2);
+                out.writeInt(sceneBytes.length);
+                out.write(sceneBytes);
+                out.flush();
+
+                while ((frame = awaitJob(frame)) != null) {
+                    serve(frame, in, out, window);
+                }
+                out.writeByte(Protocol.SHUTDOWN);
+                out.flush();
+            } catch (SocketTimeoutException e) {
+                System.err.println("Worker " + socket.getRemoteSocketAddress() + " timed out, reassigning its tiles");
+            } catch (IOException e) {
+                if (!closed || !(e instanceof SocketException)) {
+                    String reason = e instanceof EOFException ? "connection closed" : e.getMessage();
+                    System.err.println("Lost worker " + socket.getRemoteSocketAddress() + ", reassigning its tiles: " + reason);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                }
+                sessions.remove(this);
+                if (frame != null) {
+                    for (int tile : new ArrayList<>(inFlight)) {
+                        frame.requeue(tile);
+                    }
+                }
+            }
+        }
+
+        private void serve(FrameJob frame, DataInputStream in, DataOutputStream out, int window) throws IOException, InterruptedException {
+            int[] tilePixels = new int[frame.tileSize * frame.tileSize];
+            inFlight.clear();
+            while (true) {
+                boolean sent = false;
+                while (inFlight.size() < window) {
+                    int tile = frame.take();
+                    if (tile < 0) {
+                        break;
+                    }
+                    inFlight.add(tile);
+                    out.writeByte(Protocol.TILE);
+                    out.writeInt(tile);
+                    out.writeInt(frame.tileX(tile));
+                    out.writeInt(frame.tileY(tile));
+                    out.writeInt(frame.tileWidth(tile));
+                    out.writeInt(frame.tileHeight(tile));
+                    out.writeInt(frame.width);
+                    out.writeInt(frame.height);
+                    sent = true;
+                }
+                if (sent) {
+                    out.flush();
+                }
+                if (inFlight.isEmpty()) {
+                    if (frame.isFinished()) {
+                        return;
+                    }
+                    frame.awaitWork(IDLE_POLL_MILLIS);
+                    continue;
+                }
+
+                if (in.readByte() != Protocol.RESULT) {
+                    throw new IOException("Unexpected message from worker.");
+                }
+                int tile = in.readInt();
+                if (!inFlight.remove(tile)) {
+                    throw new IOException("Worker returned tile " + tile + ", which it was not assigned.");
+                }
+                Protocol.readPixels(in, tilePixels, frame.tileWidth(tile) * frame.tileHeight(tile));
+                frame.complete(tile, tilePixels);
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package Distributed;
+
+import Engine.Renderer;
+import Engine.Scene;
+import Engine.SceneFile;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connects to a {@link RenderCoordinator}, receives its scene and renders the tiles it assigns,
+ * several at a time, sending back packed pixels as each tile completes.
+ */
+public class RenderWorker {
+    private final String host;
+    private final int port;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    public RenderWorker(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Sets the number of tiles rendered concurrently.
+     * @param parallelism The number of render threads, at least 1.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1.");
+        }
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Serves the coordinator until it sends a shutdown or closes the connection.
+     * @throws IOException if the connection cannot be established or fails before a shutdown.
+     */
+    public void run() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "render-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            Protocol.readGreeting(in);
+            Protocol.writeGreeting(out);
+            out.writeInt(parallelism);
+            out.flush();
+
+            byte[] sceneBytes = new byte[in.readInt()];
+            in.readFully(sceneBytes);
+            Scene scene = SceneFile.read(ByteBuffer.wrap(sceneBytes));
+            Renderer renderer = new Renderer(scene);
+
+            while (true) {
+                byte message;
+                try {
+                    message = in.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                if (message == Protocol.SHUTDOWN) {
+                    return;
+                }
+                if (message != Protocol.TILE) {
+                    throw new IOException("Unexpected message from coordinator.");
+                }
+                int tile = in.readInt();
+                int x = in.readInt();
+                int y = in.readInt();
+                int tileWidth = in.readInt();
+                int tileHeight = in.readInt();
+                int width = in.readInt();
+                int height = in.readInt();
+                executor.execute(() -> renderTile(renderer, socket, out, tile, x, y, tileWidth, tileHeight, width, height));
+            }
+        } finally {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void renderTile(Renderer renderer, Socket socket, DataOutputStream out, int tile, int x, int y, int tileWidth, int tileHeight, int width, int height) {
+        int[] pixels = new int[tileWidth * tileHeight];
+        try {
+            renderer.renderTile(x, y, tileWidth, tileHeight, width, height, pixels);
+            synchronized (out) {
+                out.writeByte(Protocol.RESULT);
+                out.writeInt(tile);
+                Protocol.writePixels(out, pixels, pixels.length);
+                out.flush();
+            }
+        } catch (IOException | RuntimeException e) {
+            // Closing the socket ends the read loop; the coordinator reassigns the tiles
+            System.err.println("Failed to render tile " + tile + ": " + e);
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package Engine;
+
+import Acceleration.Hit;
+import Metrics.RayType;
+import Vectors.Vec3;
+
+/**
+ * Estimates how much of the ambient light reaches a shading point by casting short any-hit rays
+ * over the hemisphere around the normal. The ray directions are not drawn at random: they come
+ * from a table of the first points of the two-dimensional Sobol sequence, mapped to a cosine
+ * weighted hemisphere once per process, so every prefix of the table covers the hemisphere
+ * evenly. Each pixel turns the table around the normal by its own angle, taken from a small
+ * table of interleaved gradient noise, which spreads the remaining error over neighbouring pixels
+ * as fine grain instead of as banding. Like {@link PathTermination}, the result only depends on
+ * the pixel, so both integrators shade the same.
+ * <p>
+ * Most points are either wide open or deep in a crease. The first {@value #EARLY_SAMPLES} rays
+ * are therefore cast before the others, and if they all agree the point is taken to be fully
+ * lit or fully occluded; only points on the edge of a contact shadow pay for every sample.
+ */
+final class AmbientOcclusion {
+    static final int DEFAULT_SAMPLES = 8;
+    static final double DEFAULT_RADIUS = 1.0;
+    static final int MAX_SAMPLES = 64;
+    static final AmbientOcclusion DEFAULT = new AmbientOcclusion(DEFAULT_SAMPLES, DEFAULT_RADIUS);
+
+    // Rays cast before deciding whether the rest are needed
+    private static final int EARLY_SAMPLES = 4;
+    // The rotation table repeats every this many pixels in both directions
+    private static final int ROTATION_TILE = 64;
+
+    // Unit directions in a frame whose z axis is the normal
+    private static final double[] DIRECTION_X = new double[MAX_SAMPLES];
+    private static final double[] DIRECTION_Y = new double[MAX_SAMPLES];
+    private static final double[] DIRECTION_Z = new double[MAX_SAMPLES];
+    private static final double[] ROTATION_COS = new double[ROTATION_TILE * ROTATION_TILE];
+    private static final double[] ROTATION_SIN = new double[ROTATION_TILE * ROTATION_TILE];
+
+    static {
+        for (int i = 0; i < MAX_SAMPLES; i++) {
+            // The first dimension is the base-2 radical inverse, the second uses the direction numbers of x + 1
+            double u = (Integer.reverse(i) & 0xFFFFFFFFL) * 0x1.0p-32;
+            int direction = 1 << 31;
+            int bits = 0;
+            for (int index = i; index != 0; index >>>= 1) {
+                if ((index & 1) != 0) {
+                    bits ^= direction;
+                }
+                direction ^= direction >>> 1;
+            }
+            double v = (bits & 0xFFFFFFFFL) * 0x1.0p-32;
+            // Points uniform on the unit disk, lifted onto the hemisphere, are distributed by the cosine
+            double radius = Math.sqrt(u);
+            double angle = 2 * Math.PI * v;
+            DIRECTION_X[i] = radius * Math.cos(angle);
+            DIRECTION_Y[i] = radius * Math.sin(angle);
+            DIRECTION_Z[i] = Math.sqrt(1 - u);
+        }
+        for (int y = 0; y < ROTATION_TILE; y++) {
+            for (int x = 0; x < ROTATION_TILE; x++) {
+                double noise = 52.9829189 * fraction(0.06711056 * x + 0.00583715 * y);
+                double angle = 2 * Math.PI * fraction(noise);
+                ROTATION_COS[y * ROTATION_TILE + x] = Math.cos(angle);
+                ROTATION_SIN[y * ROTATION_TILE + x] = Math.sin(angle);
+            }
+        }
+    }
+
+    final int samples;
+    final double radius;
+
+    AmbientOcclusion(int samples, double radius) {
+        this.samples = samples;
+        this.radius = radius;
+    }
+
+    /**
+     * Estimates the fraction of the hemisphere above a point that is open within the radius,
+     * weighted by the cosine to the normal.
+     * @param geometry The scene geometry.
+     * @param point The shading point.
+     * @param normal The unit surface normal.
+     * @param pixelX The column of the pixel being shaded.
+     * @param pixelY The row of the pixel being shaded.
+     * @param hit Scratch for the any-hit queries.
+     * @param origin Scratch for the ray origin.
+     * @param direction Scratch for the ray direction.
+     * @param raysByType Ray counts per {@link RayType}.
+     * @return The open fraction, 1 if the occlusion is disabled.
+     */
+    double visibility(SceneGeometry geometry, Vec3 point, Vec3 normal, int pixelX, int pixelY, Hit hit, Vec3 origin, Vec3 direction, long[] raysByType) {
+        if (samples == 0) {
+            return 1;
+        }
+        // An orthonormal frame around the normal without branches on its direction (Duff et al. 2017)
+        double sign = Math.copySign(1.0, normal.z);
+        double a = -1 / (sign + normal.z);
+        double b = normal.x * normal.y * a;
+        double tangentX = 1 + sign * normal.x * normal.x * a;
+        double tangentY = sign * b;
+        double tangentZ = -sign * normal.x;
+        double bitangentX = b;
+        double bitangentY = sign + normal.y * normal.y * a;
+        double bitangentZ = -normal.y;
+
+        int rotation = (pixelY & (ROTATION_TILE - 1)) * ROTATION_TILE + (pixelX & (ROTATION_TILE - 1));
+        double cos = ROTATION_COS[rotation];
+        double sin = ROTATION_SIN[rotation];
+        origin.set(point).addScaled(normal, Renderer.SHADOW_BIAS);
+        int occluded = 0;
+        int cast = 0;
+        for (; cast < samples; cast++) {
+            if (cast == EARLY_SAMPLES && (occluded == 0 || occluded == EARLY_SAMPLES)) {
+                break;
+            }
+            double x = DIRECTION_X[cast] * cos - DIRECTION_Y[cast] * sin;
+            double y = DIRECTION_X[cast] * sin + DIRECTION_Y[cast] * cos;
+            double z = DIRECTION_Z[cast];
+            direction.set(
+                    tangentX * x + bitangentX * y + normal.x * z,
+                    tangentY * x + bitangentY * y + normal.y * z,
+                    tangentZ * x + bitangentZ * y + normal.z * z);
+            if (geometry.occluded(origin, direction, radius, hit)) {
+                occluded++;
+            }
+        }
+        raysByType[RayType.AMBIENT_OCCLUSION.ordinal()] += cast;
+        return 1 - occluded / (double) cast;
+    }
+
+    private static double fraction(double value) {
+        return value - Math.floor(value);
+    }
+}
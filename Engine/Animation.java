@@ -0,0 +1,216 @@
+package Engine;
+
+import Acceleration.BVH;
+import Objects.Shapes.PackedSpheres;
+import Objects.lights.Light;
+import Vectors.Vec3;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keyframes for the camera, the packed spheres and the lights of a scene. Every key fixes the
+ * state of one of them at a point in time; between keys the state is interpolated linearly, and
+ * before the first and after the last key it holds still. Anything without keys is left as it is.
+ * <p>
+ * {@link #apply(Scene, double, double)} poses a scene at a time by moving its spheres and lights in
+ * place, so the hierarchy over the spheres is refitted rather than rebuilt. An instance is meant to
+ * be used by one thread at a time.
+ */
+public class Animation {
+    /**
+     * The keys of one animated value, sorted by time, with a fixed number of components per key.
+     */
+    private static final class Track {
+        private final int components;
+        private double[] times = new double[4];
+        private double[] values;
+        private int size;
+
+        Track(int components) {
+            this.components = components;
+            this.values = new double[4 * components];
+        }
+
+        /**
+         * Adds a key, replacing one at the same time.
+         */
+        void add(double time, double... key) {
+            int index = Arrays.binarySearch(times, 0, size, time);
+            if (index < 0) {
+                index = -index - 1;
+                if (size == times.length) {
+                    times = Arrays.copyOf(times, size * 2);
+                    values = Arrays.copyOf(values, size * 2 * components);
+                }
+                System.arraycopy(times, index, times, index + 1, size - index);
+                System.arraycopy(values, index * components, values, (index + 1) * components, (size - index) * components);
+                size++;
+            }
+            times[index] = time;
+            System.arraycopy(key, 0, values, index * components, components);
+        }
+
+        /**
+         * Writes the interpolated value at a time into {@code out}.
+         */
+        void sample(double time, double[] out) {
+            int index = Arrays.binarySearch(times, 0, size, time);
+            if (index >= 0 || time <= times[0] || time >= times[size - 1]) {
+                int key = index >= 0 ? index : time <= times[0] ? 0 : size - 1;
+                System.arraycopy(values, key * components, out, 0, components);
+                return;
+            }
+            int next = -index - 1;
+            int previous = next - 1;
+            double blend = (time - times[previous]) / (times[next] - times[previous]);
+            for (int component = 0; component < components; component++) {
+                double from = values[previous * components + component];
+                double to = values[next * components + component];
+                out[component] = from + (to - from) * blend;
+            }
+        }
+
+        double lastTime() {
+            return times[size - 1];
+        }
+    }
+
+    // Eye, target and up direction, three components each, and the vertical field of view
+    private final Track camera = new Track(10);
+    // Keyed by the sphere's source index, see PackedSpheres.getSourceIndex
+    private final Map<Integer, Track> spheres = new TreeMap<>();
+    private final Map<Integer, Track> lights = new TreeMap<>();
+    private final double[] sample = new double[10];
+    // Maps source indices to the current sphere order, rebuilt when the order changes
+    private PackedSpheres indexedSpheres;
+    private BVH indexedAccelerator;
+    private int[] positions;
+
+    /**
+     * Keys the camera, which is set up like {@link Camera#Camera(Vec3, Vec3, Vec3, double, double)}.
+     * @param time The time of the key in seconds.
+     * @param eye The camera position.
+     * @param target The point in the center of the image.
+     * @param up The approximate up direction.
+     * @param verticalFieldOfView The vertical opening angle in degrees.
+     */
+    public void addCameraKey(double time, Vec3 eye, Vec3 target, Vec3 up, double verticalFieldOfView) {
+        checkTime(time);
+        if (!(verticalFieldOfView > 0 && verticalFieldOfView < 180)) {
+            throw new IllegalArgumentException("The field of view must be between 0 and 180 degrees.");
+        }
+        camera.add(time, eye.x, eye.y, eye.z, target.x, target.y, target.z, up.x, up.y, up.z, verticalFieldOfView);
+    }
+
+    /**
+     * Keys the center and radius of one of the scene's packed spheres.
+     * @param sphere The sphere's index before the spheres were reordered for their hierarchy, see
+     *               {@link PackedSpheres#getSourceIndex(int)}; in scenes whose spheres were all added
+     *               with {@link Scene#addObject(Objects.Shapes.Sphere)}, their index in {@link Scene#getObjects()}.
+     * @param time The time of the key in seconds.
+     * @param center The center.
+     * @param radius The radius, greater than 0.
+     */
+    public void addSphereKey(int sphere, double time, Vec3 center, double radius) {
+        checkTime(time);
+        if (sphere < 0) {
+            throw new IllegalArgumentException("The sphere index must not be negative.");
+        }
+        if (!(radius > 0)) {
+            throw new IllegalArgumentException("The sphere radius must be positive.");
+        }
+        spheres.computeIfAbsent(sphere, key -> new Track(4)).add(time, center.x, center.y, center.z, radius);
+    }
+
+    /**
+     * Keys the position of one of the scene's lights.
+     * @param light The light's index in {@link Scene#getLights()}.
+     * @param time The time of the key in seconds.
+     * @param position The position.
+     */
+    public void addLightKey(int light, double time, Vec3 position) {
+        checkTime(time);
+        if (light < 0) {
+            throw new IllegalArgumentException("The light index must not be negative.");
+        }
+        lights.computeIfAbsent(light, key -> new Track(3)).add(time, position.x, position.y, position.z);
+    }
+
+    /**
+     * @return The time of the last key, or 0 without keys.
+     */
+    public double getDuration() {
+        double duration = camera.size > 0 ? camera.lastTime() : 0;
+        for (Track track : spheres.values()) {
+            duration = Math.max(duration, track.lastTime());
+        }
+        for (Track track : lights.values()) {
+            duration = Math.max(duration, track.lastTime());
+        }
+        return duration;
+    }
+
+    /**
+     * Poses a scene at a point in time: replaces its camera, moves its lights and rebuilds their
+     * hierarchy, and moves its spheres in place and updates theirs with {@link Scene#updateSpheres()}.
+     * Must not be called while the scene renders.
+     * @param scene The scene to pose.
+     * @param time The time in seconds.
+     * @param aspectRatio The image width divided by its height, for the camera.
+     * @throws IllegalArgumentException if a keyed sphere or light is not in the scene.
+     */
+    public void apply(Scene scene, double time, double aspectRatio) {
+        if (camera.size > 0) {
+            camera.sample(time, sample);
+            scene.setCamera(new Camera(new Vec3(sample[0], sample[1], sample[2]), new Vec3(sample[3], sample[4], sample[5]),
+                    new Vec3(sample[6], sample[7], sample[8]), sample[9], aspectRatio));
+        }
+        if (!lights.isEmpty()) {
+            List<Light> sceneLights = scene.getLights();
+            for (Map.Entry<Integer, Track> entry : lights.entrySet()) {
+                if (entry.getKey() >= sceneLights.size()) {
+                    throw new IllegalArgumentException("Light " + entry.getKey() + " is not in the scene.");
+                }
+                entry.getValue().sample(time, sample);
+                sceneLights.get(entry.getKey()).setPosition(new Vec3(sample[0], sample[1], sample[2]));
+            }
+            scene.updateLights();
+        }
+        if (!spheres.isEmpty()) {
+            PackedSpheres packed = scene.getPackedSpheres();
+            int[] order = positions(packed);
+            for (Map.Entry<Integer, Track> entry : spheres.entrySet()) {
+                if (entry.getKey() >= packed.size()) {
+                    throw new IllegalArgumentException("Sphere " + entry.getKey() + " is not in the scene.");
+                }
+                entry.getValue().sample(time, sample);
+                packed.setSphere(order[entry.getKey()], sample[0], sample[1], sample[2], sample[3]);
+            }
+            scene.updateSpheres();
+        }
+    }
+
+    /**
+     * @return The current position of every sphere by its source index.
+     */
+    private int[] positions(PackedSpheres packed) {
+        // A rebuilt hierarchy reorders the spheres and comes with a new accelerator
+        if (packed != indexedSpheres || packed.getAccelerator() != indexedAccelerator) {
+            positions = new int[packed.size()];
+            for (int sphere = 0; sphere < packed.size(); sphere++) {
+                positions[packed.getSourceIndex(sphere)] = sphere;
+            }
+            indexedSpheres = packed;
+            indexedAccelerator = packed.getAccelerator();
+        }
+        return positions;
+    }
+
+    private static void checkTime(double time) {
+        if (!(time >= 0) || Double.isInfinite(time)) {
+            throw new IllegalArgumentException("Key times must be finite and not negative.");
+        }
+    }
+}
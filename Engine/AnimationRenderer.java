@@ -0,0 +1,219 @@
+package Engine;
+
+import Acceleration.BVH;
+import Output.RasterSink;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Renders the frames of an {@link Animation} and writes each to its own sink. Between frames the
+ * scene is posed in place, so the sphere hierarchy is refitted instead of rebuilt. Frames are
+ * traced into one of two frame buffers and encoded from it on a separate thread, so frame N is
+ * compressed and written while frame N + 1 is traced; tracing only waits for the encoder when
+ * encoding a frame takes longer than tracing the next one.
+ * <p>
+ * The time spent in each stage of the last {@link #render(int, double, FrameOutput)} is kept,
+ * which shows how close the whole sequence came to the time spent tracing alone.
+ */
+public class AnimationRenderer {
+    /**
+     * Opens the destination of one frame.
+     */
+    @FunctionalInterface
+    public interface FrameOutput {
+        /**
+         * @param frame The index of the frame, counted from 0.
+         * @return The sink the frame is written to; it is finished and closed by the renderer.
+         * @throws IOException if the destination cannot be opened.
+         */
+        RasterSink open(int frame) throws IOException;
+    }
+
+    /**
+     * Holds a whole frame as it arrives from {@link Renderer#render(int, int, RasterSink)}.
+     */
+    private static final class FrameBuffer implements RasterSink {
+        private final int width;
+        private final float[] linearRgb;
+
+        FrameBuffer(int width, int height) {
+            this.width = width;
+            this.linearRgb = new float[width * height * 3];
+        }
+
+        @Override
+        public void begin(int width, int height) {
+        }
+
+        @Override
+        public void writeRows(int firstRow, int rowCount, float[] linearRgb) {
+            System.arraycopy(linearRgb, 0, this.linearRgb, firstRow * width * 3, rowCount * width * 3);
+        }
+
+        @Override
+        public void finish() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private final Renderer renderer;
+    private final Animation animation;
+    private final int width;
+    private final int height;
+    private long traceNanos;
+    private long poseNanos;
+    private long stallNanos;
+    private long totalNanos;
+    private int rebuilds;
+
+    /**
+     * @param renderer The renderer tracing the frames; its scene is posed by the animation.
+     * @param animation The keyframes.
+     * @param width The frame width.
+     * @param height The frame height.
+     */
+    public AnimationRenderer(Renderer renderer, Animation animation, int width, int height) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Width and height must be positive.");
+        }
+        this.renderer = renderer;
+        this.animation = animation;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Renders frames at evenly spaced times, starting at time 0. Returns once every frame is written.
+     * @param frameCount The number of frames, at least 1.
+     * @param frameRate The frames per second of animation time.
+     * @param output Opens the sink of every frame.
+     * @throws IOException if a frame cannot be written; no further frames are rendered.
+     */
+    public void render(int frameCount, double frameRate, FrameOutput output) throws IOException {
+        if (frameCount < 1) {
+            throw new IllegalArgumentException("At least one frame must be rendered.");
+        }
+        if (!(frameRate > 0) || Double.isInfinite(frameRate)) {
+            throw new IllegalArgumentException("The frame rate must be positive and finite.");
+        }
+        traceNanos = 0;
+        poseNanos = 0;
+        stallNanos = 0;
+        rebuilds = 0;
+        long start = System.nanoTime();
+        Scene scene = renderer.getScene();
+        FrameBuffer[] buffers = {new FrameBuffer(width, height), new FrameBuffer(width, height)};
+        // Frame N is traced into the buffer of frame N - 2 once the encoder has written that frame
+        Future<?>[] encoding = new Future<?>[buffers.length];
+        ExecutorService encoder = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "frame-encoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (int frame = 0; frame < frameCount; frame++) {
+                long poseStart = System.nanoTime();
+                BVH accelerator = scene.getPackedSpheres().getAccelerator();
+                animation.apply(scene, frame / frameRate, width / (double) height);
+                if (scene.getPackedSpheres().getAccelerator() != accelerator) {
+                    rebuilds++;
+                }
+                long traceStart = System.nanoTime();
+                poseNanos += traceStart - poseStart;
+
+                int slot = frame % buffers.length;
+                FrameBuffer buffer = buffers[slot];
+                if (encoding[slot] != null) {
+                    await(encoding[slot]);
+                    encoding[slot] = null;
+                }
+                long stallEnd = System.nanoTime();
+                stallNanos += stallEnd - traceStart;
+                renderer.render(width, height, buffer);
+                traceNanos += System.nanoTime() - stallEnd;
+
+                int index = frame;
+                encoding[slot] = encoder.submit(() -> {
+                    encode(buffer, output, index);
+                    return null;
+                });
+            }
+            for (Future<?> pending : encoding) {
+                if (pending != null) {
+                    long stallStart = System.nanoTime();
+                    await(pending);
+                    stallNanos += System.nanoTime() - stallStart;
+                }
+            }
+        } finally {
+            encoder.shutdownNow();
+            totalNanos = System.nanoTime() - start;
+        }
+    }
+
+    private void encode(FrameBuffer buffer, FrameOutput output, int frame) throws IOException {
+        try (RasterSink sink = output.open(frame)) {
+            sink.begin(width, height);
+            sink.writeRows(0, height, buffer.linearRgb);
+            sink.finish();
+        }
+    }
+
+    private static void await(Future<?> encoding) throws IOException {
+        try {
+            encoding.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing a frame.", e);
+        } catch (ExecutionException e) {
+            // The executor wraps checked exceptions of the encoder
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+            }
+            throw new IOException("Failed to write a frame.", e.getCause());
+        }
+    }
+
+    /**
+     * @return The time the last render spent tracing, in nanoseconds.
+     */
+    public long getTraceNanos() {
+        return traceNanos;
+    }
+
+    /**
+     * @return The time the last render spent posing the scene and updating its hierarchies, in nanoseconds.
+     */
+    public long getPoseNanos() {
+        return poseNanos;
+    }
+
+    /**
+     * @return The time the last render waited for the encoder, in nanoseconds.
+     */
+    public long getStallNanos() {
+        return stallNanos;
+    }
+
+    /**
+     * @return The wall-clock time of the last render, in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * @return How often the last render rebuilt the sphere hierarchy instead of refitting it.
+     */
+    public int getRebuilds() {
+        return rebuilds;
+    }
+}
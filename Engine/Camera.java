@@ -0,0 +1,166 @@
+package Engine;
+
+import Vectors.Vec3;
+import Vectors.Vector;
+
+/**
+ * A pinhole camera. The image plane is spanned by {@code horizontal} and {@code vertical} from
+ * {@code corner}, the point at u = v = 0; viewport coordinate (u, v) in [0, 1] maps to the point
+ * {@code corner + u * horizontal + v * vertical}, and every primary ray starts at the origin.
+ * Renderers put image row 0 at v = 0, so {@code corner} is the top left corner of the image
+ * whenever {@code vertical} points down, as it does for look-at cameras.
+ */
+public class Camera {
+    // Generalized golden ratio increments of the R2 low-discrepancy sequence
+    private static final double R2_ALPHA_X = 0.7548776662466927;
+    private static final double R2_ALPHA_Y = 0.5698402909980532;
+
+    private final Vec3 origin;
+    private final Vec3 corner;
+    private final Vec3 horizontal;
+    private final Vec3 vertical;
+
+    public Camera(Vector origin, Vector corner, Vector horizontal, Vector vertical) {
+        this(Vec3.of(origin), Vec3.of(corner), Vec3.of(horizontal), Vec3.of(vertical));
+    }
+
+    public Camera(Vec3 origin, Vec3 corner, Vec3 horizontal, Vec3 vertical) {
+        this.origin = new Vec3(origin);
+        this.corner = new Vec3(corner);
+        this.horizontal = new Vec3(horizontal);
+        this.vertical = new Vec3(vertical);
+    }
+
+    /**
+     * Creates a camera at {@code eye} looking at {@code target}, with an image plane one unit in front of the eye.
+     * Renderers put image row 0 at v = 0, so {@code corner} is the top left corner of the plane and
+     * {@code vertical} points down, which keeps {@code up} at the top of the image.
+     * @param eye The camera position.
+     * @param target The point in the center of the image.
+     * @param up The approximate up direction; it must not be parallel to the viewing direction.
+     * @param verticalFieldOfView The vertical opening angle in degrees, between 0 and 180 exclusive.
+     * @param aspectRatio The image width divided by its height.
+     */
+    public Camera(Vec3 eye, Vec3 target, Vec3 up, double verticalFieldOfView, double aspectRatio) {
+        if (!(verticalFieldOfView > 0 && verticalFieldOfView < 180)) {
+            throw new IllegalArgumentException("The field of view must be between 0 and 180 degrees.");
+        }
+        if (!(aspectRatio > 0)) {
+            throw new IllegalArgumentException("The aspect ratio must be positive.");
+        }
+        Vec3 forward = Vec3.subtract(target, eye, new Vec3());
+        if (forward.dot(forward) == 0) {
+            throw new IllegalArgumentException("The target must differ from the eye position.");
+        }
+        forward.normalize();
+        Vec3 right = Vec3.cross(forward, up, new Vec3());
+        if (right.dot(right) < 1e-24) {
+            throw new IllegalArgumentException("The up direction must not be parallel to the viewing direction.");
+        }
+        right.normalize();
+        Vec3 cameraUp = Vec3.cross(right, forward, new Vec3());
+
+        double halfHeight = Math.tan(Math.toRadians(verticalFieldOfView) / 2);
+        double halfWidth = halfHeight * aspectRatio;
+        this.origin = new Vec3(eye);
+        this.horizontal = new Vec3(right).scale(2 * halfWidth);
+        this.vertical = new Vec3(cameraUp).scale(-2 * halfHeight);
+        this.corner = new Vec3(eye).add(forward).addScaled(right, -halfWidth).addScaled(cameraUp, halfHeight);
+    }
+
+    public Vec3 getOrigin() {
+        return origin;
+    }
+
+    /**
+     * @return The point of the image plane at u = v = 0.
+     */
+    public Vec3 getCorner() {
+        return corner;
+    }
+
+    public Vec3 getHorizontal() {
+        return horizontal;
+    }
+
+    public Vec3 getVertical() {
+        return vertical;
+    }
+
+    public Ray getRay(double u, double v) {
+        return getRay(u, v, new Ray());
+    }
+
+    /**
+     * Writes the primary ray through the viewport coordinate (u, v) into {@code out}
+     * without allocating.
+     */
+    public Ray getRay(double u, double v, Ray out) {
+        out.getDirection().set(corner)
+                .addScaled(horizontal, u)
+                .addScaled(vertical, v)
+                .subtract(origin);
+        out.getOrigin().set(origin);
+        return out;
+    }
+
+    /**
+     * Writes the unnormalized directions of the primary rays of a rectangle of pixels into
+     * parallel arrays, row by row. All rays start at {@link #getOrigin()}. The image plane point
+     * is computed once per row and then stepped by a fixed per-pixel delta, so a ray costs three
+     * additions.
+     * @param x0 The left column of the rectangle.
+     * @param y0 The first row of the rectangle.
+     * @param columns The rectangle width.
+     * @param rows The rectangle height.
+     * @param width The frame width.
+     * @param height The frame height.
+     * @param offsetX The horizontal sample position inside each pixel, 0.5 for the pixel centers.
+     * @param offsetY The vertical sample position inside each pixel, 0.5 for the pixel centers.
+     * @param directionX Receives the x components.
+     * @param directionY Receives the y components.
+     * @param directionZ Receives the z components.
+     * @param offset The index the first ray is written at.
+     */
+    public void getRays(int x0, int y0, int columns, int rows, int width, int height, double offsetX, double offsetY,
+                        double[] directionX, double[] directionY, double[] directionZ, int offset) {
+        double stepX = horizontal.x / width;
+        double stepY = horizontal.y / width;
+        double stepZ = horizontal.z / width;
+        int index = offset;
+        for (int row = 0; row < rows; row++) {
+            double u = (x0 + offsetX) / width;
+            double v = (y0 + row + offsetY) / height;
+            double x = corner.x + horizontal.x * u + vertical.x * v - origin.x;
+            double y = corner.y + horizontal.y * u + vertical.y * v - origin.y;
+            double z = corner.z + horizontal.z * u + vertical.z * v - origin.z;
+            for (int column = 0; column < columns; column++, index++) {
+                directionX[index] = x;
+                directionY[index] = y;
+                directionZ[index] = z;
+                x += stepX;
+                y += stepY;
+                z += stepZ;
+            }
+        }
+    }
+
+    /**
+     * Returns the horizontal position inside a pixel of one anti-aliasing sample. Sample 0 is the
+     * pixel center; the following samples walk the R2 low-discrepancy sequence, so any number of
+     * leading samples covers the pixel evenly.
+     * @param sample The sample index, at least 0.
+     * @return The position in [0, 1).
+     */
+    public static double getSampleOffsetX(int sample) {
+        return (0.5 + sample * R2_ALPHA_X) % 1.0;
+    }
+
+    /**
+     * Returns the vertical position inside a pixel of one anti-aliasing sample.
+     * @see #getSampleOffsetX(int)
+     */
+    public static double getSampleOffsetY(int sample) {
+        return (0.5 + sample * R2_ALPHA_Y) % 1.0;
+    }
+}
@@ -0,0 +1,41 @@
+package Engine;
+
+import Materials.Material;
+import Objects.Shapes.Plane;
+import Objects.Shapes.Sphere;
+import Objects.lights.Light;
+import Vectors.Vector;
+import java.awt.Color;
+import java.util.List;
+
+/**
+ * The built-in two sphere scene shown by the viewer and used when no scene file is given.
+ */
+public final class DemoScene {
+    private DemoScene() {
+    }
+
+    public static Scene create() {
+        Camera camera = new Camera(
+                new Vector(List.of(0.0, 0.0, 0.0)),
+                // Image row 0 is the top of the view, so the plane starts at its top left corner
+                new Vector(List.of(-2.0, 1.5, -1.0)),
+                new Vector(List.of(4.0, 0.0, 0.0)),
+                new Vector(List.of(0.0, -3.0, 0.0))
+        );
+
+        Light light = new Light(new Vector(List.of(-3.0, -1.0, -2.0)),8.0);
+        Plane groundPlane = new Plane(new Vector(List.of(0.0, 1.0, 0.0)), new Vector(List.of(0.0, -1.0, 0.0)), Color.gray);
+        Scene scene = new Scene(camera, light, groundPlane);
+
+        Material sphereMaterial = new Material(Color.green);
+        Material sphereMaterial2 = new Material(Color.red);
+
+        Sphere sphere = new Sphere(new Vector(List.of(1.0, -1.0, -2.0)), 1, sphereMaterial);
+        Sphere sphere2 = new Sphere(new Vector(List.of(2.0, -1.5, -1.0)), 1, sphereMaterial2);
+
+        scene.addObject(sphere);
+        scene.addObject(sphere2);
+        return scene;
+    }
+}
@@ -0,0 +1,96 @@
+package Engine;
+
+import Vectors.Vec3;
+
+/**
+ * The first hit of every pixel's center ray: distance, instance, shape, point and normal.
+ * A buffer is recorded during one full frame and then replayed by later frames of the same size,
+ * which shade the stored hits instead of tracing primary rays again. It belongs to one geometry
+ * snapshot and one camera instance; since both are replaced whenever the scene's geometry or
+ * camera changes, a buffer recorded for other instances is simply discarded.
+ */
+final class GBuffer {
+    static final int MISS = -1;
+
+    private final SceneGeometry geometry;
+    private final Camera camera;
+    private final int width;
+    private final int height;
+    private final double[] distance;
+    private final int[] instance;
+    private final int[] shape;
+    private final double[] point;
+    private final double[] normal;
+    private volatile boolean complete;
+
+    GBuffer(SceneGeometry geometry, Camera camera, int width, int height) {
+        this.geometry = geometry;
+        this.camera = camera;
+        this.width = width;
+        this.height = height;
+        int pixels = width * height;
+        this.distance = new double[pixels];
+        this.instance = new int[pixels];
+        this.shape = new int[pixels];
+        this.point = new double[pixels * 3];
+        this.normal = new double[pixels * 3];
+    }
+
+    boolean matches(SceneGeometry geometry, Camera camera, int width, int height) {
+        return this.geometry == geometry && this.camera == camera && this.width == width && this.height == height;
+    }
+
+    /**
+     * @return True once a whole frame has been recorded and the buffer can be replayed.
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    void markComplete() {
+        complete = true;
+    }
+
+    void recordMiss(int pixel) {
+        shape[pixel] = MISS;
+        distance[pixel] = Double.MAX_VALUE;
+    }
+
+    void record(int pixel, int hitInstance, int hitShape, double hitDistance, Vec3 hitPoint, Vec3 hitNormal) {
+        instance[pixel] = hitInstance;
+        shape[pixel] = hitShape;
+        distance[pixel] = hitDistance;
+        point[pixel * 3] = hitPoint.x;
+        point[pixel * 3 + 1] = hitPoint.y;
+        point[pixel * 3 + 2] = hitPoint.z;
+        normal[pixel * 3] = hitNormal.x;
+        normal[pixel * 3 + 1] = hitNormal.y;
+        normal[pixel * 3 + 2] = hitNormal.z;
+    }
+
+    /**
+     * @return The shape hit by the pixel's center ray, or {@link #MISS}.
+     */
+    int getShape(int pixel) {
+        return shape[pixel];
+    }
+
+    /**
+     * @return The instance containing the shape, or -1 for a directly placed shape.
+     */
+    int getInstance(int pixel) {
+        return instance[pixel];
+    }
+
+    double getDistance(int pixel) {
+        return distance[pixel];
+    }
+
+    void getPoint(int pixel, Vec3 out) {
+        out.set(point[pixel * 3], point[pixel * 3 + 1], point[pixel * 3 + 2]);
+    }
+
+    void getNormal(int pixel, Vec3 out) {
+        out.set(normal[pixel * 3], normal[pixel * 3 + 1], normal[pixel * 3 + 2]);
+    }
+}
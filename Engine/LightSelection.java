@@ -0,0 +1,64 @@
+package Engine;
+
+import Objects.lights.LightTree;
+import Vectors.Vec3;
+import java.util.Arrays;
+
+/**
+ * The lights one shading point takes its direct light from, each with the weight its contribution
+ * is added with. Scenes with no more lights than the sample count are shaded with every light at
+ * full weight. Larger scenes draw that many lights from the {@link LightTree}, stratified over
+ * [0, 1), and weight each by one over its probability and the sample count, so the sum estimates
+ * the light of all of them without bias. Like {@link PathTermination}, the random values depend
+ * only on the pixel sample and the ray's path, so the picks do not depend on the integrator.
+ * An instance belongs to one thread.
+ */
+final class LightSelection {
+    static final int DEFAULT_SAMPLES = 4;
+    // Decorrelates the light picks from the roulette decisions of the same ray
+    private static final long LIGHT_STREAM = 0x5851F42D4C957F2DL;
+
+    int[] lights = new int[DEFAULT_SAMPLES];
+    double[] weights = new double[DEFAULT_SAMPLES];
+    int size;
+    private final LightTree.Sample sample = new LightTree.Sample();
+
+    /**
+     * Chooses the lights for a shading point.
+     * @param tree The scene's lights.
+     * @param samples The number of lights to pick when the scene has more.
+     * @param point The shading point.
+     * @param normal The unit surface normal.
+     * @param seed The seed of the pixel sample.
+     * @param path The path of the ray that hit the point.
+     */
+    void select(LightTree tree, int samples, Vec3 point, Vec3 normal, long seed, long path) {
+        size = 0;
+        int count = tree.size();
+        if (count <= samples) {
+            reserve(count);
+            for (int light = 0; light < count; light++) {
+                lights[light] = light;
+                weights[light] = 1;
+            }
+            size = count;
+            return;
+        }
+        reserve(samples);
+        double offset = PathTermination.random(seed ^ LIGHT_STREAM, path);
+        for (int i = 0; i < samples; i++) {
+            if (tree.sample(point, normal, (i + offset) / samples, sample)) {
+                lights[size] = sample.light;
+                weights[size] = 1 / (samples * sample.probability);
+                size++;
+            }
+        }
+    }
+
+    private void reserve(int capacity) {
+        if (capacity > lights.length) {
+            lights = Arrays.copyOf(lights, capacity);
+            weights = Arrays.copyOf(weights, capacity);
+        }
+    }
+}
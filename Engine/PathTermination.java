@@ -0,0 +1,81 @@
+package Engine;
+
+/**
+ * Decides which reflection and refraction rays are worth tracing. Every secondary ray carries its
+ * throughput, the weight with which its color reaches the pixel. Rays below the contribution
+ * threshold are not traced; their share of the blend goes to the color of the surface they would
+ * have left, just as at the maximum depth. Past the roulette depth the remaining rays dimmer than
+ * {@value #SURVIVAL_THROUGHPUT} survive with a probability proportional to their throughput and
+ * have their weight divided by it, which keeps the image unbiased while ending long chains of dim
+ * bounces early.
+ * <p>
+ * The random decisions are derived from the pixel position and the ray's place in the tree of
+ * bounces, so a frame renders the same no matter which thread or integrator traces it.
+ */
+final class PathTermination {
+    static final double DEFAULT_CONTRIBUTION_THRESHOLD = 0.002;
+    static final int DEFAULT_ROULETTE_DEPTH = 4;
+    static final PathTermination DEFAULT = new PathTermination(DEFAULT_CONTRIBUTION_THRESHOLD, DEFAULT_ROULETTE_DEPTH);
+
+    /**
+     * The path of a primary ray. A reflection ray extends the path of its parent ray {@code p}
+     * to {@code 2p}, a refraction ray to {@code 2p + 1}.
+     */
+    static final long PRIMARY_PATH = 1;
+
+    // Rays at least this bright always survive the roulette
+    private static final double SURVIVAL_THROUGHPUT = 0.1;
+
+    final double contributionThreshold;
+    final int rouletteDepth;
+
+    PathTermination(double contributionThreshold, int rouletteDepth) {
+        this.contributionThreshold = contributionThreshold;
+        this.rouletteDepth = rouletteDepth;
+    }
+
+    /**
+     * @return True if a ray with this throughput is too dim to be traced.
+     */
+    boolean isNegligible(double throughput) {
+        return throughput < contributionThreshold;
+    }
+
+    /**
+     * Plays Russian roulette for a ray that is not negligible.
+     * @param weight The ray's weight in the blend at its origin.
+     * @param throughput The ray's weight in the pixel.
+     * @param depth The depth of the ray.
+     * @param seed The seed of the pixel sample.
+     * @param path The ray's path.
+     * @return The weight to trace the ray with, or 0 if the ray is terminated.
+     */
+    double survivingWeight(double weight, double throughput, int depth, long seed, long path) {
+        double survival = throughput / SURVIVAL_THROUGHPUT;
+        if (depth < rouletteDepth || survival >= 1) {
+            return weight;
+        }
+        return random(seed, path) < survival ? weight / survival : 0;
+    }
+
+    /**
+     * @return The seed of a sample through a point of the image plane.
+     */
+    static long seed(double imageX, double imageY) {
+        return mix(Double.doubleToLongBits(imageX) * 0x9E3779B97F4A7C15L + Double.doubleToLongBits(imageY));
+    }
+
+    /**
+     * @return A uniform value in [0, 1) for one ray of a sample.
+     */
+    static double random(long seed, long path) {
+        return (mix(seed ^ mix(path)) >>> 11) * 0x1.0p-53;
+    }
+
+    // The SplitMix64 finalizer
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
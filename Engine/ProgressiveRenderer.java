@@ -0,0 +1,218 @@
+package Engine;
+
+import Metrics.FrameRenderEvent;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Renders a frame in coarse-to-fine passes so a usable preview is available almost immediately.
+ * The first pass traces one ray per block of {@link #getInitialBlockSize()} pixels and fills the
+ * whole block with it; every following pass halves the block size until each pixel has its own
+ * ray. Samples from coarser passes sit on the same pixel centers as the final pass and are kept,
+ * so the passes together trace every pixel exactly once.
+ * Rendering can be cancelled from another thread, stopped by a condition or bounded by a time budget.
+ */
+public class ProgressiveRenderer {
+    private static final int DEFAULT_INITIAL_BLOCK_SIZE = 16;
+    private static final int ROWS_PER_TASK = 4;
+
+    /**
+     * Notified on the rendering thread after each completed pass.
+     */
+    @FunctionalInterface
+    public interface PassListener {
+        /**
+         * @param image The image being rendered; it holds the complete result of this pass.
+         * @param pass The zero-based pass number.
+         * @param blockSize The edge length in pixels of the blocks traced by this pass; 1 for the final pass.
+         */
+        void passCompleted(BufferedImage image, int pass, int blockSize);
+    }
+
+    private final Renderer renderer;
+    private int initialBlockSize = DEFAULT_INITIAL_BLOCK_SIZE;
+    private volatile boolean cancelled;
+    private volatile BooleanSupplier stopCondition;
+    private volatile boolean interrupted;
+    private volatile boolean timeLimited;
+    private volatile long deadline;
+
+    public ProgressiveRenderer(Renderer renderer) {
+        this.renderer = renderer;
+    }
+
+    /**
+     * Sets the block size of the first pass. It is rounded up to a power of two.
+     * @param initialBlockSize The block size, at least 1.
+     */
+    public void setInitialBlockSize(int initialBlockSize) {
+        if (initialBlockSize < 1) {
+            throw new IllegalArgumentException("Initial block size must be at least 1.");
+        }
+        int blockSize = 1;
+        while (blockSize < initialBlockSize) {
+            blockSize <<= 1;
+        }
+        this.initialBlockSize = blockSize;
+    }
+
+    public int getInitialBlockSize() {
+        return initialBlockSize;
+    }
+
+    /**
+     * Makes every render stop as soon as a condition holds. Unlike {@link #cancel()}, which only
+     * affects a render already in progress, the condition is checked from the start of each render,
+     * so a stop requested just before {@link #render(BufferedImage, PassListener)} is called is not lost.
+     * @param condition Polled by the worker threads between block rows; must be cheap and thread-safe. Null for none.
+     */
+    public void setStopCondition(BooleanSupplier condition) {
+        this.stopCondition = condition;
+    }
+
+    /**
+     * Stops a render in progress. The image keeps the last completed pass plus any blocks of the
+     * interrupted pass that were already refined.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Renders all passes without a time limit.
+     * @param image The image to render into.
+     * @param listener Notified after each pass, may be null.
+     * @return True if the full resolution pass completed.
+     */
+    public boolean render(BufferedImage image, PassListener listener) {
+        return render(image, 0, listener);
+    }
+
+    /**
+     * Renders passes until the image is complete, the time budget runs out or {@link #cancel()} is called.
+     * @param image The image to render into.
+     * @param timeBudgetMillis The maximum time to spend, or 0 for no limit. The first pass always completes.
+     * @param listener Notified after each pass, may be null.
+     * @return True if the full resolution pass completed.
+     */
+    public boolean render(BufferedImage image, long timeBudgetMillis, PassListener listener) {
+        FrameRenderEvent frameEvent = new FrameRenderEvent();
+        frameEvent.begin();
+        try {
+            return renderPasses(image, timeBudgetMillis, listener);
+        } finally {
+            Renderer.commitFrame(frameEvent, image.getWidth(), image.getHeight(), "progressive");
+        }
+    }
+
+    private boolean renderPasses(BufferedImage image, long timeBudgetMillis, PassListener listener) {
+        cancelled = false;
+        timeLimited = false;
+        long start = System.nanoTime();
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = Renderer.directPixels(image);
+        boolean direct = pixels != null;
+        if (!direct) {
+            pixels = new int[width * height];
+        }
+
+        int pass = 0;
+        for (int blockSize = initialBlockSize; blockSize >= 1; blockSize /= 2, pass++) {
+            boolean skipTraced = blockSize != initialBlockSize;
+            int blockRows = (height + blockSize - 1) / blockSize;
+            interrupted = false;
+            renderer.pool().invoke(new PassTask(pixels, width, height, blockSize, skipTraced, 0, blockRows));
+            if (!direct) {
+                image.setRGB(0, 0, width, height, pixels, 0, width);
+            }
+            if (interrupted) {
+                return false;
+            }
+            if (listener != null) {
+                listener.passCompleted(image, pass, blockSize);
+            }
+            if (pass == 0 && timeBudgetMillis > 0) {
+                // The budget only starts to apply once a first preview exists
+                deadline = start + timeBudgetMillis * 1_000_000;
+                timeLimited = true;
+            }
+            if (blockSize > 1 && isStopped()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isStopped() {
+        BooleanSupplier condition = stopCondition;
+        return cancelled || (condition != null && condition.getAsBoolean())
+                || (timeLimited && System.nanoTime() - deadline > 0);
+    }
+
+    /**
+     * Traces one pass over a range of block rows, splitting the range across the worker pool.
+     */
+    @SuppressWarnings("serial")
+    private final class PassTask extends RecursiveAction {
+        private final int[] pixels;
+        private final int width;
+        private final int height;
+        private final int blockSize;
+        private final boolean skipTraced;
+        private final int firstBlockRow;
+        private final int endBlockRow;
+
+        PassTask(int[] pixels, int width, int height, int blockSize, boolean skipTraced, int firstBlockRow, int endBlockRow) {
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+            this.blockSize = blockSize;
+            this.skipTraced = skipTraced;
+            this.firstBlockRow = firstBlockRow;
+            this.endBlockRow = endBlockRow;
+        }
+
+        @Override
+        protected void compute() {
+            if (endBlockRow - firstBlockRow > ROWS_PER_TASK) {
+                int middle = (firstBlockRow + endBlockRow) >>> 1;
+                invokeAll(new PassTask(pixels, width, height, blockSize, skipTraced, firstBlockRow, middle),
+                        new PassTask(pixels, width, height, blockSize, skipTraced, middle, endBlockRow));
+                return;
+            }
+            int parentBlockSize = blockSize * 2;
+            for (int blockRow = firstBlockRow; blockRow < endBlockRow; blockRow++) {
+                if (isStopped()) {
+                    interrupted = true;
+                    break;
+                }
+                int y = blockRow * blockSize;
+                boolean parentRow = y % parentBlockSize == 0;
+                for (int x = 0; x < width; x += blockSize) {
+                    int color;
+                    if (skipTraced && parentRow && x % parentBlockSize == 0) {
+                        // Traced by the previous pass at this very pixel center
+                        color = pixels[y * width + x];
+                    } else {
+                        color = renderer.shadePixel(x, y, width, height);
+                    }
+                    fill(x, y, color);
+                }
+            }
+            renderer.flushMetrics();
+        }
+
+        private void fill(int x, int y, int color) {
+            int x1 = Math.min(x + blockSize, width);
+            int y1 = Math.min(y + blockSize, height);
+            for (int row = y; row < y1; row++) {
+                int offset = row * width;
+                for (int column = x; column < x1; column++) {
+                    pixels[offset + column] = color;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package Engine;
+
+import Vectors.Vec3;
+import Vectors.Vector;
+
+public class Ray {
+    private final Vec3 origin;
+    private final Vec3 direction;
+
+    public Ray() {
+        this.origin = new Vec3();
+        this.direction = new Vec3();
+    }
+
+    public Ray(Vec3 origin, Vec3 direction) {
+        this.origin = new Vec3(origin);
+        this.direction = new Vec3(direction);
+    }
+
+    public Ray(Vector origin, Vector direction) {
+        this(Vec3.of(origin), Vec3.of(direction));
+    }
+
+    /**
+     * Re-targets this ray so a single instance can be reused for many traces.
+     * @param origin The new origin, copied into this ray.
+     * @param direction The new direction, copied into this ray.
+     * @return This ray.
+     */
+    public Ray set(Vec3 origin, Vec3 direction) {
+        this.origin.set(origin);
+        this.direction.set(direction);
+        return this;
+    }
+
+    public Vec3 getDirection(){
+        return direction;
+    }
+
+    public Vec3 getOrigin(){
+        return origin;
+    }
+
+    public Vec3 pointAtParameter(double t){
+        return pointAtParameter(t, new Vec3());
+    }
+
+    public Vec3 pointAtParameter(double t, Vec3 out){
+        return Vec3.pointAt(origin, direction, t, out);
+    }
+
+}
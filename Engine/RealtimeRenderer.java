@@ -0,0 +1,226 @@
+package Engine;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Renders a scene continuously for interactive use, keeping each frame within a time budget.
+ * While the camera moves, frames are rendered at a reduced internal resolution: the cost of
+ * every frame is measured and the resolution scale is steered towards the one that meets the
+ * target frame time, in steps of {@code 1 / SCALE_STEPS} of the full width and height. Once the
+ * camera has stopped, the frame is refined to full resolution with a {@link ProgressiveRenderer},
+ * which stops as soon as the camera moves again.
+ * <p>
+ * Every step owns one framebuffer, allocated on first use and reused for every later frame of
+ * that size, so the loop does not allocate images while it runs. Frames are handed to a
+ * {@link FrameListener}, which is expected to upscale them to the display size.
+ * The loop runs on the thread calling {@link #run(FrameListener)}; camera moves may come from
+ * any thread and are applied to the scene by the loop between frames.
+ */
+public class RealtimeRenderer {
+    public static final long DEFAULT_TARGET_FRAME_MILLIS = 33;
+    private static final int SCALE_STEPS = 8;
+    // How far each frame raises the scale towards the measured ideal, damping oscillation
+    private static final double SMOOTHING = 0.5;
+
+    /**
+     * Notified on the rendering thread whenever a frame is ready to be shown.
+     */
+    @FunctionalInterface
+    public interface FrameListener {
+        /**
+         * @param image The frame; it is reused for later frames of the same size, so it must be
+         *              shown or copied before this method returns.
+         * @param fullResolution True if the frame has the full width and height.
+         */
+        void frameRendered(BufferedImage image, boolean fullResolution);
+    }
+
+    private final Renderer renderer;
+    private final Scene scene;
+    private final ProgressiveRenderer refiner;
+    private final int width;
+    private final int height;
+    private final BufferedImage[] framebuffers = new BufferedImage[SCALE_STEPS + 1];
+    private final Object lock = new Object();
+    private long targetFrameNanos = DEFAULT_TARGET_FRAME_MILLIS * 1_000_000;
+    // Start coarse so the first frame appears quickly; the measured cost raises the scale from there
+    private double scale = 1.0 / SCALE_STEPS;
+    private Camera pendingCamera;
+    // Also polled by the refiner's workers, which stop as soon as it is set
+    private volatile boolean changed = true;
+    private volatile boolean running;
+
+    /**
+     * @param renderer The renderer tracing the frames.
+     * @param width The full resolution width.
+     * @param height The full resolution height.
+     */
+    public RealtimeRenderer(Renderer renderer, int width, int height) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Width and height must be positive.");
+        }
+        this.renderer = renderer;
+        this.scene = renderer.getScene();
+        this.refiner = new ProgressiveRenderer(renderer);
+        // A stop condition rather than cancel(), which a render starting right after the move would clear
+        this.refiner.setStopCondition(() -> changed || !running);
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * @param millis The frame time to keep while the camera moves, at least 1.
+     */
+    public void setTargetFrameTime(long millis) {
+        if (millis < 1) {
+            throw new IllegalArgumentException("The target frame time must be at least 1 ms.");
+        }
+        synchronized (lock) {
+            targetFrameNanos = millis * 1_000_000;
+        }
+    }
+
+    public long getTargetFrameTime() {
+        synchronized (lock) {
+            return targetFrameNanos / 1_000_000;
+        }
+    }
+
+    /**
+     * @return The edge length of the last frame relative to the full resolution, from {@code 1 / 8} to 1.
+     */
+    public double getScale() {
+        synchronized (lock) {
+            return quantize(scale) / (double) SCALE_STEPS;
+        }
+    }
+
+    /**
+     * Moves the camera. The scene picks it up before the next frame; a refinement in progress stops.
+     * @param camera The new camera.
+     */
+    public void moveCamera(Camera camera) {
+        if (camera == null) {
+            throw new IllegalArgumentException("The camera must not be null.");
+        }
+        synchronized (lock) {
+            pendingCamera = camera;
+            changed = true;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Renders a new frame although the camera did not move, e.g. after materials were edited.
+     */
+    public void invalidate() {
+        synchronized (lock) {
+            changed = true;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Ends {@link #run(FrameListener)} after the current frame.
+     */
+    public void stop() {
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Runs the render loop on the calling thread until {@link #stop()} is called.
+     * @param listener Receives every frame.
+     * @throws InterruptedException if the thread is interrupted while waiting for the camera to move.
+     */
+    public void run(FrameListener listener) throws InterruptedException {
+        running = true;
+        boolean refinementPending = false;
+        while (running) {
+            Camera camera;
+            boolean moved;
+            synchronized (lock) {
+                // Once the full resolution frame is done there is nothing to do until something changes
+                while (running && !changed && !refinementPending) {
+                    lock.wait();
+                }
+                if (!running) {
+                    return;
+                }
+                camera = pendingCamera;
+                pendingCamera = null;
+                moved = changed;
+                changed = false;
+            }
+            if (camera != null) {
+                scene.setCamera(camera);
+            }
+            if (moved) {
+                refinementPending = !renderScaled(listener);
+            } else {
+                refine(listener);
+                refinementPending = false;
+            }
+        }
+    }
+
+    /**
+     * Renders one frame at the current scale and adjusts the scale to the measured cost.
+     * @return True if the frame had full resolution.
+     */
+    private boolean renderScaled(FrameListener listener) {
+        int step;
+        long target;
+        synchronized (lock) {
+            step = quantize(scale);
+            target = targetFrameNanos;
+        }
+        BufferedImage image = framebuffer(step);
+        long start = System.nanoTime();
+        renderer.renderTiled(image);
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        listener.frameRendered(image, step == SCALE_STEPS);
+
+        // The cost grows with the pixel count, so the edge scale follows its square root.
+        // Over budget the scale drops at once; below it, it recovers gradually.
+        double ideal = step / (double) SCALE_STEPS * Math.sqrt(target / (double) elapsed);
+        synchronized (lock) {
+            double next = ideal < scale ? ideal : scale + (ideal - scale) * SMOOTHING;
+            scale = Math.max(1.0 / SCALE_STEPS, Math.min(1, next));
+        }
+        return step == SCALE_STEPS;
+    }
+
+    /**
+     * Refines the still frame to full resolution, showing only passes sharper than the moving frames were.
+     */
+    private void refine(FrameListener listener) {
+        BufferedImage image = framebuffer(SCALE_STEPS);
+        int shownBlockSize;
+        synchronized (lock) {
+            shownBlockSize = SCALE_STEPS / quantize(scale);
+        }
+        refiner.render(image, (rendered, pass, blockSize) -> {
+            if (blockSize < shownBlockSize || blockSize == 1) {
+                listener.frameRendered(rendered, blockSize == 1);
+            }
+        });
+    }
+
+    private BufferedImage framebuffer(int step) {
+        BufferedImage image = framebuffers[step];
+        if (image == null) {
+            int scaledWidth = Math.max(1, width * step / SCALE_STEPS);
+            int scaledHeight = Math.max(1, height * step / SCALE_STEPS);
+            image = new BufferedImage(scaledWidth, scaledHeight, BufferedImage.TYPE_INT_RGB);
+            framebuffers[step] = image;
+        }
+        return image;
+    }
+
+    private static int quantize(double scale) {
+        return Math.max(1, Math.min(SCALE_STEPS, (int) Math.round(scale * SCALE_STEPS)));
+    }
+}
@@ -0,0 +1,1195 @@
+package Engine;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import Acceleration.Hit;
+import Colors.LinearColor;
+import Materials.Material;
+import Metrics.FrameRenderEvent;
+import Metrics.RayType;
+import Metrics.RenderMetrics;
+import Metrics.TileRenderEvent;
+import Metrics.TileTimings;
+import Objects.lights.LightTree;
+import Output.RasterSink;
+import Vectors.Vec3;
+
+/**
+ * The Renderer class is responsible for rendering a scene by tracing rays
+ * and computing colors based on intersections with objects and light sources.
+ */
+public class Renderer {
+    public static final int DEFAULT_TILE_SIZE = 32;
+    static final double SHADOW_BIAS = 1e-4;
+
+    private Scene scene;
+    private int tileSize = DEFAULT_TILE_SIZE;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int maxSamples = 1;
+    private double contrastThreshold = 0.1;
+    private volatile RenderMetrics metrics;
+    private volatile boolean wavefront = true;
+    private volatile PathTermination termination = PathTermination.DEFAULT;
+    private volatile int lightSamples = LightSelection.DEFAULT_SAMPLES;
+    private volatile AmbientOcclusion occlusion = AmbientOcclusion.DEFAULT;
+    private volatile TileCache tileCache;
+    private boolean firstHitCaching;
+    private GBuffer firstHits;
+    private ForkJoinPool pool;
+    // False while rendering on a pool passed to the constructor, which is never shut down here
+    private boolean ownsPool = true;
+    private final ThreadLocal<TraceState> traceStates = ThreadLocal.withInitial(TraceState::new);
+
+    /**
+     * Scratch vectors used while shading a single hit. One frame exists per recursion
+     * depth so reflection rays can be traced without allocating or clobbering the caller's state.
+     */
+    private static final class TraceFrame {
+        final Vec3 point = new Vec3();
+        final Vec3 normal = new Vec3();
+        final Vec3 lightPosition = new Vec3();
+        final Vec3 lightDir = new Vec3();
+        final Vec3 viewDir = new Vec3();
+        final Vec3 reflectionDir = new Vec3();
+        final Vec3 shadowOrigin = new Vec3();
+        final Vec3 shadowDir = new Vec3();
+        final Vec3 occlusionOrigin = new Vec3();
+        final Vec3 occlusionDir = new Vec3();
+        final Vec3 incidentDir = new Vec3();
+        final Vec3 facingNormal = new Vec3();
+        boolean entering;
+        final Vec3 refractionOrigin = new Vec3();
+        final Vec3 refractionDir = new Vec3();
+        final Ray reflectionRay = new Ray();
+        final Ray refractionRay = new Ray();
+        final LinearColor reflectionColor = new LinearColor();
+        final LinearColor refractionColor = new LinearColor();
+    }
+
+    /**
+     * Per-thread tracing state: the reusable primary ray, the stack of scratch frames, the
+     * last shadow occluder, which is tested first by the next shadow ray, and the ray counts
+     * not yet added to the renderer's metrics.
+     */
+    private static final class TraceState {
+        final Ray primaryRay = new Ray();
+        final Hit hit = new Hit();
+        final Hit shadowHit = new Hit();
+        SceneGeometry occluderGeometry;
+        int lastOccluderInstance = -1;
+        int lastOccluder = -1;
+        int primaryInstance = -1;
+        int primaryObject = -1;
+        double primaryDistance = Double.MAX_VALUE;
+        long sampleSeed;
+        int pixelX;
+        int pixelY;
+        final LightSelection lights = new LightSelection();
+        final LinearColor pixelColor = new LinearColor();
+        final long[] raysByType = new long[RayType.values().length];
+        final long[] raysByDepth = new long[RenderMetrics.DEPTH_BUCKETS];
+        TraceFrame[] frames = new TraceFrame[0];
+        float[] tileColors = new float[0];
+        private WavefrontIntegrator wavefront;
+
+        /**
+         * @return This thread's wavefront integrator, which shares the state's hits and ray counts.
+         */
+        WavefrontIntegrator wavefront() {
+            if (wavefront == null) {
+                wavefront = new WavefrontIntegrator(hit, shadowHit, raysByType, raysByDepth);
+            }
+            return wavefront;
+        }
+
+        /**
+         * Returns the scratch frame for the given recursion depth, growing the stack on demand.
+         * @param depth The recursion depth.
+         * @return The reusable frame for that depth.
+         */
+        TraceFrame frame(int depth) {
+            if (depth >= frames.length) {
+                TraceFrame[] grown = Arrays.copyOf(frames, depth + 1);
+                for (int i = frames.length; i < grown.length; i++) {
+                    grown[i] = new TraceFrame();
+                }
+                frames = grown;
+            }
+            return frames[depth];
+        }
+    }
+
+    /**
+     * Constructs a Renderer with the given scene.
+     * @param scene The Scene object containing camera, light, and objects to render.
+     */
+    public Renderer(Scene scene) {
+        this.scene = scene;
+    }
+
+    /**
+     * Constructs a Renderer that renders on an existing pool, so short-lived renderers, e.g. one
+     * per request, share worker threads instead of each starting their own. The pool's parallelism
+     * is used until {@link #setParallelism(int)} switches to a pool owned by the renderer.
+     * @param scene The scene to render.
+     * @param pool The worker pool; it stays open when the renderer is discarded.
+     */
+    public Renderer(Scene scene, ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("The pool must not be null.");
+        }
+        this.scene = scene;
+        this.pool = pool;
+        this.parallelism = pool.getParallelism();
+        this.ownsPool = false;
+    }
+
+    public Scene getScene() {
+        return scene;
+    }
+
+    /**
+     * Sets the edge length in pixels of the square tiles used by {@link #renderTiled(BufferedImage)}.
+     * @param tileSize The tile size, at least 1.
+     */
+    public void setTileSize(int tileSize) {
+        if (tileSize < 1) {
+            throw new IllegalArgumentException("Tile size must be at least 1.");
+        }
+        this.tileSize = tileSize;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Sets the number of worker threads used by {@link #renderTiled(BufferedImage)}.
+     * @param parallelism The number of workers, at least 1.
+     */
+    public synchronized void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1.");
+        }
+        if (parallelism != this.parallelism && pool != null) {
+            if (ownsPool) {
+                pool.shutdown();
+            }
+            pool = null;
+            ownsPool = true;
+        }
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Enables adaptive anti-aliasing for {@link #renderTiled(BufferedImage)}. Every pixel first gets
+     * one sample through its center; pixels whose primary ray hits a different object than a
+     * neighbour's, or whose brightness differs from a neighbour's by more than the threshold, are
+     * then resampled with {@code maxSamples} samples in total.
+     * @param maxSamples The sample budget of a refined pixel; 1 disables anti-aliasing.
+     * @param contrastThreshold The brightness difference, on a perceptual 0 to 1 scale, that marks an edge.
+     */
+    public void setAdaptiveAntiAliasing(int maxSamples, double contrastThreshold) {
+        if (maxSamples < 1) {
+            throw new IllegalArgumentException("The sample budget must be at least 1.");
+        }
+        if (contrastThreshold < 0) {
+            throw new IllegalArgumentException("The contrast threshold must not be negative.");
+        }
+        this.maxSamples = maxSamples;
+        this.contrastThreshold = contrastThreshold;
+    }
+
+    public int getMaxSamples() {
+        return maxSamples;
+    }
+
+    public double getContrastThreshold() {
+        return contrastThreshold;
+    }
+
+    /**
+     * Sets where ray counts, intersection statistics and per-tile timings are collected.
+     * Worker threads add their counts once per tile or band, so the counters stay cheap;
+     * with no metrics set only plain per-thread counting remains.
+     * @param metrics The metrics to add to, or null to stop collecting.
+     */
+    public void setMetrics(RenderMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public RenderMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Chooses how single-sample tiles are traced. The wavefront integrator, used by default, traces
+     * a whole tile one bounce at a time from ray queues; the recursive integrator follows each
+     * pixel's rays depth-first. Both produce the same image. Cached first hits and anti-aliasing
+     * refinement samples are always traced recursively.
+     * @param enabled Whether to use the wavefront integrator.
+     */
+    public void setWavefront(boolean enabled) {
+        wavefront = enabled;
+    }
+
+    public boolean isWavefront() {
+        return wavefront;
+    }
+
+    /**
+     * Configures when reflection and refraction rays stop before the scene's maximum depth.
+     * A secondary ray whose weight in the final pixel falls below the contribution threshold is
+     * not traced, and the surface it would have left keeps its share of the blend, as it does at
+     * the maximum depth. From the roulette depth on, dim secondary rays survive with a
+     * probability proportional to their weight in the pixel and are weighted up accordingly,
+     * which is unbiased but adds some noise to deep reflections.
+     * @param contributionThreshold The smallest weight in the pixel worth tracing, between 0 and 1; 0 traces every ray.
+     * @param rouletteDepth The depth from which Russian roulette applies, at least 1.
+     */
+    public void setPathTermination(double contributionThreshold, int rouletteDepth) {
+        if (!(contributionThreshold >= 0 && contributionThreshold <= 1)) {
+            throw new IllegalArgumentException("The contribution threshold must be between 0 and 1.");
+        }
+        if (rouletteDepth < 1) {
+            throw new IllegalArgumentException("The roulette depth must be at least 1.");
+        }
+        termination = new PathTermination(contributionThreshold, rouletteDepth);
+    }
+
+    public double getContributionThreshold() {
+        return termination.contributionThreshold;
+    }
+
+    public int getRouletteDepth() {
+        return termination.rouletteDepth;
+    }
+
+    /**
+     * Sets how many lights each shading point is lit by. Scenes with at most this many lights are
+     * shaded with all of them; larger scenes pick this many per point from the scene's light
+     * hierarchy in proportion to their estimated contribution, so shading costs time logarithmic
+     * in the light count at the price of some noise.
+     * @param samples The number of lights per shading point, at least 1.
+     */
+    public void setLightSamples(int samples) {
+        if (samples < 1) {
+            throw new IllegalArgumentException("At least one light sample is needed.");
+        }
+        lightSamples = samples;
+    }
+
+    public int getLightSamples() {
+        return lightSamples;
+    }
+
+    /**
+     * Sets how the ambient light is shadowed. Every shading point casts up to this many rays over
+     * the hemisphere around its normal and dims its ambient light by the fraction that hits
+     * something within the radius, which darkens creases and the contact points of objects.
+     * Points whose first few rays all agree skip the rest.
+     * @param samples The number of rays per shading point, between 0 and {@value AmbientOcclusion#MAX_SAMPLES}; 0 disables the occlusion.
+     * @param radius How far away geometry occludes a point, greater than 0.
+     */
+    public void setAmbientOcclusion(int samples, double radius) {
+        if (samples < 0 || samples > AmbientOcclusion.MAX_SAMPLES) {
+            throw new IllegalArgumentException("The ambient occlusion sample count must be between 0 and " + AmbientOcclusion.MAX_SAMPLES + ".");
+        }
+        if (!(radius > 0) || Double.isInfinite(radius)) {
+            throw new IllegalArgumentException("The ambient occlusion radius must be positive and finite.");
+        }
+        occlusion = new AmbientOcclusion(samples, radius);
+    }
+
+    public int getAmbientOcclusionSamples() {
+        return occlusion.samples;
+    }
+
+    public double getAmbientOcclusionRadius() {
+        return occlusion.radius;
+    }
+
+    /**
+     * Makes {@link #render(int, int, RasterSink)} look every tile up in a cache before tracing it and
+     * store the tiles it traces, so frames that differ from earlier ones only in places trace only
+     * the tiles those places can affect. The first-hit cache is not used while a tile cache is set.
+     * @param cache The cache, or null to trace every tile.
+     */
+    public void setTileCache(TileCache cache) {
+        tileCache = cache;
+    }
+
+    public TileCache getTileCache() {
+        return tileCache;
+    }
+
+    /**
+     * Enables caching of each pixel's first hit for {@link #renderTiled(BufferedImage)} and
+     * {@link #render(int, int, RasterSink)}. The first frame records the hits; following frames of
+     * the same size reuse them and only trace shadow and secondary rays, so changes to the light or
+     * to material properties render much faster. Replacing the camera or changing the geometry
+     * records the hits anew. Cameras must be replaced through {@link Scene#setCamera(Camera)}
+     * rather than modified in place.
+     * @param enabled Whether to cache first hits.
+     */
+    public synchronized void setFirstHitCaching(boolean enabled) {
+        firstHitCaching = enabled;
+        if (!enabled) {
+            firstHits = null;
+        }
+    }
+
+    public synchronized boolean isFirstHitCaching() {
+        return firstHitCaching;
+    }
+
+    /**
+     * Discards the cached first hits so the next frame records them again.
+     */
+    public synchronized void invalidateFirstHits() {
+        firstHits = null;
+    }
+
+    /**
+     * @return The first-hit cache for a frame of the given size, or null if caching is disabled.
+     */
+    private synchronized GBuffer firstHitsFor(int width, int height) {
+        if (!firstHitCaching) {
+            return null;
+        }
+        SceneGeometry geometry = scene.getGeometry();
+        Camera camera = scene.getCamera();
+        if (firstHits == null || !firstHits.matches(geometry, camera, width, height)) {
+            firstHits = new GBuffer(geometry, camera, width, height);
+        }
+        return firstHits;
+    }
+
+    /**
+     * Renders the scene onto the provided BufferedImage.
+     * @param image The BufferedImage to draw the rendered scene onto.
+     */
+    public void render(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        TraceState state = traceStates.get();
+
+        // Iterate over each pixel in the image
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // Set the pixel color in the BufferedImage
+                image.setRGB(x, y, shadePixel(x, y, width, height, state));
+            }
+        }
+    }
+
+    /**
+     * Renders the scene onto the provided BufferedImage using all configured worker threads.
+     * The frame is split into square tiles which are scheduled on a work-stealing fork-join pool.
+     * For integer RGB images the tiles write straight into the backing {@link DataBufferInt};
+     * other image types are rendered into an intermediate buffer and copied once at the end.
+     * @param image The BufferedImage to draw the rendered scene onto.
+     */
+    public void renderTiled(BufferedImage image) {
+        FrameRenderEvent frameEvent = new FrameRenderEvent();
+        frameEvent.begin();
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = directPixels(image);
+        boolean direct = pixels != null;
+        if (!direct) {
+            pixels = new int[width * height];
+        }
+
+        int tilesX = (width + tileSize - 1) / tileSize;
+        int tilesY = (height + tileSize - 1) / tileSize;
+        TileTimings timings = beginFrame(width, height, tileSize, tileSize);
+        GBuffer cache = firstHitsFor(width, height);
+        if (maxSamples > 1) {
+            // Keep the first pass around so the refinement pass can compare neighbours
+            FirstPass firstPass = new FirstPass(width, height);
+            pool().invoke(new TileTask(pixels, firstPass, false, cache, timings, width, height, tilesX, 0, tilesX * tilesY));
+            pool().invoke(new TileTask(pixels, firstPass, true, null, timings, width, height, tilesX, 0, tilesX * tilesY));
+        } else {
+            pool().invoke(new TileTask(pixels, null, false, cache, timings, width, height, tilesX, 0, tilesX * tilesY));
+        }
+        if (cache != null) {
+            cache.markComplete();
+        }
+
+        if (!direct) {
+            image.setRGB(0, 0, width, height, pixels, 0, width);
+        }
+        commitFrame(frameEvent, width, height, "tiled");
+    }
+
+    /**
+     * @return The timings to fill in for a new frame, or null if no metrics are collected.
+     */
+    private TileTimings beginFrame(int width, int height, int tileWidth, int tileHeight) {
+        RenderMetrics current = metrics;
+        return current != null ? current.beginFrame(width, height, tileWidth, tileHeight) : null;
+    }
+
+    static void commitFrame(FrameRenderEvent event, int width, int height, String mode) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.width = width;
+            event.height = height;
+            event.mode = mode;
+            event.commit();
+        }
+    }
+
+    /**
+     * Ends the timing of a tile or band, records it and adds the thread's pending counts to the metrics.
+     */
+    private void finishTile(TileRenderEvent event, TileTimings timings, int tile, long startNanos, int x, int y, int width, int height, TraceState state) {
+        if (timings != null) {
+            timings.add(tile, System.nanoTime() - startNanos);
+        }
+        flushMetrics(state);
+        event.end();
+        if (event.shouldCommit()) {
+            event.x = x;
+            event.y = y;
+            event.width = width;
+            event.height = height;
+            event.commit();
+        }
+    }
+
+    /**
+     * Adds the calling thread's pending counts to the metrics.
+     */
+    void flushMetrics() {
+        flushMetrics(traceStates.get());
+    }
+
+    private void flushMetrics(TraceState state) {
+        RenderMetrics current = metrics;
+        if (current != null) {
+            current.addRays(state.raysByType);
+            current.addRaysByDepth(state.raysByDepth);
+            current.addIntersectionTests(state.hit.primitiveTests + state.shadowHit.primitiveTests);
+            current.addNodesVisited(state.hit.nodesVisited + state.shadowHit.nodesVisited);
+        } else {
+            Arrays.fill(state.raysByType, 0);
+            Arrays.fill(state.raysByDepth, 0);
+        }
+        state.hit.primitiveTests = 0;
+        state.hit.nodesVisited = 0;
+        state.shadowHit.primitiveTests = 0;
+        state.shadowHit.nodesVisited = 0;
+    }
+
+    /**
+     * Returns the backing pixel array of an image if it stores one packed RGB int per pixel
+     * with no row padding, or null otherwise.
+     * @param image The image to inspect.
+     * @return The writable pixel array, or null if the image needs the generic setRGB path.
+     */
+    public static int[] directPixels(BufferedImage image) {
+        int type = image.getType();
+        if (type != BufferedImage.TYPE_INT_RGB && type != BufferedImage.TYPE_INT_ARGB) {
+            return null;
+        }
+        if (!(image.getRaster().getDataBuffer() instanceof DataBufferInt buffer)
+                || !(image.getSampleModel() instanceof SinglePixelPackedSampleModel sampleModel)
+                || sampleModel.getScanlineStride() != image.getWidth()
+                || image.getRaster().getSampleModelTranslateX() != 0
+                || image.getRaster().getSampleModelTranslateY() != 0) {
+            return null;
+        }
+        return buffer.getData();
+    }
+
+    synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism);
+        }
+        return pool;
+    }
+
+    /**
+     * The linear colors and primary hit objects of the single-sample pass, read by the
+     * adaptive refinement pass.
+     */
+    private static final class FirstPass {
+        final float[] linearRgb;
+        final int[] objects;
+
+        FirstPass(int width, int height) {
+            linearRgb = new float[width * height * 3];
+            objects = new int[width * height];
+        }
+
+        /**
+         * @return The approximate perceptual brightness of a pixel, using a gamma of 2.
+         */
+        double brightness(int index) {
+            double luminance = 0.2126 * linearRgb[index * 3] + 0.7152 * linearRgb[index * 3 + 1] + 0.0722 * linearRgb[index * 3 + 2];
+            return Math.sqrt(Math.max(0, luminance));
+        }
+    }
+
+    /**
+     * Fork-join task over a contiguous range of tile indices. Ranges are split in half until a
+     * single tile remains so idle workers can steal the outstanding halves.
+     * With a {@link FirstPass} the task either records the single-sample pass into it or, when
+     * {@code refine} is set, supersamples the pixels that the recorded pass marks as edges.
+     */
+    @SuppressWarnings("serial")
+    private final class TileTask extends RecursiveAction {
+        private final int[] pixels;
+        private final FirstPass firstPass;
+        private final boolean refine;
+        private final GBuffer cache;
+        private final TileTimings timings;
+        private final int width;
+        private final int height;
+        private final int tilesX;
+        private final int firstTile;
+        private final int endTile;
+
+        TileTask(int[] pixels, FirstPass firstPass, boolean refine, GBuffer cache, TileTimings timings, int width, int height, int tilesX, int firstTile, int endTile) {
+            this.pixels = pixels;
+            this.firstPass = firstPass;
+            this.refine = refine;
+            this.cache = cache;
+            this.timings = timings;
+            this.width = width;
+            this.height = height;
+            this.tilesX = tilesX;
+            this.firstTile = firstTile;
+            this.endTile = endTile;
+        }
+
+        @Override
+        protected void compute() {
+            if (endTile - firstTile > 1) {
+                int middle = (firstTile + endTile) >>> 1;
+                invokeAll(new TileTask(pixels, firstPass, refine, cache, timings, width, height, tilesX, firstTile, middle),
+                        new TileTask(pixels, firstPass, refine, cache, timings, width, height, tilesX, middle, endTile));
+                return;
+            }
+            TileRenderEvent event = new TileRenderEvent();
+            event.begin();
+            long start = timings != null ? System.nanoTime() : 0;
+            int x0 = (firstTile % tilesX) * tileSize;
+            int y0 = (firstTile / tilesX) * tileSize;
+            int x1 = Math.min(x0 + tileSize, width);
+            int y1 = Math.min(y0 + tileSize, height);
+            TraceState state = traceStates.get();
+            if (!refine && cache == null && wavefront) {
+                WavefrontIntegrator integrator = state.wavefront();
+                integrator.trace(scene, termination, lightSamples, occlusion, x0, y0, x1 - x0, y1 - y0, width, height);
+                int sample = 0;
+                for (int y = y0; y < y1; y++) {
+                    for (int x = x0; x < x1; x++, sample++) {
+                        LinearColor color = state.pixelColor.set(integrator.red[sample], integrator.green[sample], integrator.blue[sample]);
+                        store(y * width + x, color, integrator.objects[sample]);
+                    }
+                }
+            } else {
+                for (int y = y0; y < y1; y++) {
+                    int row = y * width;
+                    for (int x = x0; x < x1; x++) {
+                        if (!refine) {
+                            LinearColor color = samplePixel(x, y, width, height, cache, state);
+                            store(row + x, color, SceneGeometry.objectId(state.primaryInstance, state.primaryObject));
+                        } else if (isEdge(x, y)) {
+                            pixels[row + x] = supersamplePixel(x, y, width, height, firstPass, state);
+                        }
+                    }
+                }
+            }
+            finishTile(event, timings, firstTile, start, x0, y0, x1 - x0, y1 - y0, state);
+        }
+
+        /**
+         * Writes a single-sample pixel, recording it in the first pass if there is one.
+         */
+        private void store(int index, LinearColor color, int object) {
+            if (firstPass != null) {
+                firstPass.linearRgb[index * 3] = (float) color.r;
+                firstPass.linearRgb[index * 3 + 1] = (float) color.g;
+                firstPass.linearRgb[index * 3 + 2] = (float) color.b;
+                firstPass.objects[index] = object;
+            }
+            pixels[index] = color.toPackedSRGB();
+        }
+
+        private boolean isEdge(int x, int y) {
+            return differs(x, y, x - 1, y) || differs(x, y, x + 1, y) || differs(x, y, x, y - 1) || differs(x, y, x, y + 1);
+        }
+
+        private boolean differs(int x, int y, int neighbourX, int neighbourY) {
+            if (neighbourX < 0 || neighbourY < 0 || neighbourX >= width || neighbourY >= height) {
+                return false;
+            }
+            int index = y * width + x;
+            int neighbour = neighbourY * width + neighbourX;
+            return firstPass.objects[index] != firstPass.objects[neighbour]
+                    || Math.abs(firstPass.brightness(index) - firstPass.brightness(neighbour)) > contrastThreshold;
+        }
+    }
+
+    /**
+     * Averages the recorded center sample of a pixel with {@code maxSamples - 1} further samples
+     * placed on the R2 low-discrepancy sequence inside the pixel.
+     * @return The packed ARGB color of the refined pixel.
+     */
+    private int supersamplePixel(int x, int y, int width, int height, FirstPass firstPass, TraceState state) {
+        int index = y * width + x;
+        double red = firstPass.linearRgb[index * 3];
+        double green = firstPass.linearRgb[index * 3 + 1];
+        double blue = firstPass.linearRgb[index * 3 + 2];
+        for (int sample = 1; sample < maxSamples; sample++) {
+            LinearColor color = sampleAt(x + Camera.getSampleOffsetX(sample), y + Camera.getSampleOffsetY(sample), width, height, state);
+            red += color.r;
+            green += color.g;
+            blue += color.b;
+        }
+        return state.pixelColor.set(red, green, blue).scale(1.0 / maxSamples).toPackedSRGB();
+    }
+
+    /**
+     * Renders the scene into a streaming sink, one band of {@link #getTileSize()} rows at a time.
+     * Up to {@code parallelism + 1} bands are rendered concurrently on the worker pool while the
+     * calling thread hands finished bands to the sink in row order, so encoding and I/O overlap
+     * with tracing and only the bands in flight are ever held in memory.
+     * @param width The frame width in pixels.
+     * @param height The frame height in pixels.
+     * @param sink Receives the frame as linear RGB row bands. It is finished but not closed.
+     * @throws IOException if the sink fails; outstanding bands are cancelled.
+     */
+    public void render(int width, int height, RasterSink sink) throws IOException {
+        FrameRenderEvent frameEvent = new FrameRenderEvent();
+        frameEvent.begin();
+        int bandHeight = tileSize;
+        int bandCount = (height + bandHeight - 1) / bandHeight;
+        int window = Math.min(bandCount, parallelism + 1);
+        float[][] buffers = new float[window][width * bandHeight * 3];
+        ForkJoinTask<?>[] inFlight = new ForkJoinTask<?>[window];
+        ForkJoinPool workers = pool();
+        TileTimings timings = beginFrame(width, height, tileSize, bandHeight);
+        TileCache tiles = tileCache;
+        TileFingerprints fingerprints = tiles != null ? new TileFingerprints(scene, termination, lightSamples, occlusion, width, height) : null;
+        GBuffer cache = tiles == null ? firstHitsFor(width, height) : null;
+
+        sink.begin(width, height);
+        int submitted = 0;
+        try {
+            for (int band = 0; band < bandCount; band++) {
+                // Keep the window full; band i + window reuses the buffer of band i once it is written
+                while (submitted < bandCount && submitted < band + window) {
+                    int index = submitted;
+                    int firstRow = index * bandHeight;
+                    int rows = Math.min(bandHeight, height - firstRow);
+                    float[] buffer = buffers[index % window];
+                    inFlight[index % window] = workers.submit(() -> renderBand(index, firstRow, rows, width, height, buffer, cache, tiles, fingerprints, timings));
+                    submitted++;
+                }
+                inFlight[band % window].join();
+                int firstRow = band * bandHeight;
+                sink.writeRows(firstRow, Math.min(bandHeight, height - firstRow), buffers[band % window]);
+            }
+        } finally {
+            for (ForkJoinTask<?> task : inFlight) {
+                if (task != null) {
+                    task.cancel(false);
+                }
+            }
+        }
+        sink.finish();
+        if (cache != null) {
+            cache.markComplete();
+        }
+        commitFrame(frameEvent, width, height, "streamed");
+    }
+
+    /**
+     * Renders one band as a row of tiles, so tile timings and events match those of
+     * {@link #renderTiled(BufferedImage)}. With a tile cache, tiles found in it are copied instead
+     * of traced, and traced tiles are stored.
+     */
+    private void renderBand(int band, int firstRow, int rows, int width, int height, float[] linearRgb, GBuffer cache,
+                            TileCache tiles, TileFingerprints fingerprints, TileTimings timings) {
+        TraceState state = traceStates.get();
+        int tilesX = (width + tileSize - 1) / tileSize;
+        for (int x0 = 0; x0 < width; x0 += tileSize) {
+            TileRenderEvent event = new TileRenderEvent();
+            event.begin();
+            long start = timings != null ? System.nanoTime() : 0;
+            int x1 = Math.min(x0 + tileSize, width);
+            String key = null;
+            if (tiles != null) {
+                key = fingerprints.key(x0, firstRow, x1 - x0, rows);
+                if (state.tileColors.length < (x1 - x0) * rows * 3) {
+                    state.tileColors = new float[tileSize * tileSize * 3];
+                }
+                if (tiles.load(key, x1 - x0, rows, state.tileColors)) {
+                    copyTile(state.tileColors, linearRgb, x0, x1, rows, width, false);
+                    finishTile(event, timings, band * tilesX + x0 / tileSize, start, x0, firstRow, x1 - x0, rows, state);
+                    continue;
+                }
+            }
+            if (cache == null && wavefront) {
+                WavefrontIntegrator integrator = state.wavefront();
+                integrator.trace(scene, termination, lightSamples, occlusion, x0, firstRow, x1 - x0, rows, width, height);
+                int sample = 0;
+                for (int y = firstRow; y < firstRow + rows; y++) {
+                    int index = ((y - firstRow) * width + x0) * 3;
+                    for (int x = x0; x < x1; x++, sample++) {
+                        linearRgb[index++] = (float) integrator.red[sample];
+                        linearRgb[index++] = (float) integrator.green[sample];
+                        linearRgb[index++] = (float) integrator.blue[sample];
+                    }
+                }
+            } else {
+                for (int y = firstRow; y < firstRow + rows; y++) {
+                    int index = ((y - firstRow) * width + x0) * 3;
+                    for (int x = x0; x < x1; x++) {
+                        LinearColor color = samplePixel(x, y, width, height, cache, state);
+                        linearRgb[index++] = (float) color.r;
+                        linearRgb[index++] = (float) color.g;
+                        linearRgb[index++] = (float) color.b;
+                    }
+                }
+            }
+            if (key != null) {
+                copyTile(state.tileColors, linearRgb, x0, x1, rows, width, true);
+                tiles.store(key, x1 - x0, rows, state.tileColors);
+            }
+            finishTile(event, timings, band * tilesX + x0 / tileSize, start, x0, firstRow, x1 - x0, rows, state);
+        }
+    }
+
+    /**
+     * Copies a tile between its own row-major array and the columns {@code [x0, x1)} of a band.
+     * @param toTile True to copy from the band into the tile, false for the other way round.
+     */
+    private static void copyTile(float[] tile, float[] band, int x0, int x1, int rows, int width, boolean toTile) {
+        int rowValues = (x1 - x0) * 3;
+        for (int row = 0; row < rows; row++) {
+            int bandIndex = (row * width + x0) * 3;
+            if (toTile) {
+                System.arraycopy(band, bandIndex, tile, row * rowValues, rowValues);
+            } else {
+                System.arraycopy(tile, row * rowValues, band, bandIndex, rowValues);
+            }
+        }
+    }
+
+    /**
+     * Renders a rectangle of a frame on the calling thread with one sample per pixel, e.g. a tile
+     * handed out by a distributed coordinator.
+     * @param x0 The left column of the rectangle.
+     * @param y0 The top row of the rectangle.
+     * @param tileWidth The rectangle width.
+     * @param tileHeight The rectangle height.
+     * @param width The frame width.
+     * @param height The frame height.
+     * @param pixels Receives the packed ARGB colors, row-major with {@code tileWidth} pixels per row.
+     */
+    public void renderTile(int x0, int y0, int tileWidth, int tileHeight, int width, int height, int[] pixels) {
+        if (x0 < 0 || y0 < 0 || tileWidth < 1 || tileHeight < 1 || x0 + tileWidth > width || y0 + tileHeight > height) {
+            throw new IllegalArgumentException("The tile must lie inside the frame.");
+        }
+        if (pixels.length < tileWidth * tileHeight) {
+            throw new IllegalArgumentException("The pixel array is too small for the tile.");
+        }
+        TileRenderEvent event = new TileRenderEvent();
+        event.begin();
+        TraceState state = traceStates.get();
+        if (wavefront) {
+            WavefrontIntegrator integrator = state.wavefront();
+            integrator.trace(scene, termination, lightSamples, occlusion, x0, y0, tileWidth, tileHeight, width, height);
+            for (int index = 0; index < tileWidth * tileHeight; index++) {
+                pixels[index] = state.pixelColor.set(integrator.red[index], integrator.green[index], integrator.blue[index]).toPackedSRGB();
+            }
+        } else {
+            int index = 0;
+            for (int y = y0; y < y0 + tileHeight; y++) {
+                for (int x = x0; x < x0 + tileWidth; x++) {
+                    pixels[index++] = shadePixel(x, y, width, height, state);
+                }
+            }
+        }
+        finishTile(event, null, 0, 0, x0, y0, tileWidth, tileHeight, state);
+    }
+
+    /**
+     * Traces the primary ray through the center of a pixel using the calling thread's trace state.
+     * @param x The pixel column.
+     * @param y The pixel row.
+     * @param width The image width.
+     * @param height The image height.
+     * @return The packed ARGB color of the pixel.
+     */
+    int shadePixel(int x, int y, int width, int height) {
+        return shadePixel(x, y, width, height, traceStates.get());
+    }
+
+    /**
+     * Traces the primary ray through the center of a pixel and encodes it for the framebuffer.
+     * @param x The pixel column.
+     * @param y The pixel row.
+     * @param width The image width.
+     * @param height The image height.
+     * @param state The calling thread's trace state.
+     * @return The packed ARGB color of the pixel.
+     */
+    private int shadePixel(int x, int y, int width, int height, TraceState state) {
+        // Convert from linear light to sRGB once, when the pixel is written
+        return sampleAt(x + 0.5, y + 0.5, width, height, state).toPackedSRGB();
+    }
+
+    /**
+     * Computes the color seen through the center of a pixel. With a complete first-hit cache the
+     * stored hit is shaded without tracing the primary ray; with an incomplete one the primary
+     * ray is traced and its hit recorded.
+     * @param x The pixel column.
+     * @param y The pixel row.
+     * @param width The image width.
+     * @param height The image height.
+     * @param cache The first-hit cache for this frame, or null.
+     * @param state The calling thread's trace state.
+     * @return The linear color of the pixel, held in the state's scratch color.
+     */
+    private LinearColor samplePixel(int x, int y, int width, int height, GBuffer cache, TraceState state) {
+        if (cache == null) {
+            return sampleAt(x + 0.5, y + 0.5, width, height, state);
+        }
+        int pixel = y * width + x;
+        if (!cache.isComplete()) {
+            LinearColor color = sampleAt(x + 0.5, y + 0.5, width, height, state);
+            if (state.primaryObject == GBuffer.MISS) {
+                cache.recordMiss(pixel);
+            } else {
+                TraceFrame frame = state.frame(0);
+                cache.record(pixel, state.primaryInstance, state.primaryObject, state.primaryDistance, frame.point, frame.normal);
+            }
+            return color;
+        }
+
+        int shape = cache.getShape(pixel);
+        int instance = cache.getInstance(pixel);
+        state.primaryObject = shape;
+        state.primaryInstance = instance;
+        if (shape == GBuffer.MISS) {
+            return state.pixelColor.set(0, 0, 0);
+        }
+        // The ray itself is only needed for the view and reflection directions
+        Ray ray = scene.getCamera().getRay((x + 0.5) / width, (y + 0.5) / height, state.primaryRay);
+        state.sampleSeed = PathTermination.seed(x + 0.5, y + 0.5);
+        state.pixelX = x;
+        state.pixelY = y;
+        TraceFrame frame = state.frame(0);
+        cache.getPoint(pixel, frame.point);
+        cache.getNormal(pixel, frame.normal);
+        return shadeHit(ray, 0, 1, PathTermination.PRIMARY_PATH, instance, shape, scene.getGeometry(), state, state.pixelColor);
+    }
+
+    /**
+     * Traces the primary ray through an arbitrary point of the image plane and records the
+     * object it hits in the state's {@code primaryObject}.
+     * @param imageX The horizontal position in pixels.
+     * @param imageY The vertical position in pixels.
+     * @param width The image width.
+     * @param height The image height.
+     * @param state The calling thread's trace state.
+     * @return The linear color of the sample, held in the state's scratch color.
+     */
+    private LinearColor sampleAt(double imageX, double imageY, int width, int height, TraceState state) {
+        // Convert pixel coordinates to normalized device coordinates
+        double u = imageX / width;
+        double v = imageY / height;
+        // Generate the primary ray from the camera
+        Ray ray = scene.getCamera().getRay(u, v, state.primaryRay);
+        state.raysByType[RayType.PRIMARY.ordinal()]++;
+        state.sampleSeed = PathTermination.seed(imageX, imageY);
+        state.pixelX = (int) Math.floor(imageX);
+        state.pixelY = (int) Math.floor(imageY);
+        // Trace the ray to find the color
+        return traceRay(ray, 0, 1, PathTermination.PRIMARY_PATH, state, state.pixelColor); // The second parameter is the recursion depth for reflections/refractions
+    }
+
+    /**
+     * Traces a ray to determine the color of the pixel it corresponds to.
+     * @param ray The Ray object to trace.
+     * @param depth The recursion depth for reflection/refraction.
+     * @return The Color of the pixel corresponding to the ray.
+     */
+    public Color traceRay(Ray ray, int depth) {
+        TraceState state = traceStates.get();
+        return traceRay(ray, depth, 1, PathTermination.PRIMARY_PATH, state, state.pixelColor).toColor();
+    }
+
+    /**
+     * Traces a ray and writes its linear radiance into {@code out} without allocating.
+     * @param ray The Ray object to trace.
+     * @param depth The recursion depth for reflection/refraction.
+     * @param out Receives the color of the ray.
+     * @return {@code out}.
+     */
+    public LinearColor traceRay(Ray ray, int depth, LinearColor out) {
+        return traceRay(ray, depth, 1, PathTermination.PRIMARY_PATH, traceStates.get(), out);
+    }
+
+    /**
+     * Traces a ray and writes its linear radiance into {@code out}.
+     * @param ray The Ray object to trace.
+     * @param depth The recursion depth for reflection/refraction.
+     * @param throughput The weight of the ray's color in the pixel.
+     * @param path The ray's place in the tree of bounces, see {@link PathTermination#PRIMARY_PATH}.
+     * @param state The calling thread's trace state.
+     * @param out Receives the color; must not be one of the frame colors at this depth.
+     * @return {@code out}.
+     */
+    private LinearColor traceRay(Ray ray, int depth, double throughput, long path, TraceState state, LinearColor out) {
+        // Find the closest object through the scene's bounding volume hierarchy
+        SceneGeometry geometry = scene.getGeometry();
+        state.raysByDepth[Math.min(depth, RenderMetrics.DEPTH_BUCKETS - 1)]++;
+        Hit hit = state.hit.reset();
+        if (!geometry.intersect(ray.getOrigin(), ray.getDirection(), hit)) {
+            if (depth == 0) {
+                state.primaryObject = -1;
+                state.primaryInstance = -1;
+            }
+            return out.set(0, 0, 0); // No intersection, return black
+        }
+        double closestIntersectionDistance = hit.t;
+        int closestShape = hit.primitive;
+        int closestInstance = hit.instance;
+        if (depth == 0) {
+            state.primaryObject = closestShape;
+            state.primaryInstance = closestInstance;
+            state.primaryDistance = closestIntersectionDistance;
+        }
+
+        TraceFrame frame = state.frame(depth);
+        Vec3 closestIntersectionPoint = ray.pointAtParameter(closestIntersectionDistance, frame.point);
+        geometry.getNormal(closestInstance, closestShape, closestIntersectionPoint, frame.normal);
+        return shadeHit(ray, depth, throughput, path, closestInstance, closestShape, geometry, state, out);
+    }
+
+    /**
+     * Shades a hit whose point and normal are already in the frame for {@code depth}, including
+     * shadows, reflections and refractions. The normal of an opaque surface is turned to face the
+     * ray. The surface color is blended with the reflected and refracted colors by the material's
+     * weights; rays that {@link PathTermination} drops leave their share to the surface color.
+     * @param ray The ray that found the hit.
+     * @param depth The recursion depth.
+     * @param throughput The weight of the ray's color in the pixel.
+     * @param path The ray's place in the tree of bounces.
+     * @param closestInstance The instance that was hit, or -1 for a directly placed sphere.
+     * @param closestShape The shape that was hit.
+     * @param geometry The scene geometry.
+     * @param state The calling thread's trace state.
+     * @param out Receives the color.
+     * @return {@code out}.
+     */
+    private LinearColor shadeHit(Ray ray, int depth, double throughput, long path, int closestInstance, int closestShape, SceneGeometry geometry, TraceState state, LinearColor out) {
+        TraceFrame frame = state.frame(depth);
+        Material closestMaterial = geometry.getMaterial(closestInstance, closestShape);
+        // Triangles are two-sided, so opaque surfaces are lit and offset on the side the ray came from.
+        // Refractive ones keep the outward normal, which tells rays entering them from rays leaving them.
+        if (closestMaterial.getRefraction() <= 0 && frame.normal.dot(ray.getDirection()) > 0) {
+            frame.normal.scale(-1);
+        }
+
+        // Compute color at the intersection point
+        computeColorAtIntersection(ray, frame, path, closestMaterial, geometry, state, out);
+        if (depth >= scene.getMaxDepth()) {
+            return out;
+        }
+        double reflection = Math.max(0, closestMaterial.getReflection());
+        double refraction = Math.max(0, closestMaterial.getRefraction());
+        if (reflection == 0 && refraction == 0) {
+            return out;
+        }
+
+        // Unroll the blend of the surface color with the reflected and the refracted color, where
+        // the refracted color itself mixes the transmitted and the mirrored light by the Fresnel term
+        double reflectance = refraction > 0 ? computeReflectance(ray, frame, closestMaterial) : 0;
+        double localWeight = (1 - reflection) * (1 - refraction);
+        double mirrorWeight = reflection * (1 - refraction) + refraction * reflectance;
+        double transmittedWeight = refraction * (1 - reflectance);
+        PathTermination termination = this.termination;
+        if (mirrorWeight > 0 && termination.isNegligible(throughput * mirrorWeight)) {
+            localWeight += mirrorWeight;
+            mirrorWeight = 0;
+        }
+        if (transmittedWeight > 0 && termination.isNegligible(throughput * transmittedWeight)) {
+            localWeight += transmittedWeight;
+            transmittedWeight = 0;
+        }
+        if (mirrorWeight > 0) {
+            mirrorWeight = termination.survivingWeight(mirrorWeight, throughput * mirrorWeight, depth + 1, state.sampleSeed, path * 2);
+        }
+        if (transmittedWeight > 0) {
+            transmittedWeight = termination.survivingWeight(transmittedWeight, throughput * transmittedWeight, depth + 1, state.sampleSeed, path * 2 + 1);
+        }
+
+        out.scale(localWeight);
+        if (mirrorWeight > 0) {
+            out.addScaled(computeReflection(ray, frame, depth, throughput * mirrorWeight, path * 2, state), mirrorWeight);
+        }
+        if (transmittedWeight > 0) {
+            out.addScaled(computeRefraction(frame, closestMaterial, depth, throughput * transmittedWeight, path * 2 + 1, state), transmittedWeight);
+        }
+        return out;
+    }
+
+    /**
+     * Computes the color at the intersection point based on shading.
+     * @param ray The Ray object used to trace.
+     * @param frame The scratch frame holding the intersection point and surface normal.
+     * @param path The path of the ray, which seeds the choice of lights.
+     * @param material The material of the intersected shape.
+     * @param geometry The scene geometry, used for the shadow and ambient occlusion rays.
+     * @param state The calling thread's trace state.
+     * @param out Receives the base color computed at the intersection point.
+     */
+    private void computeColorAtIntersection(Ray ray, TraceFrame frame, long path, Material material, SceneGeometry geometry, TraceState state, LinearColor out) {
+        Vec3 normal = frame.normal;
+        Vec3 viewDir = Vec3.subtract(ray.getOrigin(), frame.point, frame.viewDir).normalize();
+        LinearColor color = material.getLinearColor();
+        double ambient = 0.1;
+        // Dim the ambient light by the part of the hemisphere that nearby geometry blocks
+        double visibility = occlusion.visibility(geometry, frame.point, normal, state.pixelX, state.pixelY, state.shadowHit, frame.occlusionOrigin, frame.occlusionDir, state.raysByType);
+        out.set(color).scale(ambient * visibility);
+
+        LightTree lightTree = scene.getLightTree();
+        LightSelection lights = state.lights;
+        lights.select(lightTree, lightSamples, frame.point, normal, state.sampleSeed, path);
+        for (int i = 0; i < lights.size; i++) {
+            int light = lights.lights[i];
+            Vec3 lightPosition = lightTree.getPosition(light, frame.lightPosition);
+            Vec3 lightDir = Vec3.subtract(lightPosition, frame.point, frame.lightDir);
+            double distanceSquared = lightDir.lengthSquared();
+            lightDir.normalize();
+            double diffuse = normal.dot(lightDir);
+            if (diffuse <= 0 || isShadowed(frame, lightPosition, geometry, state)) {
+                continue;
+            }
+            // Mirror the light direction around the normal: 2(n.l)n - l
+            Vec3 reflectionDir = Vec3.reflect(lightDir, normal, frame.reflectionDir).scale(-1);
+            double specular = Math.pow(Math.max(0, viewDir.dot(reflectionDir)), material.getShininess()) * material.getSpecular();
+            double intensity = lightTree.getLuminance(light) * lights.weights[i] / distanceSquared;
+
+            // Diffuse light is tinted by the surface color, the specular highlight is white
+            out.r += (color.r * diffuse + specular) * intensity;
+            out.g += (color.g * diffuse + specular) * intensity;
+            out.b += (color.b * diffuse + specular) * intensity;
+        }
+    }
+
+    /**
+     * Casts a shadow ray from the intersection point towards a light.
+     * The query stops at the first occluder instead of searching for the closest one, and the
+     * occluder found by the previous shadow ray on this thread is tested before the hierarchy,
+     * since neighbouring pixels tend to be shadowed by the same object.
+     * @param frame The scratch frame holding the intersection point and surface normal.
+     * @param lightPosition The position of the light.
+     * @param geometry The scene geometry.
+     * @param state The calling thread's trace state.
+     * @return True if something blocks the light.
+     */
+    private boolean isShadowed(TraceFrame frame, Vec3 lightPosition, SceneGeometry geometry, TraceState state) {
+        // Offset the origin along the normal so the surface does not shadow itself
+        Vec3 origin = frame.shadowOrigin.set(frame.point).addScaled(frame.normal, SHADOW_BIAS);
+        // Unnormalized, so the light sits at t = 1
+        Vec3 direction = Vec3.subtract(lightPosition, origin, frame.shadowDir);
+        Hit hit = state.shadowHit;
+        state.raysByType[RayType.SHADOW.ordinal()]++;
+
+        if (state.occluderGeometry == geometry && state.lastOccluder >= 0) {
+            hit.t = 1.0;
+            hit.primitive = -1;
+            hit.primitiveTests++;
+            if (geometry.occludedBy(state.lastOccluderInstance, state.lastOccluder, origin, direction, hit)) {
+                return true;
+            }
+        }
+        if (geometry.occluded(origin, direction, 1.0, hit)) {
+            state.occluderGeometry = geometry;
+            state.lastOccluderInstance = hit.instance;
+            state.lastOccluder = hit.primitive;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Computes the reflection color of the scene.
+     * @param ray The Ray object used to trace.
+     * @param frame The scratch frame holding the intersection point and surface normal.
+     * @param depth The recursion depth.
+     * @param throughput The weight of the reflected color in the pixel.
+     * @param path The path of the reflection ray.
+     * @param state The calling thread's trace state.
+     * @return The color resulting from reflection, stored in the frame.
+     */
+    private LinearColor computeReflection(Ray ray, TraceFrame frame, int depth, double throughput, long path, TraceState state) {
+        Vec3 reflectionDir = Vec3.reflect(ray.getDirection(), frame.normal, frame.reflectionDir).normalize();
+        Ray reflectionRay = frame.reflectionRay.set(frame.point, reflectionDir);
+        state.raysByType[RayType.REFLECTION.ordinal()]++;
+        return traceRay(reflectionRay, depth + 1, throughput, path, state, frame.reflectionColor);
+    }
+
+    /**
+     * Computes the Fresnel reflectance of a transparent surface and leaves the unit incident
+     * direction, the normal facing the ray and whether the ray enters the material in the frame.
+     * @param ray The Ray object used to trace.
+     * @param frame The scratch frame holding the intersection point and surface normal.
+     * @param material The material of the intersected shape.
+     * @return The reflected fraction of the light, 1 under total internal reflection.
+     */
+    private double computeReflectance(Ray ray, TraceFrame frame, Material material) {
+        Vec3 direction = frame.incidentDir.set(ray.getDirection()).normalize();
+        double cosIncident = -direction.dot(frame.normal);
+        // Sphere normals point outwards, so a ray leaving the sphere meets the back of the normal
+        frame.entering = cosIncident > 0;
+        frame.facingNormal.set(frame.normal);
+        if (!frame.entering) {
+            frame.facingNormal.scale(-1);
+        }
+        return material.getReflectance(Math.abs(cosIncident), frame.entering);
+    }
+
+    /**
+     * Computes the color of the light transmitted through a transparent surface, bending the ray
+     * by Snell's law. Requires {@link #computeReflectance(Ray, TraceFrame, Material)} to have run
+     * for the frame and to have returned less than 1.
+     * @param frame The scratch frame holding the intersection point and the refraction geometry.
+     * @param material The material of the intersected shape.
+     * @param depth The recursion depth.
+     * @param throughput The weight of the transmitted color in the pixel.
+     * @param path The path of the refraction ray.
+     * @param state The calling thread's trace state.
+     * @return The color resulting from refraction, stored in the frame.
+     */
+    private LinearColor computeRefraction(TraceFrame frame, Material material, int depth, double throughput, long path, TraceState state) {
+        double eta = frame.entering ? 1 / material.getIndexOfRefraction() : material.getIndexOfRefraction();
+        Vec3.refract(frame.incidentDir, frame.facingNormal, eta, frame.refractionDir);
+        // Start just behind the surface so the refracted ray does not hit it again at t = 0
+        Vec3 origin = frame.refractionOrigin.set(frame.point).addScaled(frame.facingNormal, -SHADOW_BIAS);
+        state.raysByType[RayType.REFRACTION.ordinal()]++;
+        return traceRay(frame.refractionRay.set(origin, frame.refractionDir), depth + 1, throughput, path, state, frame.refractionColor);
+    }
+}
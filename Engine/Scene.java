@@ -0,0 +1,271 @@
+package Engine;
+
+import Acceleration.BVH;
+import Objects.Instances;
+import Objects.Object;
+import Objects.Shapes.PackedSpheres;
+import Objects.Shapes.Plane;
+import Objects.Shapes.Shape;
+import Objects.Shapes.Sphere;
+import Objects.lights.Light;
+import Objects.lights.LightTree;
+import java.util.ArrayList;
+import java.util.List;
+
+public class Scene {
+    private ArrayList<Sphere> objects = new ArrayList<>();
+    private Camera camera;
+    private final ArrayList<Light> lights = new ArrayList<>();
+    private volatile LightTree lightTree;
+    private int maxDepth = 3;
+    private final PackedSpheres baseSpheres;
+    private volatile PackedSpheres packedSpheres;
+    private final ArrayList<Object<? extends Shape>> instances = new ArrayList<>();
+    private volatile Instances instanceHierarchy;
+    private volatile SceneGeometry geometry;
+    private final Plane defaultPlane;
+
+    public Scene(Camera camera, Light light, Plane defaultPlane) {
+        this(camera, light, defaultPlane, null);
+    }
+
+    /**
+     * Creates a scene around spheres that are already packed, e.g. by {@link SceneFile#load(java.nio.file.Path)}.
+     * Spheres added later through {@link #addObject(Sphere)} are rendered in addition to them.
+     * @param baseSpheres The packed spheres, or null for none.
+     */
+    public Scene(Camera camera, Light light, Plane defaultPlane, PackedSpheres baseSpheres) {
+        this.camera = camera;
+        if (light != null) {
+            lights.add(light);
+        }
+        this.defaultPlane = defaultPlane;
+        this.baseSpheres = baseSpheres;
+    }
+
+    public void addObject(Sphere item) {
+        objects.add(item);
+        packedSpheres = null;
+    }
+
+    /**
+     * Places shared geometry, e.g. {@link PackedSpheres} or a {@link Objects.Shapes.TriangleMesh},
+     * in the scene. Any number of instances may share one shape; its primitives are stored once and
+     * each instance adds only its transform.
+     * @param instance The geometry, in object space, and its placement.
+     */
+    public void addInstance(Object<? extends Shape> instance) {
+        if (instance == null) {
+            throw new IllegalArgumentException("The instance must not be null.");
+        }
+        synchronized (this) {
+            instances.add(instance);
+            instanceHierarchy = null;
+        }
+    }
+
+    /**
+     * @return The instances in the order they were added. Call {@link #updateInstances()} after
+     * moving any of them or modifying the list.
+     */
+    public List<Object<? extends Shape>> getInstances() {
+        return instances;
+    }
+
+    /**
+     * Makes the scene pick up moved instances. Only the top level of the instance hierarchy is
+     * rebuilt; the hierarchies over the shared geometry are kept.
+     */
+    public synchronized void updateInstances() {
+        instanceHierarchy = null;
+    }
+
+    /**
+     * Returns the two-level hierarchy over the scene's instances, building its top level on first use.
+     * @return The hierarchy, or null if the scene has no instances.
+     */
+    public Instances getInstanceHierarchy() {
+        Instances hierarchy = instanceHierarchy;
+        if (hierarchy == null && !instances.isEmpty()) {
+            synchronized (this) {
+                hierarchy = instanceHierarchy;
+                if (hierarchy == null && !instances.isEmpty()) {
+                    hierarchy = new Instances(instances);
+                    instanceHierarchy = hierarchy;
+                }
+            }
+        }
+        return hierarchy;
+    }
+
+    /**
+     * @return A snapshot of everything rays can hit, taken anew after the spheres or instances change.
+     */
+    SceneGeometry getGeometry() {
+        PackedSpheres spheres = getPackedSpheres();
+        Instances hierarchy = getInstanceHierarchy();
+        SceneGeometry current = geometry;
+        if (current == null || current.spheres != spheres || current.instances != hierarchy) {
+            current = new SceneGeometry(spheres, hierarchy);
+            geometry = current;
+        }
+        return current;
+    }
+
+    /**
+     * Returns a scene that shares this scene's geometry, lights and hierarchies, all built first
+     * if necessary, but views them through another camera, so renders of one scene with different
+     * cameras can run at the same time. Objects, instances and lights added to either scene
+     * afterwards are not seen by the other.
+     * @param camera The camera of the view.
+     */
+    public Scene withCamera(Camera camera) {
+        Scene view = new Scene(camera, null, defaultPlane, getPackedSpheres());
+        synchronized (this) {
+            view.lights.addAll(lights);
+            view.instances.addAll(instances);
+            view.maxDepth = maxDepth;
+        }
+        view.lightTree = getLightTree();
+        view.instanceHierarchy = getInstanceHierarchy();
+        return view;
+    }
+
+    public void setCamera(Camera camera) {
+        this.camera = camera;
+    }
+
+    /**
+     * Replaces all lights of the scene with one.
+     * @param light The light, or null for none.
+     */
+    public synchronized void setLight(Light light) {
+        lights.clear();
+        if (light != null) {
+            lights.add(light);
+        }
+        lightTree = null;
+    }
+
+    /**
+     * @return The first light of the scene, or null if it has none.
+     */
+    public synchronized Light getLight() {
+        return lights.isEmpty() ? null : lights.get(0);
+    }
+
+    public synchronized void addLight(Light light) {
+        if (light == null) {
+            throw new IllegalArgumentException("The light must not be null.");
+        }
+        lights.add(light);
+        lightTree = null;
+    }
+
+    /**
+     * @return The lights in the order they were added. Call {@link #updateLights()} after moving
+     * any of them or modifying the list.
+     */
+    public List<Light> getLights() {
+        return lights;
+    }
+
+    /**
+     * Makes the scene pick up moved lights by rebuilding the light hierarchy.
+     */
+    public synchronized void updateLights() {
+        lightTree = null;
+    }
+
+    /**
+     * Returns the hierarchy over the scene's lights used to pick the lights of each shading point,
+     * building it on first use.
+     */
+    public LightTree getLightTree() {
+        LightTree tree = lightTree;
+        if (tree == null) {
+            synchronized (this) {
+                tree = lightTree;
+                if (tree == null) {
+                    tree = new LightTree(lights);
+                    lightTree = tree;
+                }
+            }
+        }
+        return tree;
+    }
+
+    public Camera getCamera() {
+        return camera;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    public ArrayList<Sphere> getObjects() {
+        return objects;
+    }
+
+    /**
+     * Returns the scene's spheres packed into primitive arrays with a bounding volume hierarchy,
+     * building both on first use. Adding an object through {@link #addObject(Sphere)} discards them;
+     * callers that modify the list returned by {@link #getObjects()} directly must call
+     * {@link #invalidateAccelerator()}.
+     * @return The packed spheres in hierarchy order; map back with {@link PackedSpheres#getSourceIndex(int)}.
+     */
+    public PackedSpheres getPackedSpheres() {
+        PackedSpheres spheres = packedSpheres;
+        if (spheres == null) {
+            synchronized (this) {
+                spheres = packedSpheres;
+                if (spheres == null) {
+                    if (baseSpheres == null) {
+                        spheres = PackedSpheres.of(objects);
+                    } else if (objects.isEmpty()) {
+                        spheres = baseSpheres;
+                    } else {
+                        spheres = PackedSpheres.concat(baseSpheres, PackedSpheres.of(objects));
+                    }
+                    if (spheres.getAccelerator() == null) {
+                        spheres.buildAccelerator();
+                    }
+                    packedSpheres = spheres;
+                }
+            }
+        }
+        return spheres;
+    }
+
+    /**
+     * @return The bounding volume hierarchy over {@link #getPackedSpheres()}.
+     */
+    public BVH getAccelerator() {
+        return getPackedSpheres().getAccelerator();
+    }
+
+    public void invalidateAccelerator() {
+        packedSpheres = null;
+    }
+
+    /**
+     * Makes the scene pick up spheres of {@link #getPackedSpheres()} moved in place with
+     * {@link PackedSpheres#setSphere(int, double, double, double, double)}. Unlike
+     * {@link #invalidateAccelerator()}, which repacks the spheres and builds a new hierarchy, this
+     * refits the existing hierarchy and only rebuilds it once refitting has degraded it too far,
+     * see {@link PackedSpheres#updateAccelerator()}. Must not be called while a frame renders.
+     */
+    public synchronized void updateSpheres() {
+        getPackedSpheres().updateAccelerator();
+        // A new snapshot tells the first-hit and occluder caches that the geometry changed
+        geometry = null;
+    }
+
+    public Plane getDefaultPlane() {
+        return defaultPlane;
+    }
+}
@@ -0,0 +1,350 @@
+package Engine;
+
+import Acceleration.BVH;
+import Materials.Material;
+import Objects.Shapes.PackedSpheres;
+import Objects.Shapes.Plane;
+import Objects.lights.Light;
+import Vectors.Vec3;
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Reads and writes the compact binary scene format.
+ * All values are little-endian. A fixed 192 byte header holds the camera, the ground plane and
+ * the section sizes; it is followed by the lights, the material palette, the sphere data as one
+ * array per field (center x, center y, center z, radius, material index) and optionally the
+ * sphere hierarchy's node arrays. Every section starts on an 8 byte boundary.
+ * Spheres are stored in hierarchy order, so a file with a hierarchy section can be rendered
+ * without rebuilding it. Loading maps the file and copies each array in bulk, never creating
+ * an object per sphere.
+ */
+public final class SceneFile {
+    /**
+     * The first four bytes of every scene file, "RTSC" in ASCII.
+     */
+    public static final int MAGIC = 0x43535452;
+    public static final int VERSION = 2;
+    // Version 1 files lack indices of refraction; they are read with the default
+    private static final int OLDEST_READABLE_VERSION = 1;
+
+    private static final int HEADER_SIZE = 192;
+    private static final int LIGHT_SIZE = 32;
+    private static final int MATERIAL_SIZE = 40;
+    private static final int FLAG_PLANE = 1;
+    private static final int FLAG_HIERARCHY = 2;
+    // Mapped regions stay well below the 2 GB limit of a single buffer
+    private static final long MAX_MAPPED_BYTES = 1L << 30;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    private SceneFile() {
+    }
+
+    /**
+     * A source of little-endian views onto byte ranges of a scene file.
+     */
+    private interface Regions {
+        ByteBuffer region(long offset, long length) throws IOException;
+    }
+
+    /**
+     * Writes a scene, including its sphere hierarchy, which is built first if necessary.
+     * @param scene The scene to write.
+     * @param path The destination file, replaced if it exists.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void save(Scene scene, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(scene, channel);
+        }
+    }
+
+    /**
+     * Writes a scene in the scene file format to any channel, e.g. a socket.
+     * @param scene The scene to write.
+     * @param channel The destination; it is not closed.
+     * @throws IOException if the channel fails.
+     * @throws IllegalArgumentException if the scene has instances, which the format cannot store yet.
+     */
+    public static void write(Scene scene, WritableByteChannel channel) throws IOException {
+        if (!scene.getInstances().isEmpty()) {
+            throw new IllegalArgumentException("Scene files cannot store instanced geometry yet.");
+        }
+        PackedSpheres spheres = scene.getPackedSpheres();
+        BVH bvh = spheres.getAccelerator();
+        Material[] materials = spheres.getMaterials();
+        List<Light> lights = scene.getLights();
+        Plane plane = scene.getDefaultPlane();
+        Camera camera = scene.getCamera();
+        int size = spheres.size();
+        double[] nodeBounds = bvh.getNodeBounds();
+        int[] nodeStarts = bvh.getNodeStarts();
+        int[] nodeCounts = bvh.getNodePrimitiveCounts();
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt((plane != null ? FLAG_PLANE : 0) | FLAG_HIERARCHY).putInt(scene.getMaxDepth());
+        putVec3(buffer, camera.getOrigin());
+        putVec3(buffer, camera.getCorner());
+        putVec3(buffer, camera.getHorizontal());
+        putVec3(buffer, camera.getVertical());
+        if (plane != null) {
+            putVec3(buffer, plane.getNormal());
+            putVec3(buffer, plane.getPoint());
+            buffer.putInt(plane.getColor().getRGB());
+        } else {
+            buffer.put(new byte[52]);
+        }
+        buffer.putInt(0);
+        buffer.putInt(lights.size()).putInt(materials.length);
+        buffer.putLong(size);
+        buffer.putInt(bvh.getLeafWidth()).putInt(nodeCounts.length);
+
+        for (Light light : lights) {
+            ensure(channel, buffer, LIGHT_SIZE);
+            putVec3(buffer, light.getPosition());
+            buffer.putDouble(light.getLuminance());
+        }
+        for (Material material : materials) {
+            ensure(channel, buffer, MATERIAL_SIZE);
+            buffer.putInt(material.getColor().getRGB()).putFloat((float) material.getIndexOfRefraction());
+            buffer.putDouble(material.getShininess()).putDouble(material.getSpecular())
+                    .putDouble(material.getReflection()).putDouble(material.getRefraction());
+        }
+        for (int i = 0; i < size; i++) {
+            ensure(channel, buffer, Double.BYTES);
+            buffer.putDouble(spheres.getCenterX(i));
+        }
+        for (int i = 0; i < size; i++) {
+            ensure(channel, buffer, Double.BYTES);
+            buffer.putDouble(spheres.getCenterY(i));
+        }
+        for (int i = 0; i < size; i++) {
+            ensure(channel, buffer, Double.BYTES);
+            buffer.putDouble(spheres.getCenterZ(i));
+        }
+        for (int i = 0; i < size; i++) {
+            ensure(channel, buffer, Double.BYTES);
+            buffer.putDouble(spheres.getRadius(i));
+        }
+        for (int i = 0; i < size; i++) {
+            ensure(channel, buffer, Integer.BYTES);
+            buffer.putInt(spheres.getMaterialIndex(i));
+        }
+        pad(channel, buffer, size);
+        for (double value : nodeBounds) {
+            ensure(channel, buffer, Double.BYTES);
+            buffer.putDouble(value);
+        }
+        for (int value : nodeStarts) {
+            ensure(channel, buffer, Integer.BYTES);
+            buffer.putInt(value);
+        }
+        pad(channel, buffer, nodeStarts.length);
+        for (int value : nodeCounts) {
+            ensure(channel, buffer, Integer.BYTES);
+            buffer.putInt(value);
+        }
+        pad(channel, buffer, nodeCounts.length);
+        flush(channel, buffer);
+    }
+
+    /**
+     * Loads a scene by memory-mapping the file. Sphere arrays are copied straight out of the
+     * mapping and a stored hierarchy is restored instead of rebuilt.
+     * @param path The scene file.
+     * @return The scene, whose spheres are packed already.
+     * @throws IOException if the file cannot be read or is not a valid scene file of a supported version.
+     */
+    public static Scene load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read((offset, length) -> map(channel, offset, length), channel.size(), path.toString());
+        }
+    }
+
+    /**
+     * Reads a scene from the scene file format held in memory, e.g. as received over a socket.
+     * @param data The scene bytes from the buffer's position to its limit; the buffer itself is not modified.
+     * @return The scene, whose spheres are packed already.
+     * @throws IOException if the bytes are not a valid scene of a supported version.
+     */
+    public static Scene read(ByteBuffer data) throws IOException {
+        ByteBuffer source = data.slice();
+        return read((offset, length) -> source.slice((int) offset, (int) length).order(ByteOrder.LITTLE_ENDIAN), source.remaining(), "scene buffer");
+    }
+
+    private static Scene read(Regions regions, long fileSize, String path) throws IOException {
+        if (fileSize < HEADER_SIZE) {
+            throw new IOException("Not a scene file, too short: " + path);
+        }
+        ByteBuffer header = regions.region(0, HEADER_SIZE);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a scene file: " + path);
+        }
+        int version = header.getInt();
+        if (version < OLDEST_READABLE_VERSION || version > VERSION) {
+            throw new IOException("Unsupported scene file version " + version + ", expected " + OLDEST_READABLE_VERSION + " to " + VERSION);
+        }
+        int flags = header.getInt();
+        int maxDepth = header.getInt();
+        Camera camera = new Camera(getVec3(header), getVec3(header), getVec3(header), getVec3(header));
+        Vec3 planeNormal = getVec3(header);
+        Vec3 planePoint = getVec3(header);
+        int planeColor = header.getInt();
+        header.getInt();
+        int lightCount = header.getInt();
+        int materialCount = header.getInt();
+        long sphereCount = header.getLong();
+        int leafWidth = header.getInt();
+        int nodeCount = header.getInt();
+        if (lightCount < 0 || materialCount < 0 || nodeCount < 0 || sphereCount < 0 || sphereCount > Integer.MAX_VALUE - 8) {
+            throw new IOException("Corrupt scene file header: " + path);
+        }
+        int size = (int) sphereCount;
+
+        long offset = HEADER_SIZE;
+        long expectedSize = offset + (long) lightCount * LIGHT_SIZE + (long) materialCount * MATERIAL_SIZE
+                + size * 4L * Double.BYTES + align(size * (long) Integer.BYTES);
+        if ((flags & FLAG_HIERARCHY) != 0) {
+            expectedSize += nodeCount * 6L * Double.BYTES + 2 * align(nodeCount * (long) Integer.BYTES);
+        }
+        if (fileSize < expectedSize) {
+            throw new IOException("Truncated scene file, expected " + expectedSize + " bytes but found " + fileSize + ": " + path);
+        }
+
+        Light[] lights = new Light[lightCount];
+        if (lightCount > 0) {
+            ByteBuffer records = regions.region(offset, (long) lightCount * LIGHT_SIZE);
+            for (int i = 0; i < lightCount; i++) {
+                lights[i] = new Light(getVec3(records), records.getDouble());
+            }
+        }
+        offset += (long) lightCount * LIGHT_SIZE;
+
+        Material[] materials = new Material[materialCount];
+        ByteBuffer palette = regions.region(offset, (long) materialCount * MATERIAL_SIZE);
+        for (int i = 0; i < materialCount; i++) {
+            Color color = new Color(palette.getInt(), true);
+            float indexOfRefraction = palette.getFloat();
+            materials[i] = new Material(color, palette.getDouble(), palette.getDouble(), palette.getDouble(), palette.getDouble());
+            if (version >= 2) {
+                materials[i].setIndexOfRefraction(indexOfRefraction);
+            }
+        }
+        offset += (long) materialCount * MATERIAL_SIZE;
+
+        double[] centerX = new double[size];
+        double[] centerY = new double[size];
+        double[] centerZ = new double[size];
+        double[] radius = new double[size];
+        int[] materialIndex = new int[size];
+        offset = readDoubles(regions, offset, centerX);
+        offset = readDoubles(regions, offset, centerY);
+        offset = readDoubles(regions, offset, centerZ);
+        offset = readDoubles(regions, offset, radius);
+        offset = readInts(regions, offset, materialIndex);
+        for (int index : materialIndex) {
+            if (index < 0 || index >= materialCount) {
+                throw new IOException("Sphere references missing material " + index + ": " + path);
+            }
+        }
+        PackedSpheres spheres = new PackedSpheres(centerX, centerY, centerZ, radius, materialIndex, materials);
+
+        if ((flags & FLAG_HIERARCHY) != 0 && nodeCount > 0) {
+            double[] nodeBounds = new double[Math.multiplyExact(nodeCount, 6)];
+            int[] nodeStarts = new int[nodeCount];
+            int[] nodeCounts = new int[nodeCount];
+            offset = readDoubles(regions, offset, nodeBounds);
+            offset = readInts(regions, offset, nodeStarts);
+            readInts(regions, offset, nodeCounts);
+            try {
+                spheres.restoreAccelerator(nodeBounds, nodeStarts, nodeCounts, leafWidth);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Corrupt sphere hierarchy in " + path + ": " + e.getMessage(), e);
+            }
+        }
+
+        Plane plane = (flags & FLAG_PLANE) != 0 ? new Plane(planeNormal, planePoint, new Color(planeColor, true)) : null;
+        Scene scene = new Scene(camera, lightCount > 0 ? lights[0] : null, plane, spheres);
+        for (int i = 1; i < lightCount; i++) {
+            scene.addLight(lights[i]);
+        }
+        scene.setMaxDepth(maxDepth);
+        return scene;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long offset, long length) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    /**
+     * Fills an array from the file in bulk, one region at a time.
+     * @return The offset of the next section.
+     */
+    private static long readDoubles(Regions regions, long offset, double[] values) throws IOException {
+        int chunk = (int) (MAX_MAPPED_BYTES / Double.BYTES);
+        for (int start = 0; start < values.length; start += chunk) {
+            int count = Math.min(chunk, values.length - start);
+            regions.region(offset + (long) start * Double.BYTES, (long) count * Double.BYTES).asDoubleBuffer().get(values, start, count);
+        }
+        return offset + align((long) values.length * Double.BYTES);
+    }
+
+    /**
+     * Fills an array from the file in bulk, one region at a time.
+     * @return The offset of the next section.
+     */
+    private static long readInts(Regions regions, long offset, int[] values) throws IOException {
+        int chunk = (int) (MAX_MAPPED_BYTES / Integer.BYTES);
+        for (int start = 0; start < values.length; start += chunk) {
+            int count = Math.min(chunk, values.length - start);
+            regions.region(offset + (long) start * Integer.BYTES, (long) count * Integer.BYTES).asIntBuffer().get(values, start, count);
+        }
+        return offset + align((long) values.length * Integer.BYTES);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    private static Vec3 getVec3(ByteBuffer buffer) {
+        return new Vec3(buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+    }
+
+    private static void putVec3(ByteBuffer buffer, Vec3 vector) {
+        buffer.putDouble(vector.x).putDouble(vector.y).putDouble(vector.z);
+    }
+
+    /**
+     * Pads an int array section to the next 8 byte boundary.
+     */
+    private static void pad(WritableByteChannel channel, ByteBuffer buffer, int intCount) throws IOException {
+        if (intCount % 2 != 0) {
+            ensure(channel, buffer, Integer.BYTES);
+            buffer.putInt(0);
+        }
+    }
+
+    private static void ensure(WritableByteChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush(channel, buffer);
+        }
+    }
+
+    private static void flush(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,72 @@
+package Engine;
+
+import Acceleration.Hit;
+import Materials.Material;
+import Objects.Instances;
+import Objects.Shapes.PackedSpheres;
+import Vectors.Vec3;
+
+/**
+ * Everything a ray can hit in one state of a scene: the packed spheres placed directly in world
+ * space and, optionally, the instanced geometry such as triangle meshes. A hit is identified by the pair of
+ * {@link Hit#instance}, -1 for the directly placed spheres, and {@link Hit#primitive}.
+ * A new snapshot is taken whenever the spheres or the instance placements change, so its
+ * identity tells caches whether the geometry is still the same.
+ */
+final class SceneGeometry {
+    final PackedSpheres spheres;
+    final Instances instances;
+
+    SceneGeometry(PackedSpheres spheres, Instances instances) {
+        this.spheres = spheres;
+        this.instances = instances;
+    }
+
+    /**
+     * Finds the closest hit; {@code hit} must have been reset.
+     */
+    boolean intersect(Vec3 origin, Vec3 direction, Hit hit) {
+        boolean found = spheres.intersect(origin, direction, hit);
+        if (instances != null) {
+            found |= instances.intersect(origin, direction, hit);
+        }
+        return found;
+    }
+
+    /**
+     * Checks whether anything blocks a ray segment; on success {@code hit} names the occluder.
+     */
+    boolean occluded(Vec3 origin, Vec3 direction, double maxDistance, Hit hit) {
+        hit.instance = -1;
+        if (spheres.occluded(origin, direction, maxDistance, hit)) {
+            return true;
+        }
+        return instances != null && instances.occluded(origin, direction, maxDistance, hit);
+    }
+
+    /**
+     * Checks whether one primitive blocks a ray segment up to {@code hit.t}.
+     */
+    boolean occludedBy(int instance, int primitive, Vec3 origin, Vec3 direction, Hit hit) {
+        if (instance < 0) {
+            return spheres.intersectRange(primitive, 1, origin, direction, hit);
+        }
+        return instances.intersectPrimitive(instance, primitive, origin, direction, hit);
+    }
+
+    Vec3 getNormal(int instance, int primitive, Vec3 point, Vec3 out) {
+        return instance < 0 ? spheres.getNormal(primitive, point, out) : instances.getNormal(instance, primitive, point, out);
+    }
+
+    Material getMaterial(int instance, int primitive) {
+        return instance < 0 ? spheres.getMaterial(primitive) : instances.getMaterial(instance, primitive);
+    }
+
+    /**
+     * Condenses a hit into one number for comparing neighbouring pixels: the primitive for
+     * directly placed spheres, one negative number below -1 per instance otherwise.
+     */
+    static int objectId(int instance, int primitive) {
+        return instance < 0 ? primitive : -2 - instance;
+    }
+}
@@ -0,0 +1,273 @@
+package Engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * A content-addressed store of rendered tiles on disk, consulted by
+ * {@link Renderer#render(int, int, Output.RasterSink)} once set with {@link Renderer#setTileCache}.
+ * Every tile is keyed by a hash of everything that can affect its pixels, so a key that is found
+ * always holds the right pixels and edits never need to invalidate anything; tiles they affect
+ * simply get new keys. Tiles are stored as linear floats, one file per key, so hits are exact.
+ * <p>
+ * The total size of the files is capped. The least recently used tiles are deleted once a store
+ * exceeds the cap; the order survives restarts through the files' modification times, which are
+ * refreshed on every hit. The cache is best effort: a tile that cannot be read or written is
+ * treated as a miss rather than failing the render. It may be shared by any number of renderers
+ * in one process, but not by several processes.
+ * <p>
+ * The directory is marked as a tile cache when it is first opened, and a directory holding
+ * anything else is refused. Only files named like the tiles, and the temporary files of
+ * interrupted stores, in the two-character subdirectories are ever indexed or deleted.
+ */
+public class TileCache {
+    public static final long DEFAULT_MAX_BYTES = 1L << 30;
+    private static final int MAGIC = 0x43545452;
+    private static final int HEADER_SIZE = 12;
+    private static final String SUFFIX = ".tile";
+    private static final String MARKER = ".rt-tile-cache";
+    private static final Pattern SHARD = Pattern.compile("[0-9a-f]{2}");
+    private static final Pattern TILE = Pattern.compile("[0-9a-f]{32}\\.tile");
+    private static final Pattern TEMPORARY = Pattern.compile("[0-9a-f]{32}\\.[0-9]+\\.tmp");
+
+    private final Path directory;
+    private final long maxBytes;
+    // Tile sizes in bytes, least recently used first
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Opens a cache directory, creating it if necessary, and indexes the tiles already in it.
+     * @param directory The directory holding the tiles; either empty, missing or created by a tile cache.
+     * @param maxBytes The cap on the total size of the tiles, at least 1.
+     * @throws IOException if the directory cannot be created or listed, or holds something other than a tile cache.
+     */
+    public TileCache(Path directory, long maxBytes) throws IOException {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("The tile cache size must be at least 1 byte.");
+        }
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+        Path marker = directory.resolve(MARKER);
+        if (!Files.isRegularFile(marker)) {
+            try (Stream<Path> files = Files.list(directory)) {
+                if (files.findAny().isPresent()) {
+                    throw new IOException(directory + " is not empty and was not created by a tile cache.");
+                }
+            }
+            Files.createFile(marker);
+        }
+
+        List<Path> tiles = new ArrayList<>();
+        try (Stream<Path> shards = Files.list(directory)) {
+            for (Path shard : (Iterable<Path>) shards::iterator) {
+                if (!SHARD.matcher(shard.getFileName().toString()).matches() || !Files.isDirectory(shard, LinkOption.NOFOLLOW_LINKS)) {
+                    continue;
+                }
+                try (Stream<Path> files = Files.list(shard)) {
+                    files.filter(file -> Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)).forEach(tiles::add);
+                }
+            }
+        }
+        List<Map.Entry<Path, FileTime>> byAge = new ArrayList<>();
+        for (Path tile : tiles) {
+            String name = tile.getFileName().toString();
+            if (!name.startsWith(tile.getParent().getFileName().toString())) {
+                continue;
+            }
+            if (TEMPORARY.matcher(name).matches()) {
+                // Left behind by a store that was interrupted
+                Files.deleteIfExists(tile);
+            } else if (TILE.matcher(name).matches()) {
+                byAge.add(Map.entry(tile, Files.getLastModifiedTime(tile)));
+            }
+        }
+        byAge.sort(Map.Entry.comparingByValue(Comparator.naturalOrder()));
+        for (Map.Entry<Path, FileTime> tile : byAge) {
+            String name = tile.getKey().getFileName().toString();
+            long size = Files.size(tile.getKey());
+            entries.put(name.substring(0, name.length() - SUFFIX.length()), size);
+            totalBytes += size;
+        }
+        deleteAll(evict());
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return The total size of the cached tiles in bytes.
+     */
+    public synchronized long getSize() {
+        return totalBytes;
+    }
+
+    /**
+     * @return The number of cached tiles.
+     */
+    public synchronized int getTileCount() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Reads the pixels of a tile.
+     * @param key The tile's key.
+     * @param width The tile width.
+     * @param height The tile height.
+     * @param linearRgb Receives three linear floats per pixel, row-major.
+     * @return True if the tile was found; otherwise {@code linearRgb} is left unchanged.
+     */
+    public boolean load(String key, int width, int height, float[] linearRgb) {
+        boolean known;
+        synchronized (this) {
+            known = entries.get(key) != null;
+        }
+        if (known && read(key, width, height, linearRgb)) {
+            hits.incrementAndGet();
+            return true;
+        }
+        misses.incrementAndGet();
+        return false;
+    }
+
+    private boolean read(String key, int width, int height, float[] linearRgb) {
+        Path path = pathOf(key);
+        int values = width * height * 3;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + values * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() != buffer.capacity()) {
+                throw new IOException("Unexpected tile size");
+            }
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Truncated tile");
+                }
+            }
+            buffer.flip();
+            if (buffer.getInt() != MAGIC || buffer.getInt() != width || buffer.getInt() != height) {
+                throw new IOException("Tile header mismatch");
+            }
+            buffer.asFloatBuffer().get(linearRgb, 0, values);
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            return true;
+        } catch (IOException e) {
+            forget(key);
+            return false;
+        }
+    }
+
+    /**
+     * Stores the pixels of a tile, then evicts the least recently used tiles while the cache is over its cap.
+     * @param key The tile's key.
+     * @param width The tile width.
+     * @param height The tile height.
+     * @param linearRgb Three linear floats per pixel, row-major.
+     */
+    public void store(String key, int width, int height, float[] linearRgb) {
+        int values = width * height * 3;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + values * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(width).putInt(height);
+        buffer.asFloatBuffer().put(linearRgb, 0, values);
+        buffer.rewind();
+        Path path = pathOf(key);
+        // Write under a temporary name first so readers never see a partial tile
+        Path temporary = path.resolveSibling(key + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            Files.createDirectories(path.getParent());
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteQuietly(temporary);
+            return;
+        }
+        List<String> evicted;
+        synchronized (this) {
+            Long previous = entries.put(key, (long) buffer.capacity());
+            totalBytes += buffer.capacity() - (previous != null ? previous : 0);
+            evicted = evict();
+        }
+        deleteAll(evicted);
+    }
+
+    /**
+     * Removes the least recently used entries until the cache fits its cap.
+     * @return The keys whose files must be deleted.
+     */
+    private synchronized List<String> evict() {
+        List<String> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> oldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && oldest.hasNext()) {
+            Map.Entry<String, Long> entry = oldest.next();
+            totalBytes -= entry.getValue();
+            evicted.add(entry.getKey());
+            oldest.remove();
+        }
+        return evicted;
+    }
+
+    private synchronized void forget(String key) {
+        Long size = entries.remove(key);
+        if (size != null) {
+            totalBytes -= size;
+        }
+        deleteQuietly(pathOf(key));
+    }
+
+    private void deleteAll(List<String> keys) {
+        for (String key : keys) {
+            deleteQuietly(pathOf(key));
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // The file stays behind and is indexed again, and evicted, on the next start
+        }
+    }
+
+    /**
+     * Spreads the tiles over subdirectories named after the first two key characters, keeping directories small.
+     */
+    private Path pathOf(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key + SUFFIX);
+    }
+}
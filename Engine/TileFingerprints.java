@@ -0,0 +1,383 @@
+package Engine;
+
+import Acceleration.BVH;
+import Materials.Material;
+import Objects.Instances;
+import Objects.Shapes.PackedSpheres;
+import Objects.Shapes.Shape;
+import Objects.lights.LightTree;
+import Vectors.Vec3;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Computes the {@link TileCache} keys of the tiles of one frame. A key hashes the frame settings,
+ * the camera, the lights, the tile's rectangle and the content of every primitive that can
+ * influence the tile: those whose bounds overlap the tile's view frustum, clipped to the scene,
+ * or the region between it and the lights, through which its shadow rays pass, widened by the
+ * reach of the ambient occlusion rays. An edit therefore changes the keys of the tiles it can
+ * affect and no others. Mirrors and glass send rays anywhere, so a tile that can see a reflective
+ * or refractive primitive hashes the whole scene instead.
+ * <p>
+ * Primitive hashes are combined by summing, which does not depend on the order of the primitives.
+ * Every node of the sphere hierarchy keeps the sum over its subtree, so nodes inside the tile's
+ * region are added at once and only nodes on its border are opened. Everything is hashed afresh
+ * for every frame, since materials may change in place; that costs time linear in the scene size,
+ * which is small next to tracing it.
+ */
+final class TileFingerprints {
+    // Bump whenever shading changes, so tiles rendered by earlier versions are not reused
+    static final int SHADING_VERSION = 2;
+    private static final long SECOND_LANE = 0xC2B2AE3D27D4EB4FL;
+    // Shadow rays start slightly off the surface, just outside a tile's region
+    private static final double PADDING = 4 * Renderer.SHADOW_BIAS;
+
+    private final int width;
+    private final int height;
+    private final Vec3 origin;
+    private final Vec3 imageCorner;
+    private final Vec3 horizontal;
+    private final Vec3 vertical;
+    private final double depthScale;
+    private final double padding;
+    private final long frameHash;
+
+    private final double[] sceneBounds = emptyBounds();
+    private final double[] lightBounds = emptyBounds();
+    private final long sceneSum;
+    private final long sceneSecondSum;
+    private final int scenePrimitives;
+
+    private final PackedSpheres spheres;
+    private final double[] nodeBounds;
+    private final int[] nodeStart;
+    private final int[] nodeCount;
+    private final long[] nodeSum;
+    private final long[] nodeSecondSum;
+    private final int[] nodePrimitives;
+    private final boolean[] nodeReflective;
+    private final long[] sphereHash;
+
+    private final double[] instanceBounds;
+    private final long[] instanceHash;
+    private final boolean[] instanceReflective;
+
+    /**
+     * Hashes the scene as it is now.
+     * @param scene The scene of the frame.
+     * @param termination The renderer's path termination.
+     * @param lightSamples The renderer's light sample count.
+     * @param occlusion The renderer's ambient occlusion settings.
+     * @param width The frame width.
+     * @param height The frame height.
+     */
+    TileFingerprints(Scene scene, PathTermination termination, int lightSamples, AmbientOcclusion occlusion, int width, int height) {
+        this.width = width;
+        this.height = height;
+        // Occlusion rays reach up to their radius beyond the points a tile sees
+        this.padding = occlusion.samples > 0 ? PADDING + occlusion.radius : PADDING;
+        SceneGeometry geometry = scene.getGeometry();
+        Camera camera = scene.getCamera();
+        this.origin = camera.getOrigin();
+        this.imageCorner = camera.getCorner();
+        this.horizontal = camera.getHorizontal();
+        this.vertical = camera.getVertical();
+
+        long hash = Shape.hash(Shape.HASH_SEED, SHADING_VERSION);
+        hash = Shape.hash(hash, width);
+        hash = Shape.hash(hash, height);
+        for (Vec3 vector : new Vec3[] {origin, imageCorner, horizontal, vertical}) {
+            hash = hash(hash, vector);
+        }
+        hash = Shape.hash(hash, scene.getMaxDepth());
+        hash = Shape.hash(hash, termination.contributionThreshold);
+        hash = Shape.hash(hash, termination.rouletteDepth);
+        hash = Shape.hash(hash, lightSamples);
+        hash = Shape.hash(hash, occlusion.samples);
+        hash = Shape.hash(hash, occlusion.radius);
+        LightTree lights = scene.getLightTree();
+        Vec3 position = new Vec3();
+        hash = Shape.hash(hash, lights.size());
+        for (int light = 0; light < lights.size(); light++) {
+            lights.getPosition(light, position);
+            hash = hash(hash, position);
+            hash = Shape.hash(hash, lights.getLuminance(light));
+            extend(lightBounds, position.x, position.y, position.z);
+        }
+        this.frameHash = hash;
+
+        long sum = 0;
+        long secondSum = 0;
+        int primitives = 0;
+
+        this.spheres = geometry.spheres;
+        BVH bvh = spheres.getAccelerator();
+        this.nodeBounds = bvh.getNodeBounds();
+        this.nodeStart = bvh.getNodeStarts();
+        this.nodeCount = bvh.getNodePrimitiveCounts();
+        int nodes = nodeStart.length;
+        this.nodeSum = new long[nodes];
+        this.nodeSecondSum = new long[nodes];
+        this.nodePrimitives = new int[nodes];
+        this.nodeReflective = new boolean[nodes];
+        this.sphereHash = new long[spheres.size()];
+        Material[] materials = spheres.getMaterials();
+        long[] materialHashes = new long[materials.length];
+        boolean[] materialReflective = new boolean[materials.length];
+        for (int i = 0; i < materials.length; i++) {
+            materialHashes[i] = materials[i].contentHash();
+            materialReflective[i] = isReflective(materials[i]);
+        }
+        for (int sphere = 0; sphere < sphereHash.length; sphere++) {
+            long sphereContent = Shape.hash(Shape.HASH_SEED, spheres.getCenterX(sphere));
+            sphereContent = Shape.hash(sphereContent, spheres.getCenterY(sphere));
+            sphereContent = Shape.hash(sphereContent, spheres.getCenterZ(sphere));
+            sphereContent = Shape.hash(sphereContent, spheres.getRadius(sphere));
+            sphereContent = Shape.hash(sphereContent, materialHashes[spheres.getMaterialIndex(sphere)]);
+            sphereHash[sphere] = mix(sphereContent);
+        }
+        if (sphereHash.length > 0) {
+            // Children always follow their parent, so a reverse sweep sees them first
+            for (int node = nodes - 1; node >= 0; node--) {
+                if (nodeCount[node] > 0) {
+                    for (int sphere = nodeStart[node]; sphere < nodeStart[node] + nodeCount[node]; sphere++) {
+                        nodeSum[node] += sphereHash[sphere];
+                        nodeSecondSum[node] += mix(sphereHash[sphere] ^ SECOND_LANE);
+                        nodeReflective[node] |= materialReflective[spheres.getMaterialIndex(sphere)];
+                    }
+                    nodePrimitives[node] = nodeCount[node];
+                } else {
+                    int left = nodeStart[node];
+                    nodeSum[node] = nodeSum[left] + nodeSum[left + 1];
+                    nodeSecondSum[node] = nodeSecondSum[left] + nodeSecondSum[left + 1];
+                    nodePrimitives[node] = nodePrimitives[left] + nodePrimitives[left + 1];
+                    nodeReflective[node] = nodeReflective[left] || nodeReflective[left + 1];
+                }
+            }
+            union(sceneBounds, nodeBounds, 0);
+            sum += nodeSum[0];
+            secondSum += nodeSecondSum[0];
+            primitives += nodePrimitives[0];
+        }
+
+        Instances instances = geometry.instances;
+        int instanceCount = instances != null ? instances.size() : 0;
+        this.instanceBounds = new double[instanceCount * 6];
+        this.instanceHash = new long[instanceCount];
+        this.instanceReflective = new boolean[instanceCount];
+        // Instances sharing a shape hash it once
+        Map<Shape, long[]> shapes = new IdentityHashMap<>();
+        for (int instance = 0; instance < instanceCount; instance++) {
+            Shape shape = instances.getObject(instance).getItem();
+            long[] shapeHash = shapes.computeIfAbsent(shape, TileFingerprints::hashShape);
+            instances.getTransform(instance).transformBounds(shape.getAccelerator().getBounds(), 0, instanceBounds, instance * 6);
+            long instanceContent = Shape.hash(Shape.HASH_SEED, shapeHash[0]);
+            for (double value : instances.getTransform(instance).getMatrix()) {
+                instanceContent = Shape.hash(instanceContent, value);
+            }
+            instanceHash[instance] = mix(instanceContent);
+            instanceReflective[instance] = shapeHash[1] != 0;
+            union(sceneBounds, instanceBounds, instance * 6);
+            sum += instanceHash[instance];
+            secondSum += mix(instanceHash[instance] ^ SECOND_LANE);
+            primitives++;
+        }
+        this.sceneSum = sum;
+        this.sceneSecondSum = secondSum;
+        this.scenePrimitives = primitives;
+
+        // Frustum points within the farthest scene corner lie within this multiple of the image plane corners
+        Vec3 normal = Vec3.cross(horizontal, vertical, new Vec3()).normalize();
+        double focalDistance = Math.abs(normal.dot(new Vec3(imageCorner).addScaled(origin, -1)));
+        double farthest = 0;
+        for (int corner = 0; corner < 8; corner++) {
+            double dx = sceneBounds[(corner & 1) != 0 ? 3 : 0] - origin.x;
+            double dy = sceneBounds[(corner & 2) != 0 ? 4 : 1] - origin.y;
+            double dz = sceneBounds[(corner & 4) != 0 ? 5 : 2] - origin.z;
+            farthest = Math.max(farthest, Math.sqrt(dx * dx + dy * dy + dz * dz));
+        }
+        this.depthScale = focalDistance > 0 ? farthest / focalDistance : Double.NaN;
+    }
+
+    /**
+     * @return The key of a tile, as 32 hexadecimal digits.
+     */
+    String key(int x0, int y0, int tileWidth, int tileHeight) {
+        long sum = 0;
+        long secondSum = 0;
+        int primitives = 0;
+        boolean reflective = false;
+        double[] region = new double[6];
+        if (region(x0, y0, tileWidth, tileHeight, region)) {
+            if (sphereHash.length > 0) {
+                int[] stack = new int[64];
+                int stackSize = 0;
+                stack[stackSize++] = 0;
+                while (stackSize > 0 && !reflective) {
+                    int node = stack[--stackSize];
+                    int offset = node * 6;
+                    if (!overlaps(nodeBounds, offset, region)) {
+                        continue;
+                    }
+                    if (contains(region, nodeBounds, offset)) {
+                        sum += nodeSum[node];
+                        secondSum += nodeSecondSum[node];
+                        primitives += nodePrimitives[node];
+                        reflective = nodeReflective[node];
+                    } else if (nodeCount[node] > 0) {
+                        for (int sphere = nodeStart[node]; sphere < nodeStart[node] + nodeCount[node]; sphere++) {
+                            if (sphereOverlaps(sphere, region)) {
+                                sum += sphereHash[sphere];
+                                secondSum += mix(sphereHash[sphere] ^ SECOND_LANE);
+                                primitives++;
+                                reflective |= isReflective(spheres.getMaterial(sphere));
+                            }
+                        }
+                    } else {
+                        if (stackSize + 2 > stack.length) {
+                            stack = Arrays.copyOf(stack, stack.length * 2);
+                        }
+                        stack[stackSize++] = nodeStart[node] + 1;
+                        stack[stackSize++] = nodeStart[node];
+                    }
+                }
+            }
+            for (int instance = 0; instance < instanceHash.length && !reflective; instance++) {
+                if (overlaps(instanceBounds, instance * 6, region)) {
+                    sum += instanceHash[instance];
+                    secondSum += mix(instanceHash[instance] ^ SECOND_LANE);
+                    primitives++;
+                    reflective = instanceReflective[instance];
+                }
+            }
+        }
+        if (reflective) {
+            sum = sceneSum;
+            secondSum = sceneSecondSum;
+            primitives = scenePrimitives;
+        }
+
+        long first = Shape.hash(frameHash, x0);
+        first = Shape.hash(first, y0);
+        first = Shape.hash(first, tileWidth);
+        first = Shape.hash(first, tileHeight);
+        first = Shape.hash(first, primitives);
+        long second = mix(Shape.hash(first ^ SECOND_LANE, secondSum));
+        first = mix(Shape.hash(first, sum));
+        HexFormat hex = HexFormat.of();
+        return hex.toHexDigits(first) + hex.toHexDigits(second);
+    }
+
+    /**
+     * Bounds the part of the scene that rays of a tile can reach before any mirror or glass:
+     * its frustum, clipped to the scene, joined with the lights.
+     * @return False if the frustum misses the scene, so the tile sees only the background.
+     */
+    private boolean region(int x0, int y0, int tileWidth, int tileHeight, double[] out) {
+        if (!(sceneBounds[0] <= sceneBounds[3])) {
+            return false;
+        }
+        if (Double.isNaN(depthScale)) {
+            System.arraycopy(sceneBounds, 0, out, 0, 6);
+        } else {
+            out[0] = out[3] = origin.x;
+            out[1] = out[4] = origin.y;
+            out[2] = out[5] = origin.z;
+            for (int corner = 0; corner < 4; corner++) {
+                double u = ((corner & 1) != 0 ? x0 + tileWidth : x0) / (double) width;
+                double v = ((corner & 2) != 0 ? y0 + tileHeight : y0) / (double) height;
+                double x = imageCorner.x + u * horizontal.x + v * vertical.x;
+                double y = imageCorner.y + u * horizontal.y + v * vertical.y;
+                double z = imageCorner.z + u * horizontal.z + v * vertical.z;
+                extend(out, origin.x + (x - origin.x) * depthScale, origin.y + (y - origin.y) * depthScale, origin.z + (z - origin.z) * depthScale);
+            }
+            for (int axis = 0; axis < 3; axis++) {
+                out[axis] = Math.max(out[axis], sceneBounds[axis]);
+                out[axis + 3] = Math.min(out[axis + 3], sceneBounds[axis + 3]);
+                if (out[axis] > out[axis + 3]) {
+                    return false;
+                }
+            }
+        }
+        if (lightBounds[0] <= lightBounds[3]) {
+            union(out, lightBounds, 0);
+        }
+        for (int axis = 0; axis < 3; axis++) {
+            out[axis] -= padding;
+            out[axis + 3] += padding;
+        }
+        return true;
+    }
+
+    private boolean sphereOverlaps(int sphere, double[] region) {
+        double radius = spheres.getRadius(sphere);
+        return spheres.getCenterX(sphere) + radius >= region[0] && spheres.getCenterX(sphere) - radius <= region[3]
+                && spheres.getCenterY(sphere) + radius >= region[1] && spheres.getCenterY(sphere) - radius <= region[4]
+                && spheres.getCenterZ(sphere) + radius >= region[2] && spheres.getCenterZ(sphere) - radius <= region[5];
+    }
+
+    private static boolean overlaps(double[] bounds, int offset, double[] region) {
+        return bounds[offset] <= region[3] && bounds[offset + 3] >= region[0]
+                && bounds[offset + 1] <= region[4] && bounds[offset + 4] >= region[1]
+                && bounds[offset + 2] <= region[5] && bounds[offset + 5] >= region[2];
+    }
+
+    private static boolean contains(double[] region, double[] bounds, int offset) {
+        return bounds[offset] >= region[0] && bounds[offset + 3] <= region[3]
+                && bounds[offset + 1] >= region[1] && bounds[offset + 4] <= region[4]
+                && bounds[offset + 2] >= region[2] && bounds[offset + 5] <= region[5];
+    }
+
+    /**
+     * @return The content hash of a shape and 1 if any of its primitives is reflective or refractive, 0 otherwise.
+     */
+    private static long[] hashShape(Shape shape) {
+        long reflective = 0;
+        for (int primitive = 0; primitive < shape.size() && reflective == 0; primitive++) {
+            reflective = isReflective(shape.getMaterial(primitive)) ? 1 : 0;
+        }
+        return new long[] {shape.contentHash(), reflective};
+    }
+
+    private static boolean isReflective(Material material) {
+        return material.getReflection() > 0 || material.getRefraction() > 0;
+    }
+
+    private static long hash(long hash, Vec3 vector) {
+        return Shape.hash(Shape.hash(Shape.hash(hash, vector.x), vector.y), vector.z);
+    }
+
+    /**
+     * Scrambles a hash so that sums of many of them do not cancel out; the 64-bit MurmurHash3 finalizer.
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    private static double[] emptyBounds() {
+        return new double[] {
+                Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY
+        };
+    }
+
+    private static void extend(double[] bounds, double x, double y, double z) {
+        bounds[0] = Math.min(bounds[0], x);
+        bounds[1] = Math.min(bounds[1], y);
+        bounds[2] = Math.min(bounds[2], z);
+        bounds[3] = Math.max(bounds[3], x);
+        bounds[4] = Math.max(bounds[4], y);
+        bounds[5] = Math.max(bounds[5], z);
+    }
+
+    private static void union(double[] bounds, double[] other, int offset) {
+        extend(bounds, other[offset], other[offset + 1], other[offset + 2]);
+        extend(bounds, other[offset + 3], other[offset + 4], other[offset + 5]);
+    }
+}
@@ -0,0 +1,399 @@
+package Engine;
+
+import Acceleration.Hit;
+import Colors.LinearColor;
+import Materials.Material;
+import Metrics.RayType;
+import Metrics.RenderMetrics;
+import Objects.lights.LightTree;
+import Vectors.Vec3;
+import java.util.Arrays;
+
+/**
+ * Traces a tile breadth-first instead of recursing per pixel. All primary rays of the tile are
+ * generated into one queue held in primitive arrays; each bounce intersects the whole queue,
+ * adds the direct light of every hit to its pixel, tests the resulting shadow rays as a second
+ * batch and appends the surviving reflection and refraction rays to the queue of the next
+ * bounce. Rays carry the weight with which they contribute to their pixel, so a queue only ever
+ * holds rays that still matter and no per-pixel call stack is needed. Rays dropped by the
+ * {@link PathTermination} never enter a queue.
+ * <p>
+ * The shading matches the recursive path of {@link Renderer}: a recursive blend of a local color
+ * with reflected and refracted colors is linear, so it can be unrolled into weights on the
+ * individual rays. An instance belongs to one thread and is reused for every tile it renders.
+ */
+final class WavefrontIntegrator {
+    private static final double AMBIENT = 0.1;
+
+    private final Hit hit;
+    private final Hit shadowHit;
+    private final long[] raysByType;
+    private final long[] raysByDepth;
+    private final Vec3 origin = new Vec3();
+    private final Vec3 direction = new Vec3();
+    private final Vec3 point = new Vec3();
+    private final Vec3 normal = new Vec3();
+    private final Vec3 lightPosition = new Vec3();
+    private final Vec3 lightDir = new Vec3();
+    private final Vec3 viewDir = new Vec3();
+    private final Vec3 mirrorDir = new Vec3();
+    private final Vec3 unitDir = new Vec3();
+    private final Vec3 occlusionOrigin = new Vec3();
+    private final Vec3 occlusionDir = new Vec3();
+    private RayQueue current = new RayQueue();
+    private RayQueue next = new RayQueue();
+    private final ShadowQueue shadows = new ShadowQueue();
+    private final LightSelection lights = new LightSelection();
+    private SceneGeometry occluderGeometry;
+    private int lastOccluderInstance = -1;
+    private int lastOccluder = -1;
+    // The tile being traced, which places its pixels in the frame for the ambient occlusion
+    private int tileX;
+    private int tileY;
+    private int tileWidth;
+
+    // Per-pixel results of the last traced tile, row-major with the tile's width
+    double[] red = new double[0];
+    double[] green = new double[0];
+    double[] blue = new double[0];
+    int[] objects = new int[0];
+    private long[] seeds = new long[0];
+
+    /**
+     * Creates an integrator that adds its work to the given per-thread counters.
+     * @param hit Scratch for closest-hit queries.
+     * @param shadowHit Scratch for shadow queries.
+     * @param raysByType Ray counts per {@link RayType}.
+     * @param raysByDepth Ray counts per bounce.
+     */
+    WavefrontIntegrator(Hit hit, Hit shadowHit, long[] raysByType, long[] raysByDepth) {
+        this.hit = hit;
+        this.shadowHit = shadowHit;
+        this.raysByType = raysByType;
+        this.raysByDepth = raysByDepth;
+    }
+
+    /**
+     * Traces one ray through the center of every pixel of a rectangle and leaves the linear colors
+     * in {@link #red}, {@link #green} and {@link #blue} and the primary hits in {@link #objects}.
+     * @param scene The scene to trace.
+     * @param termination Decides which secondary rays are traced.
+     * @param lightSamples The number of lights each shading point is lit by, see {@link LightSelection}.
+     * @param occlusion The ambient occlusion settings.
+     * @param x0 The left column of the rectangle.
+     * @param y0 The top row of the rectangle.
+     * @param tileWidth The rectangle width.
+     * @param tileHeight The rectangle height.
+     * @param width The frame width.
+     * @param height The frame height.
+     */
+    void trace(Scene scene, PathTermination termination, int lightSamples, AmbientOcclusion occlusion, int x0, int y0, int tileWidth, int tileHeight, int width, int height) {
+        int pixels = tileWidth * tileHeight;
+        this.tileX = x0;
+        this.tileY = y0;
+        this.tileWidth = tileWidth;
+        if (red.length < pixels) {
+            red = new double[pixels];
+            green = new double[pixels];
+            blue = new double[pixels];
+            objects = new int[pixels];
+            seeds = new long[pixels];
+        }
+        Arrays.fill(red, 0, pixels, 0);
+        Arrays.fill(green, 0, pixels, 0);
+        Arrays.fill(blue, 0, pixels, 0);
+        Arrays.fill(objects, 0, pixels, -1);
+
+        Camera camera = scene.getCamera();
+        RayQueue queue = current;
+        queue.clear();
+        queue.reserve(pixels);
+        camera.getRays(x0, y0, tileWidth, tileHeight, width, height, 0.5, 0.5, queue.directionX, queue.directionY, queue.directionZ, 0);
+        Vec3 eye = camera.getOrigin();
+        Arrays.fill(queue.originX, 0, pixels, eye.x);
+        Arrays.fill(queue.originY, 0, pixels, eye.y);
+        Arrays.fill(queue.originZ, 0, pixels, eye.z);
+        Arrays.fill(queue.weight, 0, pixels, 1);
+        Arrays.fill(queue.path, 0, pixels, PathTermination.PRIMARY_PATH);
+        for (int pixel = 0; pixel < pixels; pixel++) {
+            queue.pixel[pixel] = pixel;
+            seeds[pixel] = PathTermination.seed(x0 + pixel % tileWidth + 0.5, y0 + pixel / tileWidth + 0.5);
+        }
+        queue.size = pixels;
+        raysByType[RayType.PRIMARY.ordinal()] += pixels;
+
+        SceneGeometry geometry = scene.getGeometry();
+        LightTree lightTree = scene.getLightTree();
+        int maxDepth = scene.getMaxDepth();
+        for (int depth = 0; current.size > 0; depth++) {
+            next.clear();
+            shadows.clear();
+            shade(geometry, lightTree, lightSamples, occlusion, termination, depth, depth < maxDepth);
+            traceShadows(geometry);
+            RayQueue swap = current;
+            current = next;
+            next = swap;
+        }
+    }
+
+    /**
+     * Intersects every ray of the current queue, queues shadow rays for the lit hits and the
+     * reflection and refraction rays of the next bounce.
+     */
+    private void shade(SceneGeometry geometry, LightTree lightTree, int lightSamples, AmbientOcclusion occlusion, PathTermination termination, int depth, boolean bounce) {
+        RayQueue queue = current;
+        raysByDepth[Math.min(depth, RenderMetrics.DEPTH_BUCKETS - 1)] += queue.size;
+        for (int i = 0; i < queue.size; i++) {
+            origin.set(queue.originX[i], queue.originY[i], queue.originZ[i]);
+            direction.set(queue.directionX[i], queue.directionY[i], queue.directionZ[i]);
+            int pixel = queue.pixel[i];
+            if (!geometry.intersect(origin, direction, hit.reset())) {
+                continue;
+            }
+            int shape = hit.primitive;
+            int instance = hit.instance;
+            if (depth == 0) {
+                objects[pixel] = SceneGeometry.objectId(instance, shape);
+            }
+            point.set(origin).addScaled(direction, hit.t);
+            geometry.getNormal(instance, shape, point, normal);
+            Material material = geometry.getMaterial(instance, shape);
+            // Like Renderer.shadeHit, opaque surfaces face the ray and refractive ones keep the outward normal
+            if (material.getRefraction() <= 0 && normal.dot(direction) > 0) {
+                normal.scale(-1);
+            }
+
+            double weight = queue.weight[i];
+            double reflection = bounce ? Math.max(0, material.getReflection()) : 0;
+            double refraction = bounce ? Math.max(0, material.getRefraction()) : 0;
+            double reflectance = 0;
+            boolean entering = true;
+            if (refraction > 0) {
+                unitDir.set(direction).normalize();
+                double cosIncident = -unitDir.dot(normal);
+                entering = cosIncident > 0;
+                reflectance = material.getReflectance(Math.abs(cosIncident), entering);
+            }
+            double localWeight = (1 - reflection) * (1 - refraction);
+            double mirrorWeight = reflection * (1 - refraction) + refraction * reflectance;
+            double transmittedWeight = refraction * (1 - reflectance);
+            if (mirrorWeight > 0 && termination.isNegligible(weight * mirrorWeight)) {
+                localWeight += mirrorWeight;
+                mirrorWeight = 0;
+            }
+            if (transmittedWeight > 0 && termination.isNegligible(weight * transmittedWeight)) {
+                localWeight += transmittedWeight;
+                transmittedWeight = 0;
+            }
+            long path = queue.path[i];
+            if (mirrorWeight > 0) {
+                mirrorWeight = termination.survivingWeight(mirrorWeight, weight * mirrorWeight, depth + 1, seeds[pixel], path * 2);
+            }
+            if (transmittedWeight > 0) {
+                transmittedWeight = termination.survivingWeight(transmittedWeight, weight * transmittedWeight, depth + 1, seeds[pixel], path * 2 + 1);
+            }
+            localWeight *= weight;
+            mirrorWeight *= weight;
+            transmittedWeight *= weight;
+
+            if (localWeight > 0) {
+                double visibility = occlusion.visibility(geometry, point, normal, tileX + pixel % tileWidth, tileY + pixel / tileWidth, shadowHit, occlusionOrigin, occlusionDir, raysByType);
+                lights.select(lightTree, lightSamples, point, normal, seeds[pixel], path);
+                shadeLocal(material, pixel, localWeight, visibility, lightTree);
+            }
+            if (mirrorWeight > 0) {
+                Vec3.reflect(direction, normal, mirrorDir).normalize();
+                next.add(point, mirrorDir, mirrorWeight, path * 2, pixel);
+                raysByType[RayType.REFLECTION.ordinal()]++;
+            }
+            if (transmittedWeight > 0) {
+                // Bend the ray on the side of the surface it came from, then start just behind the surface
+                if (!entering) {
+                    normal.scale(-1);
+                }
+                double eta = entering ? 1 / material.getIndexOfRefraction() : material.getIndexOfRefraction();
+                Vec3.refract(unitDir, normal, eta, mirrorDir);
+                point.addScaled(normal, -Renderer.SHADOW_BIAS);
+                next.add(point, mirrorDir, transmittedWeight, path * 2 + 1, pixel);
+                raysByType[RayType.REFRACTION.ordinal()]++;
+            }
+        }
+    }
+
+    /**
+     * Adds the ambient light of a hit, dimmed by its ambient occlusion, to its pixel and queues a
+     * shadow ray per selected light carrying its diffuse and specular light, which only reach the
+     * pixel if nothing blocks the light.
+     */
+    private void shadeLocal(Material material, int pixel, double weight, double visibility, LightTree lightTree) {
+        LinearColor color = material.getLinearColor();
+        double ambient = weight * AMBIENT * visibility;
+        red[pixel] += color.r * ambient;
+        green[pixel] += color.g * ambient;
+        blue[pixel] += color.b * ambient;
+
+        Vec3.subtract(origin, point, viewDir).normalize();
+        for (int i = 0; i < lights.size; i++) {
+            int light = lights.lights[i];
+            lightTree.getPosition(light, lightPosition);
+            Vec3.subtract(lightPosition, point, lightDir);
+            double distanceSquared = lightDir.lengthSquared();
+            lightDir.normalize();
+            double diffuse = normal.dot(lightDir);
+            if (diffuse <= 0) {
+                continue;
+            }
+            // Mirror the light direction around the normal: 2(n.l)n - l
+            Vec3.reflect(lightDir, normal, mirrorDir).scale(-1);
+            double specular = Math.pow(Math.max(0, viewDir.dot(mirrorDir)), material.getShininess()) * material.getSpecular();
+            double scale = weight * lightTree.getLuminance(light) * lights.weights[i] / distanceSquared;
+            shadows.add(point, normal, lightPosition, pixel,
+                    (color.r * diffuse + specular) * scale,
+                    (color.g * diffuse + specular) * scale,
+                    (color.b * diffuse + specular) * scale);
+        }
+    }
+
+    /**
+     * Tests the queued shadow rays and adds the light of the unblocked ones to their pixels.
+     * The occluder found by the previous blocked ray is tested before the hierarchy, since rays
+     * of neighbouring pixels tend to be blocked by the same object.
+     */
+    private void traceShadows(SceneGeometry geometry) {
+        ShadowQueue queue = shadows;
+        raysByType[RayType.SHADOW.ordinal()] += queue.size;
+        for (int i = 0; i < queue.size; i++) {
+            origin.set(queue.originX[i], queue.originY[i], queue.originZ[i]);
+            // Unnormalized, so the light sits at t = 1
+            direction.set(queue.directionX[i], queue.directionY[i], queue.directionZ[i]);
+            if (occluderGeometry == geometry && lastOccluder >= 0) {
+                shadowHit.t = 1.0;
+                shadowHit.primitive = -1;
+                shadowHit.primitiveTests++;
+                if (geometry.occludedBy(lastOccluderInstance, lastOccluder, origin, direction, shadowHit)) {
+                    continue;
+                }
+            }
+            if (geometry.occluded(origin, direction, 1.0, shadowHit)) {
+                occluderGeometry = geometry;
+                lastOccluderInstance = shadowHit.instance;
+                lastOccluder = shadowHit.primitive;
+                continue;
+            }
+            int pixel = queue.pixel[i];
+            red[pixel] += queue.red[i];
+            green[pixel] += queue.green[i];
+            blue[pixel] += queue.blue[i];
+        }
+    }
+
+    /**
+     * The rays of one bounce as parallel arrays, with the weight each ray's color is added with
+     * and its path in the tree of bounces.
+     */
+    private static final class RayQueue {
+        double[] originX = new double[0];
+        double[] originY = new double[0];
+        double[] originZ = new double[0];
+        double[] directionX = new double[0];
+        double[] directionY = new double[0];
+        double[] directionZ = new double[0];
+        double[] weight = new double[0];
+        long[] path = new long[0];
+        int[] pixel = new int[0];
+        int size;
+
+        void clear() {
+            size = 0;
+        }
+
+        void add(Vec3 origin, Vec3 direction, double rayWeight, long rayPath, int rayPixel) {
+            if (size == pixel.length) {
+                reserve(Math.max(64, size * 2));
+            }
+            originX[size] = origin.x;
+            originY[size] = origin.y;
+            originZ[size] = origin.z;
+            directionX[size] = direction.x;
+            directionY[size] = direction.y;
+            directionZ[size] = direction.z;
+            weight[size] = rayWeight;
+            path[size] = rayPath;
+            pixel[size] = rayPixel;
+            size++;
+        }
+
+        /**
+         * Grows the arrays to hold at least {@code capacity} rays.
+         */
+        void reserve(int capacity) {
+            if (capacity > pixel.length) {
+                originX = Arrays.copyOf(originX, capacity);
+                originY = Arrays.copyOf(originY, capacity);
+                originZ = Arrays.copyOf(originZ, capacity);
+                directionX = Arrays.copyOf(directionX, capacity);
+                directionY = Arrays.copyOf(directionY, capacity);
+                directionZ = Arrays.copyOf(directionZ, capacity);
+                weight = Arrays.copyOf(weight, capacity);
+                path = Arrays.copyOf(path, capacity);
+                pixel = Arrays.copyOf(pixel, capacity);
+            }
+        }
+    }
+
+    /**
+     * Shadow rays towards lights as parallel arrays, each with the color it adds to its pixel
+     * when its light is visible.
+     */
+    private static final class ShadowQueue {
+        double[] originX = new double[0];
+        double[] originY = new double[0];
+        double[] originZ = new double[0];
+        double[] directionX = new double[0];
+        double[] directionY = new double[0];
+        double[] directionZ = new double[0];
+        double[] red = new double[0];
+        double[] green = new double[0];
+        double[] blue = new double[0];
+        int[] pixel = new int[0];
+        int size;
+
+        void clear() {
+            size = 0;
+        }
+
+        /**
+         * Queues the segment from a hit point, offset along its normal, to the light.
+         */
+        void add(Vec3 point, Vec3 normal, Vec3 light, int rayPixel, double rayRed, double rayGreen, double rayBlue) {
+            if (size == pixel.length) {
+                int capacity = Math.max(64, size * 2);
+                originX = Arrays.copyOf(originX, capacity);
+                originY = Arrays.copyOf(originY, capacity);
+                originZ = Arrays.copyOf(originZ, capacity);
+                directionX = Arrays.copyOf(directionX, capacity);
+                directionY = Arrays.copyOf(directionY, capacity);
+                directionZ = Arrays.copyOf(directionZ, capacity);
+                red = Arrays.copyOf(red, capacity);
+                green = Arrays.copyOf(green, capacity);
+                blue = Arrays.copyOf(blue, capacity);
+                pixel = Arrays.copyOf(pixel, capacity);
+            }
+            // Offset the origin along the normal so the surface does not shadow itself
+            double x = point.x + normal.x * Renderer.SHADOW_BIAS;
+            double y = point.y + normal.y * Renderer.SHADOW_BIAS;
+            double z = point.z + normal.z * Renderer.SHADOW_BIAS;
+            originX[size] = x;
+            originY[size] = y;
+            originZ[size] = z;
+            directionX[size] = light.x - x;
+            directionY[size] = light.y - y;
+            directionZ[size] = light.z - z;
+            red[size] = rayRed;
+            green[size] = rayGreen;
+            blue[size] = rayBlue;
+            pixel[size] = rayPixel;
+            size++;
+        }
+    }
+}
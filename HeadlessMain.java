@@ -0,0 +1,279 @@
+import Colors.LinearColor;
+import Distributed.RenderCoordinator;
+import Engine.DemoScene;
+import Engine.Renderer;
+import Engine.Scene;
+import Engine.SceneFile;
+import Engine.TileCache;
+import Materials.Material;
+import Objects.Object;
+import Objects.Shapes.ObjLoader;
+import Metrics.RenderMetrics;
+import Output.ImageFormat;
+import Output.RasterSink;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders a scene straight to an image file without opening any window.
+ * Usage: {@code java -cp target/classes HeadlessMain --output frame.png [--size 1920x1080]
+ * [--scene demo|file.rts] [--mesh file.obj] [--format png|ppm|pfm] [--tile 32] [--threads N] [--save-scene file.rts]
+ * [--stats] [--heatmap tiles.png] [--tile-cache DIR] [--listen PORT [--local-workers N]]}
+ * With {@code --listen} the frame is rendered by {@link Distributed.RenderWorker} processes started
+ * through {@code WorkerMain}; {@code --local-workers} launches that many of them on this machine.
+ * Every {@code --mesh} adds the triangles of a Wavefront OBJ file to the scene. With
+ * {@code --tile-cache}, tiles unaffected since an earlier render are read from that directory instead of traced.
+ */
+public class HeadlessMain {
+    private static final String USAGE = "Usage: HeadlessMain --output <file.png|file.ppm|file.pfm> [--size WIDTHxHEIGHT] "
+            + "[--scene demo|<file.rts>] [--mesh <file.obj>] [--format png|ppm|pfm] [--tile SIZE] [--threads COUNT] [--save-scene <file.rts>] [--stats] [--heatmap <file>] [--tile-cache <dir>] "
+            + "[--listen PORT [--local-workers COUNT]]";
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+
+        String sceneName = "demo";
+        List<Path> meshes = new ArrayList<>();
+        int width = 1920;
+        int height = 1080;
+        Path output = null;
+        ImageFormat format = null;
+        Integer tileSize = null;
+        Integer threads = null;
+        Path savedScene = null;
+        boolean stats = false;
+        Path heatmap = null;
+        Path tileCache = null;
+        Integer listenPort = null;
+        int localWorkers = 0;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (option.equals("--stats")) {
+                    stats = true;
+                    continue;
+                }
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + option);
+                }
+                String value = args[++i];
+                switch (option) {
+                    case "--scene":
+                        sceneName = value;
+                        break;
+                    case "--mesh":
+                        meshes.add(Path.of(value));
+                        break;
+                    case "--size":
+                        String[] size = value.toLowerCase().split("x");
+                        if (size.length != 2) {
+                            throw new IllegalArgumentException("Size must look like 1920x1080: " + value);
+                        }
+                        width = Integer.parseInt(size[0]);
+                        height = Integer.parseInt(size[1]);
+                        break;
+                    case "--output":
+                        output = Path.of(value);
+                        break;
+                    case "--format":
+                        format = ImageFormat.fromName(value);
+                        break;
+                    case "--tile":
+                        tileSize = Integer.parseInt(value);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "--save-scene":
+                        savedScene = Path.of(value);
+                        break;
+                    case "--heatmap":
+                        heatmap = Path.of(value);
+                        break;
+                    case "--tile-cache":
+                        tileCache = Path.of(value);
+                        break;
+                    case "--listen":
+                        listenPort = Integer.parseInt(value);
+                        break;
+                    case "--local-workers":
+                        localWorkers = Integer.parseInt(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + option);
+                }
+            }
+            if (output == null) {
+                throw new IllegalArgumentException("An output path is required.");
+            }
+            if (width < 1 || height < 1) {
+                throw new IllegalArgumentException("Width and height must be positive.");
+            }
+            if (format == null) {
+                format = ImageFormat.fromPath(output);
+            }
+            if (listenPort == null && localWorkers > 0) {
+                throw new IllegalArgumentException("--local-workers requires --listen.");
+            }
+            if (!meshes.isEmpty() && (listenPort != null || savedScene != null)) {
+                throw new IllegalArgumentException("Scene files cannot store meshes yet, so --mesh works with neither --listen nor --save-scene.");
+            }
+            if (listenPort != null && tileCache != null) {
+                throw new IllegalArgumentException("Tiles are traced by the workers, so --tile-cache does not work with --listen.");
+            }
+            if (listenPort != null && (stats || heatmap != null)) {
+                throw new IllegalArgumentException("Statistics are collected by the workers and are not available with --listen.");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        long loadStart = System.nanoTime();
+        Scene scene = loadScene(sceneName);
+        if (!sceneName.equals("demo")) {
+            System.out.println("Loaded " + sceneName + " in " + (System.nanoTime() - loadStart) / 1_000_000 + " ms");
+        }
+        Material meshMaterial = new Material(Color.lightGray);
+        for (Path mesh : meshes) {
+            long meshStart = System.nanoTime();
+            scene.addInstance(new Object<>(ObjLoader.load(mesh, meshMaterial)));
+            System.out.println("Loaded " + mesh + " in " + (System.nanoTime() - meshStart) / 1_000_000 + " ms");
+        }
+        if (savedScene != null) {
+            SceneFile.save(scene, savedScene);
+        }
+        if (listenPort != null) {
+            renderDistributed(scene, listenPort, localWorkers, threads, tileSize, width, height, format, output);
+            return;
+        }
+        Renderer renderer = new Renderer(scene);
+        if (tileSize != null) {
+            renderer.setTileSize(tileSize);
+        }
+        if (threads != null) {
+            renderer.setParallelism(threads);
+        }
+        if (tileCache != null) {
+            renderer.setTileCache(new TileCache(tileCache, TileCache.DEFAULT_MAX_BYTES));
+        }
+        RenderMetrics metrics = null;
+        if (stats || heatmap != null) {
+            metrics = new RenderMetrics();
+            renderer.setMetrics(metrics);
+        }
+
+        long start = System.nanoTime();
+        try (RasterSink sink = format.open(output)) {
+            renderer.render(width, height, sink);
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Rendered " + width + "x" + height + " to " + output + " in " + elapsedMillis + " ms");
+        if (stats) {
+            System.out.println(metrics);
+            if (tileCache != null) {
+                System.out.println("Tile cache: " + renderer.getTileCache().getHits() + " hits, " + renderer.getTileCache().getMisses() + " misses");
+            }
+        }
+        if (heatmap != null) {
+            metrics.getLastFrame().writeHeatmap(heatmap);
+        }
+    }
+
+    /**
+     * Renders the frame on worker processes and writes it once all tiles have arrived.
+     */
+    private static void renderDistributed(Scene scene, int port, int localWorkers, Integer threads, Integer tileSize,
+                                          int width, int height, ImageFormat format, Path output) throws IOException {
+        List<Process> workers = new ArrayList<>();
+        try (RenderCoordinator coordinator = new RenderCoordinator(scene, port)) {
+            if (tileSize != null) {
+                coordinator.setTileSize(tileSize);
+            }
+            System.out.println("Waiting for workers on port " + coordinator.getPort());
+            for (int i = 0; i < localWorkers; i++) {
+                workers.add(startLocalWorker(coordinator.getPort(), threads));
+            }
+
+            long start = System.nanoTime();
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            coordinator.render(image);
+            int[] pixels = Renderer.directPixels(image);
+            float[] row = new float[width * 3];
+            LinearColor color = new LinearColor();
+            try (RasterSink sink = format.open(output)) {
+                sink.begin(width, height);
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        color.setSRGB(pixels[y * width + x]);
+                        row[x * 3] = (float) color.r;
+                        row[x * 3 + 1] = (float) color.g;
+                        row[x * 3 + 2] = (float) color.b;
+                    }
+                    sink.writeRows(y, 1, row);
+                }
+                sink.finish();
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            System.out.println("Rendered " + width + "x" + height + " on " + coordinator.getWorkerCount() + " workers to "
+                    + output + " in " + elapsedMillis + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for workers.", e);
+        } finally {
+            for (Process worker : workers) {
+                try {
+                    if (!worker.waitFor(5, TimeUnit.SECONDS)) {
+                        worker.destroy();
+                    }
+                } catch (InterruptedException e) {
+                    worker.destroy();
+                }
+            }
+        }
+    }
+
+    /**
+     * Launches a worker JVM on this machine with the same class path.
+     */
+    private static Process startLocalWorker(int port, Integer threads) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            command.add("--add-modules");
+            command.add("jdk.incubator.vector");
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("WorkerMain");
+        command.add("--connect");
+        command.add("localhost:" + port);
+        if (threads != null) {
+            command.add("--threads");
+            command.add(threads.toString());
+        }
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+
+    private static Scene loadScene(String name) throws IOException {
+        if (name.equals("demo")) {
+            return DemoScene.create();
+        }
+        Path path = Path.of(name);
+        if (!Files.isRegularFile(path)) {
+            System.err.println("Unknown scene " + name + ", expected demo or a scene file");
+            System.exit(2);
+            return null;
+        }
+        return SceneFile.load(path);
+    }
+}
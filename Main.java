@@ -1,49 +1,176 @@
-import Objects.lights.Light;
-import Vectors.Vector;
-import java.awt.*;
-import java.util.List;
+import Engine.Camera;
+import Engine.DemoScene;
+import Engine.RealtimeRenderer;
+import Engine.Renderer;
+import Engine.Scene;
+import Vectors.Vec3;
+import java.awt.Canvas;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
-import javax.swing.ImageIcon;
 import javax.swing.JFrame;
-import javax.swing.JLabel;
-import Materials.Material;
-import Objects.Shapes.Sphere;
 
+/**
+ * Interactive viewer. The scene is re-rendered continuously while the camera moves, at whatever
+ * internal resolution keeps the target frame time, and refined to full resolution once it stops.
+ * Move with W/A/S/D, Q/E for down and up, and drag the mouse to look around.
+ * Usage: {@code java -cp target/classes Main [--frame-time MILLIS]}
+ */
 public class Main {
-    public static void main(String[] args) {
+    private static final double MOVE_STEP = 0.1;
+    private static final double RADIANS_PER_PIXEL = 0.005;
+
+    public static void main(String[] args) throws InterruptedException {
         int width = 1920;
         int height = 1080;
-        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        long frameTime = RealtimeRenderer.DEFAULT_TARGET_FRAME_MILLIS;
+        if (args.length == 2 && args[0].equals("--frame-time")) {
+            frameTime = Long.parseLong(args[1]);
+        } else if (args.length != 0) {
+            System.err.println("Usage: Main [--frame-time MILLIS]");
+            System.exit(2);
+        }
 
-        Camera camera = new Camera(
-                new Vector(List.of(0.0, 0.0, 0.0)),
-                new Vector(List.of(-2.0, -1.5, -1.0)),
-                new Vector(List.of(4.0, 0.0, 0.0)),
-                new Vector(List.of(0.0, 3.0, 0.0))
-        );
+        Scene scene = DemoScene.create();
+        RealtimeRenderer realtime = new RealtimeRenderer(new Renderer(scene), width, height);
+        realtime.setTargetFrameTime(frameTime);
 
-        Light light = new Light(new Vector(List.of(-3.0, -1.0, -2.0)),1.0);
-        Plane groundPlane = new Plane(new Vector(List.of(0.0, 1.0, 0.0)), new Vector(List.of(0.0, -1.0, 0.0)), Color.gray);
-        Scene scene = new Scene(camera, light, groundPlane);
+        Canvas canvas = new Canvas();
+        canvas.setPreferredSize(new Dimension(width, height));
+        // Frames are drawn by the render loop, not by the event thread
+        canvas.setIgnoreRepaint(true);
+        JFrame frame = new JFrame("Ray Tracer");
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.add(canvas);
+        frame.pack();
+        frame.setVisible(true);
+        canvas.createBufferStrategy(2);
+        BufferStrategy strategy = canvas.getBufferStrategy();
 
-        Material sphereMaterial = new Material(Color.green);
-        Material sphereMaterial2 = new Material(Color.red);
+        FlyCamera controls = new FlyCamera(scene.getCamera(), realtime);
+        canvas.addKeyListener(controls);
+        canvas.addMouseListener(controls);
+        canvas.addMouseMotionListener(controls);
+        canvas.requestFocusInWindow();
 
-        Sphere sphere = new Sphere(new Vector(List.of(1.0, -1.0, -2.0)), 1, sphereMaterial);
-        Sphere sphere2 = new Sphere(new Vector(List.of(2.0, -1.5, -1.0)), 1, sphereMaterial2);
+        realtime.run((image, fullResolution) -> present(strategy, canvas, image));
+    }
 
-        scene.addObject(sphere);
-        scene.addObject(sphere2);
+    /**
+     * Draws a frame stretched over the whole canvas into the back buffer and flips it to the screen.
+     */
+    private static void present(BufferStrategy strategy, Canvas canvas, BufferedImage image) {
+        do {
+            do {
+                Graphics2D graphics = (Graphics2D) strategy.getDrawGraphics();
+                try {
+                    graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                    graphics.drawImage(image, 0, 0, canvas.getWidth(), canvas.getHeight(), null);
+                } finally {
+                    graphics.dispose();
+                }
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+    }
 
+    /**
+     * Keyboard and mouse controls that fly the camera around, keeping the scene's field of view and aspect ratio.
+     */
+    private static final class FlyCamera extends MouseAdapter implements KeyListener {
+        private static final Vec3 UP = new Vec3(0, 1, 0);
+        private static final double MAX_PITCH = Math.toRadians(89);
 
-        Renderer renderer = new Renderer(scene);
-        renderer.render(image);
+        private final RealtimeRenderer realtime;
+        private final Vec3 eye;
+        private final double fieldOfView;
+        private final double aspectRatio;
+        private double yaw;
+        private double pitch;
+        private int dragX;
+        private int dragY;
 
-        JFrame frame = new JFrame("Ray Tracer");
-        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        frame.setSize(width, height);
-        frame.add(new JLabel(new ImageIcon(image)));
-        frame.pack();
-        frame.setVisible(true);
+        FlyCamera(Camera camera, RealtimeRenderer realtime) {
+            this.realtime = realtime;
+            this.eye = new Vec3(camera.getOrigin());
+            // The viewing direction points at the center of the image plane
+            Vec3 forward = new Vec3(camera.getCorner())
+                    .addScaled(camera.getHorizontal(), 0.5)
+                    .addScaled(camera.getVertical(), 0.5)
+                    .addScaled(eye, -1);
+            double distance = forward.length();
+            this.fieldOfView = Math.toDegrees(2 * Math.atan(camera.getVertical().length() / 2 / distance));
+            this.aspectRatio = camera.getHorizontal().length() / camera.getVertical().length();
+            this.yaw = Math.atan2(forward.x, -forward.z);
+            this.pitch = Math.asin(forward.y / distance);
+        }
+
+        @Override
+        public void keyPressed(KeyEvent event) {
+            Vec3 forward = forward();
+            Vec3 right = Vec3.cross(forward, UP, new Vec3()).normalize();
+            switch (event.getKeyCode()) {
+                case KeyEvent.VK_W:
+                    eye.addScaled(forward, MOVE_STEP);
+                    break;
+                case KeyEvent.VK_S:
+                    eye.addScaled(forward, -MOVE_STEP);
+                    break;
+                case KeyEvent.VK_D:
+                    eye.addScaled(right, MOVE_STEP);
+                    break;
+                case KeyEvent.VK_A:
+                    eye.addScaled(right, -MOVE_STEP);
+                    break;
+                case KeyEvent.VK_E:
+                    eye.addScaled(UP, MOVE_STEP);
+                    break;
+                case KeyEvent.VK_Q:
+                    eye.addScaled(UP, -MOVE_STEP);
+                    break;
+                default:
+                    return;
+            }
+            update();
+        }
+
+        @Override
+        public void keyReleased(KeyEvent event) {
+        }
+
+        @Override
+        public void keyTyped(KeyEvent event) {
+        }
+
+        @Override
+        public void mousePressed(MouseEvent event) {
+            dragX = event.getX();
+            dragY = event.getY();
+        }
+
+        @Override
+        public void mouseDragged(MouseEvent event) {
+            yaw += (event.getX() - dragX) * RADIANS_PER_PIXEL;
+            // Screen rows grow downwards, so dragging down looks down, like dragging right looks right
+            pitch = Math.max(-MAX_PITCH, Math.min(MAX_PITCH, pitch - (event.getY() - dragY) * RADIANS_PER_PIXEL));
+            dragX = event.getX();
+            dragY = event.getY();
+            update();
+        }
+
+        private Vec3 forward() {
+            return new Vec3(Math.sin(yaw) * Math.cos(pitch), Math.sin(pitch), -Math.cos(yaw) * Math.cos(pitch));
+        }
+
+        private void update() {
+            Vec3 target = new Vec3(eye).add(forward());
+            realtime.moveCamera(new Camera(eye, target, UP, fieldOfView, aspectRatio));
+        }
     }
 }
@@ -1,15 +1,133 @@
 package Materials;
+import Colors.LinearColor;
 import java.awt.*;
 
 public class Material {
+    public static final double DEFAULT_INDEX_OF_REFRACTION = 1.5;
+
     // hex code
     private Color color;
+    private LinearColor linearColor;
+    private double shininess;
+    private double specular;
+    private double reflection;
+    private double refraction;
+    private double indexOfRefraction = DEFAULT_INDEX_OF_REFRACTION;
 
     public Material(Color color){
+        this(color, 32, 0.5, 0.0, 0.0);
+    }
+
+    public Material(Color color, double shininess, double specular, double reflection, double refraction){
         this.color = color;
+        this.linearColor = LinearColor.of(color);
+        this.shininess = shininess;
+        this.specular = specular;
+        this.reflection = reflection;
+        this.refraction = refraction;
     }
 
     public Color getColor(){
         return color;
     }
+
+    /**
+     * Changes the surface color. Materials may be edited between frames but not while one renders.
+     */
+    public void setColor(Color color){
+        this.color = color;
+        this.linearColor = LinearColor.of(color);
+    }
+
+    /**
+     * @return The material color decoded to linear light. Callers must not modify it.
+     */
+    public LinearColor getLinearColor(){
+        return linearColor;
+    }
+
+    public double getShininess(){
+        return shininess;
+    }
+
+    public void setShininess(double shininess){
+        this.shininess = shininess;
+    }
+
+    public double getSpecular(){
+        return specular;
+    }
+
+    public void setSpecular(double specular){
+        this.specular = specular;
+    }
+
+    public double getReflection(){
+        return reflection;
+    }
+
+    public void setReflection(double reflection){
+        this.reflection = reflection;
+    }
+
+    public double getRefraction(){
+        return refraction;
+    }
+
+    public void setRefraction(double refraction){
+        this.refraction = refraction;
+    }
+
+    /**
+     * @return The index of refraction of the material's interior, 1.5 (glass) unless set otherwise.
+     */
+    public double getIndexOfRefraction(){
+        return indexOfRefraction;
+    }
+
+    public void setIndexOfRefraction(double indexOfRefraction){
+        if (!(indexOfRefraction > 0)) {
+            throw new IllegalArgumentException("The index of refraction must be positive.");
+        }
+        this.indexOfRefraction = indexOfRefraction;
+    }
+
+    /**
+     * @return A hash of every property of the material, which changes whenever any of them does.
+     */
+    public long contentHash(){
+        long[] values = {
+                color.getRGB(),
+                Double.doubleToLongBits(shininess),
+                Double.doubleToLongBits(specular),
+                Double.doubleToLongBits(reflection),
+                Double.doubleToLongBits(refraction),
+                Double.doubleToLongBits(indexOfRefraction)
+        };
+        long hash = 0xCBF29CE484222325L;
+        for (long value : values) {
+            hash = (hash ^ value) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Computes the Fresnel reflectance of the surface for unpolarized light.
+     * @param cosIncident The cosine between the incoming ray and the surface normal, at least 0.
+     * @param entering True if the ray enters the material from outside, false if it leaves it.
+     * @return The reflected fraction of the light, 1 under total internal reflection.
+     */
+    public double getReflectance(double cosIncident, boolean entering){
+        double n1 = entering ? 1.0 : indexOfRefraction;
+        double n2 = entering ? indexOfRefraction : 1.0;
+        double ratio = n1 / n2;
+        double sinTransmittedSquared = ratio * ratio * (1 - cosIncident * cosIncident);
+        if (sinTransmittedSquared >= 1) {
+            return 1;
+        }
+        double cosTransmitted = Math.sqrt(1 - sinTransmittedSquared);
+        double perpendicular = (n1 * cosIncident - n2 * cosTransmitted) / (n1 * cosIncident + n2 * cosTransmitted);
+        double parallel = (n1 * cosTransmitted - n2 * cosIncident) / (n1 * cosTransmitted + n2 * cosIncident);
+        return 0.5 * (perpendicular * perpendicular + parallel * parallel);
+    }
 }
@@ -0,0 +1,26 @@
+package Metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event spanning the render of one frame.
+ */
+@Name("rtengine.FrameRender")
+@Label("Frame Render")
+@Category("RT Engine")
+@Description("Rendering of one complete frame")
+public final class FrameRenderEvent extends Event {
+    @Label("Width")
+    public int width;
+
+    @Label("Height")
+    public int height;
+
+    @Label("Mode")
+    @Description("tiled, streamed or progressive")
+    public String mode;
+}
@@ -0,0 +1,12 @@
+package Metrics;
+
+/**
+ * The kinds of rays counted by {@link RenderMetrics}.
+ */
+public enum RayType {
+    PRIMARY,
+    REFLECTION,
+    REFRACTION,
+    SHADOW,
+    AMBIENT_OCCLUSION
+}
@@ -0,0 +1,144 @@
+package Metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters describing the work done by a renderer: rays by type and by recursion depth,
+ * primitive intersection tests and BVH nodes visited, plus the tile timings of the last frame.
+ * Counters are striped {@link LongAdder}s. Render threads accumulate into plain per-thread
+ * fields and add them here once per tile, so the counters cost almost nothing per ray and a
+ * renderer without metrics only pays for those per-thread increments.
+ * Counts accumulate across frames until {@link #reset()} is called.
+ */
+public final class RenderMetrics {
+    /**
+     * Rays at this depth or deeper share the last depth bucket.
+     */
+    public static final int DEPTH_BUCKETS = 16;
+
+    private final LongAdder[] raysByType = newAdders(RayType.values().length);
+    private final LongAdder[] raysByDepth = newAdders(DEPTH_BUCKETS);
+    private final LongAdder intersectionTests = new LongAdder();
+    private final LongAdder nodesVisited = new LongAdder();
+    private volatile TileTimings lastFrame;
+
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Adds per-ray-type counts, indexed by {@link RayType#ordinal()}, and clears them.
+     */
+    public void addRays(long[] countsByType) {
+        for (int i = 0; i < countsByType.length; i++) {
+            if (countsByType[i] != 0) {
+                raysByType[i].add(countsByType[i]);
+                countsByType[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * Adds per-depth counts, indexed by recursion depth, and clears them.
+     */
+    public void addRaysByDepth(long[] countsByDepth) {
+        for (int i = 0; i < countsByDepth.length; i++) {
+            if (countsByDepth[i] != 0) {
+                raysByDepth[Math.min(i, DEPTH_BUCKETS - 1)].add(countsByDepth[i]);
+                countsByDepth[i] = 0;
+            }
+        }
+    }
+
+    public void addIntersectionTests(long count) {
+        intersectionTests.add(count);
+    }
+
+    public void addNodesVisited(long count) {
+        nodesVisited.add(count);
+    }
+
+    public long getRays(RayType type) {
+        return raysByType[type.ordinal()].sum();
+    }
+
+    /**
+     * @return The number of rays traced at the given recursion depth; the last bucket includes all deeper rays.
+     */
+    public long getRaysAtDepth(int depth) {
+        return raysByDepth[Math.min(depth, DEPTH_BUCKETS - 1)].sum();
+    }
+
+    public long getTotalRays() {
+        long total = 0;
+        for (LongAdder adder : raysByType) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+    public long getIntersectionTests() {
+        return intersectionTests.sum();
+    }
+
+    public long getNodesVisited() {
+        return nodesVisited.sum();
+    }
+
+    /**
+     * Starts recording the tile timings of a new frame.
+     * @return The timings the renderer fills in while it renders the frame.
+     */
+    public TileTimings beginFrame(int width, int height, int tileWidth, int tileHeight) {
+        TileTimings timings = new TileTimings(width, height, tileWidth, tileHeight);
+        lastFrame = timings;
+        return timings;
+    }
+
+    /**
+     * @return The tile timings of the most recently started frame, or null if no frame was rendered.
+     */
+    public TileTimings getLastFrame() {
+        return lastFrame;
+    }
+
+    public void reset() {
+        for (LongAdder adder : raysByType) {
+            adder.reset();
+        }
+        for (LongAdder adder : raysByDepth) {
+            adder.reset();
+        }
+        intersectionTests.reset();
+        nodesVisited.reset();
+        lastFrame = null;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("rays:");
+        for (RayType type : RayType.values()) {
+            builder.append(' ').append(type.name().toLowerCase()).append('=').append(getRays(type));
+        }
+        builder.append("\nrays by depth:");
+        for (int depth = 0; depth < DEPTH_BUCKETS; depth++) {
+            long count = raysByDepth[depth].sum();
+            if (count != 0) {
+                builder.append(' ').append(depth).append('=').append(count);
+            }
+        }
+        builder.append("\nintersection tests: ").append(getIntersectionTests());
+        builder.append("\nBVH nodes visited: ").append(getNodesVisited());
+        TileTimings timings = lastFrame;
+        if (timings != null) {
+            builder.append("\nlast frame: ").append(timings.getTilesX()).append('x').append(timings.getTilesY())
+                    .append(" tiles, slowest ").append(timings.getMaxNanos() / 1_000).append(" us, total ")
+                    .append(timings.getTotalNanos() / 1_000_000).append(" ms of tile time");
+        }
+        return builder.toString();
+    }
+}
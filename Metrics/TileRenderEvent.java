@@ -0,0 +1,31 @@
+package Metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event spanning the render of one tile or band. Disabled by default since
+ * frames have many tiles; enable it in the recording settings to inspect scheduling.
+ */
+@Name("rtengine.TileRender")
+@Label("Tile Render")
+@Category("RT Engine")
+@Description("Rendering of one tile of a frame")
+@Enabled(false)
+public final class TileRenderEvent extends Event {
+    @Label("X")
+    public int x;
+
+    @Label("Y")
+    public int y;
+
+    @Label("Width")
+    public int width;
+
+    @Label("Height")
+    public int height;
+}
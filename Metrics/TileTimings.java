@@ -0,0 +1,111 @@
+package Metrics;
+
+import Output.ImageFormat;
+import Output.RasterSink;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Wall time spent on each tile of one frame. Every tile is written by the single thread that
+ * renders it; read the timings once the frame has completed.
+ */
+public final class TileTimings {
+    private final int width;
+    private final int height;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int tilesX;
+    private final int tilesY;
+    private final long[] nanos;
+
+    TileTimings(int width, int height, int tileWidth, int tileHeight) {
+        if (width < 1 || height < 1 || tileWidth < 1 || tileHeight < 1) {
+            throw new IllegalArgumentException("Frame and tile dimensions must be positive.");
+        }
+        this.width = width;
+        this.height = height;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.tilesX = (width + tileWidth - 1) / tileWidth;
+        this.tilesY = (height + tileHeight - 1) / tileHeight;
+        this.nanos = new long[tilesX * tilesY];
+    }
+
+    /**
+     * Adds time to a tile. Passes that visit a tile more than once accumulate.
+     * @param tile The row-major tile index.
+     * @param elapsedNanos The wall time spent on the tile.
+     */
+    public void add(int tile, long elapsedNanos) {
+        nanos[tile] += elapsedNanos;
+    }
+
+    public int getTilesX() {
+        return tilesX;
+    }
+
+    public int getTilesY() {
+        return tilesY;
+    }
+
+    public int getTileWidth() {
+        return tileWidth;
+    }
+
+    public int getTileHeight() {
+        return tileHeight;
+    }
+
+    public long getNanos(int tileX, int tileY) {
+        return nanos[tileY * tilesX + tileX];
+    }
+
+    public long getMaxNanos() {
+        long max = 0;
+        for (long value : nanos) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    public long getTotalNanos() {
+        long total = 0;
+        for (long value : nanos) {
+            total += value;
+        }
+        return total;
+    }
+
+    /**
+     * Writes the timings as a heatmap at the frame's resolution: black tiles were the fastest,
+     * then red and yellow up to white for the slowest tile.
+     * @param path The image file; the format follows its extension.
+     * @throws IOException if the image cannot be written.
+     */
+    public void writeHeatmap(Path path) throws IOException {
+        double scale = 1.0 / Math.max(1, getMaxNanos());
+        float[] row = new float[width * 3];
+        try (RasterSink sink = ImageFormat.fromPath(path).open(path)) {
+            sink.begin(width, height);
+            for (int y = 0; y < height; y++) {
+                int tileRow = y / tileHeight * tilesX;
+                for (int x = 0; x < width; x++) {
+                    double heat = nanos[tileRow + x / tileWidth] * scale;
+                    row[x * 3] = heatChannel(heat * 3);
+                    row[x * 3 + 1] = heatChannel(heat * 3 - 1);
+                    row[x * 3 + 2] = heatChannel(heat * 3 - 2);
+                }
+                sink.writeRows(y, 1, row);
+            }
+            sink.finish();
+        }
+    }
+
+    /**
+     * Clamps a ramp value to [0, 1] and decodes it from display gamma, since sinks expect linear light.
+     */
+    private static float heatChannel(double value) {
+        double clamped = Math.min(1, Math.max(0, value));
+        return (float) Math.pow(clamped, 2.2);
+    }
+}
@@ -0,0 +1,194 @@
+package Objects;
+
+import Acceleration.BVH;
+import Acceleration.Hit;
+import Materials.Material;
+import Objects.Shapes.Shape;
+import Vectors.Transform;
+import Vectors.Vec3;
+import java.util.List;
+
+/**
+ * A two-level acceleration structure over placed copies of shared geometry.
+ * The bottom level is the hierarchy each {@link Shape} builds over its own primitives in
+ * object space, once, no matter how often it is placed. The top level is a hierarchy over the
+ * world-space bounds of the instances; its leaves transform the ray into each instance's object
+ * space and continue in the bottom level. An affine transform keeps the ray parameter, so hits in
+ * different instances compare directly.
+ * <p>
+ * The transforms are read when the structure is built. Moving instances therefore means building
+ * a new top level, which costs time proportional to the instance count only. Instances are
+ * numbered by their position in the top level; {@link #getObject(int)} maps a number back.
+ */
+public final class Instances {
+    private final Object<? extends Shape>[] objects;
+    private final Shape[] geometry;
+    private final Transform[] transforms;
+    private final BVH closestHits;
+    private final BVH occlusion;
+
+    /**
+     * Builds the top level, and the bottom level of any geometry that has no hierarchy yet.
+     * @param instances The placed geometry.
+     */
+    @SuppressWarnings("unchecked")
+    public Instances(List<? extends Object<? extends Shape>> instances) {
+        int count = instances.size();
+        double[] bounds = new double[count * 6];
+        for (int i = 0; i < count; i++) {
+            Object<? extends Shape> instance = instances.get(i);
+            BVH bottom = instance.getItem().getAccelerator();
+            if (bottom == null) {
+                bottom = instance.getItem().buildAccelerator();
+            }
+            instance.getTransform().transformBounds(bottom.getBounds(), 0, bounds, i * 6);
+        }
+        this.closestHits = BVH.build(bounds, this::intersectLeaf, 1);
+        this.occlusion = closestHits.withLeafIntersector(this::occludedLeaf);
+
+        // Store the instances in hierarchy order so every leaf is a contiguous range
+        int[] order = closestHits.getPrimitiveOrder();
+        // Arrays of a parameterized type cannot be created, only of the wildcard type
+        this.objects = (Object<? extends Shape>[]) new Object<?>[count];
+        this.geometry = new Shape[count];
+        this.transforms = new Transform[count];
+        for (int i = 0; i < count; i++) {
+            objects[i] = instances.get(order[i]);
+            geometry[i] = objects[i].getItem();
+            transforms[i] = objects[i].getTransform();
+        }
+    }
+
+    public int size() {
+        return objects.length;
+    }
+
+    /**
+     * @return The placed geometry with the given instance number.
+     */
+    public Object<? extends Shape> getObject(int instance) {
+        return objects[instance];
+    }
+
+    /**
+     * @return The transform of an instance as it was when the structure was built.
+     */
+    public Transform getTransform(int instance) {
+        return transforms[instance];
+    }
+
+    /**
+     * @return The top-level hierarchy over the instances' world-space bounds.
+     */
+    public BVH getAccelerator() {
+        return closestHits;
+    }
+
+    /**
+     * Finds the closest primitive of any instance hit by a ray.
+     * @param origin The ray origin in world space.
+     * @param direction The ray direction in world space.
+     * @param hit Receives the closest hit; its current {@code t} acts as the maximum distance.
+     * @return True if a primitive closer than the initial {@code hit.t} was found, in which case
+     *         {@code hit.instance} and {@code hit.primitive} identify it.
+     */
+    public boolean intersect(Vec3 origin, Vec3 direction, Hit hit) {
+        return closestHits.intersect(origin, direction, hit);
+    }
+
+    /**
+     * Checks whether any instance blocks a ray segment, returning at the first occluder found.
+     * @param origin The segment start in world space.
+     * @param direction The ray direction in world space.
+     * @param maxDistance Only hits with a ray parameter below this value count.
+     * @param hit Scratch state; on success {@code hit.instance} and {@code hit.primitive} identify the occluder.
+     * @return True if the segment is blocked.
+     */
+    public boolean occluded(Vec3 origin, Vec3 direction, double maxDistance, Hit hit) {
+        return occlusion.occluded(origin, direction, maxDistance, hit);
+    }
+
+    /**
+     * Tests a ray against one primitive of one instance, e.g. the occluder of the previous shadow ray.
+     * @param hit The closest hit so far; updated if the primitive is closer.
+     * @return True if {@code hit} was updated.
+     */
+    public boolean intersectPrimitive(int instance, int primitive, Vec3 origin, Vec3 direction, Hit hit) {
+        Hit inner = hit.nested();
+        inner.t = hit.t;
+        inner.primitive = -1;
+        if (!geometry[instance].intersectRange(primitive, 1, toObjectOrigin(instance, origin, hit), toObjectDirection(instance, direction, hit), inner)) {
+            return false;
+        }
+        hit.t = inner.t;
+        hit.primitive = primitive;
+        hit.instance = instance;
+        return true;
+    }
+
+    /**
+     * Writes the world-space unit normal of a primitive of an instance at a world-space point into {@code out}.
+     */
+    public Vec3 getNormal(int instance, int primitive, Vec3 point, Vec3 out) {
+        Transform transform = transforms[instance];
+        if (transform.isIdentity()) {
+            return geometry[instance].getNormal(primitive, point, out);
+        }
+        transform.inverseTransformPoint(point, out);
+        geometry[instance].getNormal(primitive, out, out);
+        return transform.transformNormal(out, out);
+    }
+
+    public Material getMaterial(int instance, int primitive) {
+        return geometry[instance].getMaterial(primitive);
+    }
+
+    private boolean intersectLeaf(int first, int count, Vec3 origin, Vec3 direction, Hit hit) {
+        Hit inner = hit.nested();
+        boolean found = false;
+        for (int instance = first; instance < first + count; instance++) {
+            inner.t = hit.t;
+            inner.primitive = -1;
+            if (geometry[instance].intersect(toObjectOrigin(instance, origin, hit), toObjectDirection(instance, direction, hit), inner)) {
+                hit.t = inner.t;
+                hit.primitive = inner.primitive;
+                hit.instance = instance;
+                found = true;
+            }
+            collectWork(hit, inner);
+        }
+        return found;
+    }
+
+    private boolean occludedLeaf(int first, int count, Vec3 origin, Vec3 direction, Hit hit) {
+        Hit inner = hit.nested();
+        for (int instance = first; instance < first + count; instance++) {
+            boolean blocked = geometry[instance].occluded(toObjectOrigin(instance, origin, hit), toObjectDirection(instance, direction, hit), hit.t, inner);
+            collectWork(hit, inner);
+            if (blocked) {
+                hit.primitive = inner.primitive;
+                hit.instance = instance;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Vec3 toObjectOrigin(int instance, Vec3 origin, Hit hit) {
+        Transform transform = transforms[instance];
+        return transform.isIdentity() ? origin : transform.inverseTransformPoint(origin, hit.localOrigin());
+    }
+
+    private Vec3 toObjectDirection(int instance, Vec3 direction, Hit hit) {
+        Transform transform = transforms[instance];
+        return transform.isIdentity() ? direction : transform.inverseTransformDirection(direction, hit.localDirection());
+    }
+
+    // Counts the bottom-level work towards the outer query
+    private static void collectWork(Hit hit, Hit inner) {
+        hit.nodesVisited += inner.nodesVisited;
+        hit.primitiveTests += inner.primitiveTests;
+        inner.nodesVisited = 0;
+        inner.primitiveTests = 0;
+    }
+}
@@ -1,14 +1,49 @@
 package Objects;
+
+import Vectors.Transform;
+
+/**
+ * One placement of shared geometry in the scene. Many objects may wrap the same item, e.g. one
+ * packed tree model standing at thousands of positions; each stores only its transform, so the
+ * memory of a scene grows with its unique geometry rather than its object count.
+ * @param <T> The type of the shared geometry.
+ */
 public class Object <T> {
-    private T item;
+    private final T item;
+    private volatile Transform transform;
+
     public Object(T item){
+        this(item, Transform.identity());
+    }
+
+    /**
+     * @param item The shared geometry, in its own object space.
+     * @param transform Maps object space to world space.
+     */
+    public Object(T item, Transform transform){
+        if (item == null || transform == null) {
+            throw new IllegalArgumentException("An object needs an item and a transform.");
+        }
         this.item = item;
+        this.transform = transform;
     }
 
     public T getItem(){
         return item;
     }
 
-    
+    public Transform getTransform(){
+        return transform;
+    }
 
-}
\ No newline at end of file
+    /**
+     * Moves the object. Scenes only see the new placement after {@code Scene.updateInstances()}.
+     * @param transform Maps object space to world space.
+     */
+    public void setTransform(Transform transform){
+        if (transform == null) {
+            throw new IllegalArgumentException("The transform must not be null.");
+        }
+        this.transform = transform;
+    }
+}
@@ -0,0 +1,447 @@
+package Objects.Shapes;
+
+import Materials.Material;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Loads the geometry of Wavefront OBJ files into a {@link TriangleMesh}.
+ * The file is memory mapped and split into chunks at line boundaries that are parsed in parallel,
+ * twice: the first pass counts the vertices, normals and triangles of every chunk so that the
+ * mesh arrays can be allocated at their final size, and the second pass parses each chunk straight
+ * into its own region of them. No object is created per vertex, face or line.
+ * <p>
+ * Only {@code v}, {@code vn} and {@code f} statements are read; polygons are split into triangle
+ * fans, and negative indices count back from the vertices read so far. Texture coordinates,
+ * groups, smoothing groups and material libraries are skipped.
+ */
+public final class ObjLoader {
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    // Mapped buffers are indexed by int
+    private static final long MAX_CHUNK_SIZE = 1 << 30;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private ObjLoader() {
+    }
+
+    /**
+     * Loads a mesh on the common fork-join pool.
+     * @param path The OBJ file.
+     * @param material The material of every triangle.
+     * @return The mesh, without an accelerator.
+     * @throws IOException if the file cannot be read or is malformed.
+     */
+    public static TriangleMesh load(Path path, Material material) throws IOException {
+        return load(path, material, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Loads a mesh, parsing chunks of the file in parallel on the given pool.
+     * @param path The OBJ file.
+     * @param material The material of every triangle.
+     * @param pool The pool the chunks are parsed on.
+     * @return The mesh, without an accelerator.
+     * @throws IOException if the file cannot be read or is malformed.
+     */
+    public static TriangleMesh load(Path path, Material material, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            List<Chunk> chunks = split(channel, path, pool.getParallelism());
+            run(pool, chunks, Chunk::count);
+
+            // Give every chunk its region of the shared arrays
+            int vertices = 0;
+            int normals = 0;
+            int triangles = 0;
+            for (Chunk chunk : chunks) {
+                chunk.vertexBase = vertices;
+                chunk.normalBase = normals;
+                chunk.triangleBase = triangles;
+                vertices = Math.addExact(vertices, chunk.vertices);
+                normals = Math.addExact(normals, chunk.normals);
+                triangles = Math.addExact(triangles, chunk.triangles);
+            }
+            Buffers buffers = new Buffers(vertices, normals, triangles);
+            run(pool, chunks, chunk -> chunk.parse(buffers));
+            if (normals == 0) {
+                return new TriangleMesh(buffers.positions, buffers.indices, material);
+            }
+            return new TriangleMesh(buffers.positions, buffers.indices, buffers.normals, buffers.normalIndices, material);
+        } catch (ArithmeticException e) {
+            throw new IOException("Mesh too large: " + path, e);
+        }
+    }
+
+    /**
+     * Maps the file in chunks that each end after a line break, or at the end of the file.
+     */
+    private static List<Chunk> split(FileChannel channel, Path path, int parallelism) throws IOException {
+        long size = channel.size();
+        long chunkCount = Math.max((size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE, Math.min(parallelism * 4L, size / MIN_CHUNK_SIZE));
+        chunkCount = Math.max(1, chunkCount);
+        List<Chunk> chunks = new ArrayList<>();
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long start = 0;
+        for (long i = 1; i <= chunkCount && start < size; i++) {
+            long end = i == chunkCount ? size : Math.max(start, size * i / chunkCount);
+            // Move the end just past the next line break
+            while (end < size) {
+                probe.clear();
+                int read = channel.read(probe, end);
+                int lineBreak = -1;
+                for (int j = 0; j < read && lineBreak < 0; j++) {
+                    if (probe.get(j) == '\n') {
+                        lineBreak = j;
+                    }
+                }
+                if (lineBreak >= 0) {
+                    end += lineBreak + 1;
+                    break;
+                }
+                end += Math.max(read, 0);
+                if (read <= 0) {
+                    end = size;
+                }
+            }
+            if (end - start > Integer.MAX_VALUE) {
+                throw new IOException("Line too long in " + path);
+            }
+            if (end > start) {
+                chunks.add(new Chunk(path, start, channel.map(FileChannel.MapMode.READ_ONLY, start, end - start)));
+            }
+            start = end;
+        }
+        return chunks;
+    }
+
+    private interface ChunkTask {
+        void run(Chunk chunk) throws IOException;
+    }
+
+    private static void run(ForkJoinPool pool, List<Chunk> chunks, ChunkTask task) throws IOException {
+        List<Callable<Void>> tasks = new ArrayList<>(chunks.size());
+        for (Chunk chunk : chunks) {
+            tasks.add(() -> {
+                task.run(chunk);
+                return null;
+            });
+        }
+        for (Future<Void> result : pool.invokeAll(tasks)) {
+            try {
+                result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while loading a mesh.", e);
+            } catch (ExecutionException e) {
+                // The pool wraps checked exceptions of the tasks
+                for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                }
+                throw new IOException("Failed to load a mesh.", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * The mesh arrays, filled by all chunks at once in disjoint regions.
+     */
+    private static final class Buffers {
+        final float[] positions;
+        final float[] normals;
+        final int[] indices;
+        final int[] normalIndices;
+        final int vertexCount;
+        final int normalCount;
+
+        Buffers(int vertices, int normals, int triangles) {
+            this.positions = new float[Math.multiplyExact(vertices, 3)];
+            this.normals = new float[Math.multiplyExact(normals, 3)];
+            this.indices = new int[Math.multiplyExact(triangles, 3)];
+            this.normalIndices = normals == 0 ? null : new int[indices.length];
+            this.vertexCount = vertices;
+            this.normalCount = normals;
+        }
+    }
+
+    /**
+     * A run of whole lines of the file and the cursor used to scan it.
+     */
+    private static final class Chunk {
+        private final Path path;
+        private final long offset;
+        private final MappedByteBuffer bytes;
+        private final int limit;
+        private int position;
+        int vertices;
+        int normals;
+        int triangles;
+        int vertexBase;
+        int normalBase;
+        int triangleBase;
+
+        Chunk(Path path, long offset, MappedByteBuffer bytes) {
+            this.path = path;
+            this.offset = offset;
+            this.bytes = bytes;
+            this.limit = bytes.limit();
+        }
+
+        /**
+         * First pass: counts the statements of the chunk.
+         */
+        void count() throws IOException {
+            position = 0;
+            while (position < limit) {
+                int statement = statement();
+                if (statement == 'v') {
+                    vertices++;
+                } else if (statement == 'n') {
+                    normals++;
+                } else if (statement == 'f') {
+                    int corners = 0;
+                    while (skipSpaces()) {
+                        corners++;
+                        skipToken();
+                    }
+                    if (corners < 3) {
+                        throw malformed("A face needs at least three vertices");
+                    }
+                    triangles = Math.addExact(triangles, corners - 2);
+                }
+                skipLine();
+            }
+        }
+
+        /**
+         * Second pass: parses the chunk into its regions of the shared arrays.
+         */
+        void parse(Buffers buffers) throws IOException {
+            position = 0;
+            int vertex = vertexBase;
+            int normal = normalBase;
+            int index = triangleBase * 3;
+            while (position < limit) {
+                int statement = statement();
+                if (statement == 'v') {
+                    for (int axis = 0; axis < 3; axis++) {
+                        buffers.positions[vertex * 3 + axis] = (float) nextNumber();
+                    }
+                    vertex++;
+                } else if (statement == 'n') {
+                    for (int axis = 0; axis < 3; axis++) {
+                        buffers.normals[normal * 3 + axis] = (float) nextNumber();
+                    }
+                    normal++;
+                } else if (statement == 'f') {
+                    int firstVertex = 0;
+                    int firstNormal = 0;
+                    int previousVertex = 0;
+                    int previousNormal = 0;
+                    int corner = 0;
+                    while (skipSpaces()) {
+                        int cornerVertex = resolve(nextInteger(), vertex, buffers.vertexCount);
+                        int cornerNormal = -1;
+                        if (peek() == '/') {
+                            position++;
+                            if (peek() != '/' && !isDelimiter(peek())) {
+                                // Texture coordinates are not used
+                                nextInteger();
+                            }
+                            if (peek() == '/') {
+                                position++;
+                                cornerNormal = resolve(nextInteger(), normal, buffers.normalCount);
+                            }
+                        }
+                        if (!isDelimiter(peek())) {
+                            throw malformed("Unexpected character in face");
+                        }
+                        if (corner == 0) {
+                            firstVertex = cornerVertex;
+                            firstNormal = cornerNormal;
+                        } else if (corner >= 2) {
+                            // Fan triangulation around the first corner
+                            buffers.indices[index] = firstVertex;
+                            buffers.indices[index + 1] = previousVertex;
+                            buffers.indices[index + 2] = cornerVertex;
+                            if (buffers.normalIndices != null) {
+                                buffers.normalIndices[index] = firstNormal;
+                                buffers.normalIndices[index + 1] = previousNormal;
+                                buffers.normalIndices[index + 2] = cornerNormal;
+                            }
+                            index += 3;
+                        }
+                        previousVertex = cornerVertex;
+                        previousNormal = cornerNormal;
+                        corner++;
+                    }
+                }
+                skipLine();
+            }
+        }
+
+        /**
+         * Reads the keyword at the start of a line.
+         * @return 'v' for a vertex, 'n' for a normal, 'f' for a face and 0 for anything else.
+         */
+        private int statement() {
+            skipSpaces();
+            int first = peek();
+            int second = position + 1 < limit ? bytes.get(position + 1) : '\n';
+            if (first == 'v' && isDelimiter(second)) {
+                position++;
+                return 'v';
+            }
+            if (first == 'v' && second == 'n' && position + 2 < limit && isDelimiter(bytes.get(position + 2))) {
+                position += 2;
+                return 'n';
+            }
+            if (first == 'f' && isDelimiter(second)) {
+                position++;
+                return 'f';
+            }
+            return 0;
+        }
+
+        private int resolve(int index, int readSoFar, int count) throws IOException {
+            int resolved = index > 0 ? index - 1 : readSoFar + index;
+            if (index == 0 || resolved < 0 || resolved >= count) {
+                throw malformed("Index " + index + " out of range");
+            }
+            return resolved;
+        }
+
+        private int peek() {
+            return position < limit ? bytes.get(position) : '\n';
+        }
+
+        private static boolean isDelimiter(int c) {
+            return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+        }
+
+        /**
+         * Skips blanks within the line.
+         * @return True if a token follows on the same line.
+         */
+        private boolean skipSpaces() {
+            int c = peek();
+            while (c == ' ' || c == '\t') {
+                position++;
+                c = peek();
+            }
+            return position < limit && c != '\r' && c != '\n' && c != '#';
+        }
+
+        private void skipToken() {
+            while (position < limit && !isDelimiter(bytes.get(position))) {
+                position++;
+            }
+        }
+
+        private void skipLine() {
+            while (position < limit && bytes.get(position) != '\n') {
+                position++;
+            }
+            position++;
+        }
+
+        private int nextInteger() throws IOException {
+            boolean negative = peek() == '-';
+            if (negative || peek() == '+') {
+                position++;
+            }
+            long value = 0;
+            int start = position;
+            int c = peek();
+            while (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                if (value > Integer.MAX_VALUE) {
+                    throw malformed("Index too large");
+                }
+                position++;
+                c = peek();
+            }
+            if (position == start) {
+                throw malformed("Expected an index");
+            }
+            return (int) (negative ? -value : value);
+        }
+
+        /**
+         * Parses a decimal number in place. Up to 18 significant digits are kept, far more than a float holds.
+         */
+        private double nextNumber() throws IOException {
+            if (!skipSpaces()) {
+                throw malformed("Expected a number");
+            }
+            boolean negative = peek() == '-';
+            if (negative || peek() == '+') {
+                position++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int exponent = 0;
+            boolean any = false;
+            int c = peek();
+            while (c >= '0' && c <= '9') {
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    digits += mantissa == 0 ? 0 : 1;
+                } else {
+                    exponent++;
+                }
+                any = true;
+                position++;
+                c = peek();
+            }
+            if (c == '.') {
+                position++;
+                c = peek();
+                while (c >= '0' && c <= '9') {
+                    if (digits < 18) {
+                        mantissa = mantissa * 10 + (c - '0');
+                        digits += mantissa == 0 ? 0 : 1;
+                        exponent--;
+                    }
+                    any = true;
+                    position++;
+                    c = peek();
+                }
+            }
+            if (!any) {
+                throw malformed("Expected a number");
+            }
+            if (c == 'e' || c == 'E') {
+                position++;
+                exponent += nextInteger();
+                c = peek();
+            }
+            if (!isDelimiter(c)) {
+                throw malformed("Unexpected character in number");
+            }
+            double value = mantissa;
+            if (exponent < 0) {
+                value = -exponent < POWERS_OF_TEN.length ? value / POWERS_OF_TEN[-exponent] : value * Math.pow(10, exponent);
+            } else if (exponent > 0) {
+                value = exponent < POWERS_OF_TEN.length ? value * POWERS_OF_TEN[exponent] : value * Math.pow(10, exponent);
+            }
+            return negative ? -value : value;
+        }
+
+        private IOException malformed(String message) {
+            return new IOException(message + " at byte " + (offset + position) + " of " + path);
+        }
+    }
+}
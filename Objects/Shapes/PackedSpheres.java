@@ -0,0 +1,347 @@
+package Objects.Shapes;
+
+import Acceleration.BVH;
+import Acceleration.Hit;
+import Materials.Material;
+import Vectors.Vec3;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Structure-of-arrays storage for many spheres.
+ * Centers, radii and material indices live in parallel primitive arrays so that
+ * intersection kernels stream through contiguous memory instead of chasing one
+ * object per sphere. Once {@link #buildAccelerator()} has run, the arrays are kept
+ * in BVH order and every leaf is a contiguous range tested by a batched kernel.
+ */
+public class PackedSpheres implements Shape {
+    // A refitted hierarchy is rebuilt once its surface area cost reaches this multiple of the cost it was built with
+    private static final double REBUILD_THRESHOLD = 2.0;
+
+    final double[] centerX;
+    final double[] centerY;
+    final double[] centerZ;
+    final double[] radius;
+    final int[] materialIndex;
+    final int[] sourceIndex;
+    private final Material[] materials;
+    private final int size;
+    private BVH accelerator;
+    private double builtCost;
+
+    /**
+     * Wraps existing arrays without copying them. Sphere {@code i} keeps {@code i} as its source index.
+     * @param centerX The x coordinate of every center.
+     * @param centerY The y coordinate of every center.
+     * @param centerZ The z coordinate of every center.
+     * @param radius The radius of every sphere.
+     * @param materialIndex The index into {@code materials} of every sphere.
+     * @param materials The material palette.
+     */
+    public PackedSpheres(double[] centerX, double[] centerY, double[] centerZ, double[] radius, int[] materialIndex, Material[] materials) {
+        int size = centerX.length;
+        if (centerY.length != size || centerZ.length != size || radius.length != size || materialIndex.length != size) {
+            throw new IllegalArgumentException("All sphere arrays must have the same length.");
+        }
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.centerZ = centerZ;
+        this.radius = radius;
+        this.materialIndex = materialIndex;
+        this.materials = materials;
+        this.size = size;
+        this.sourceIndex = new int[size];
+        for (int i = 0; i < size; i++) {
+            sourceIndex[i] = i;
+        }
+    }
+
+    /**
+     * Packs a list of spheres, sharing one palette entry per distinct material instance.
+     * @param spheres The spheres to pack.
+     * @return The packed spheres, indexed like the list until an accelerator is built.
+     */
+    public static PackedSpheres of(List<Sphere> spheres) {
+        int size = spheres.size();
+        double[] centerX = new double[size];
+        double[] centerY = new double[size];
+        double[] centerZ = new double[size];
+        double[] radius = new double[size];
+        int[] materialIndex = new int[size];
+        IdentityHashMap<Material, Integer> palette = new IdentityHashMap<>();
+        for (int i = 0; i < size; i++) {
+            Sphere sphere = spheres.get(i);
+            centerX[i] = sphere.getCenter().x;
+            centerY[i] = sphere.getCenter().y;
+            centerZ[i] = sphere.getCenter().z;
+            radius[i] = sphere.getRadius();
+            Integer index = palette.get(sphere.getMaterial());
+            if (index == null) {
+                index = palette.size();
+                palette.put(sphere.getMaterial(), index);
+            }
+            materialIndex[i] = index;
+        }
+        Material[] materials = new Material[palette.size()];
+        palette.forEach((material, index) -> materials[index] = material);
+        return new PackedSpheres(centerX, centerY, centerZ, radius, materialIndex, materials);
+    }
+
+    /**
+     * Joins two sets of packed spheres, merging their palettes. The spheres of {@code second}
+     * follow those of {@code first}, both in their current order.
+     * @return New packed spheres without an accelerator.
+     */
+    public static PackedSpheres concat(PackedSpheres first, PackedSpheres second) {
+        int size = first.size + second.size;
+        double[] centerX = new double[size];
+        double[] centerY = new double[size];
+        double[] centerZ = new double[size];
+        double[] radius = new double[size];
+        int[] materialIndex = new int[size];
+        IdentityHashMap<Material, Integer> palette = new IdentityHashMap<>();
+        int offset = 0;
+        for (PackedSpheres part : new PackedSpheres[]{first, second}) {
+            System.arraycopy(part.centerX, 0, centerX, offset, part.size);
+            System.arraycopy(part.centerY, 0, centerY, offset, part.size);
+            System.arraycopy(part.centerZ, 0, centerZ, offset, part.size);
+            System.arraycopy(part.radius, 0, radius, offset, part.size);
+            int[] remap = new int[part.materials.length];
+            for (int i = 0; i < remap.length; i++) {
+                Integer index = palette.get(part.materials[i]);
+                if (index == null) {
+                    index = palette.size();
+                    palette.put(part.materials[i], index);
+                }
+                remap[i] = index;
+            }
+            for (int i = 0; i < part.size; i++) {
+                materialIndex[offset + i] = remap[part.materialIndex[i]];
+            }
+            offset += part.size;
+        }
+        Material[] materials = new Material[palette.size()];
+        palette.forEach((material, index) -> materials[index] = material);
+        return new PackedSpheres(centerX, centerY, centerZ, radius, materialIndex, materials);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getCenterX(int sphere) {
+        return centerX[sphere];
+    }
+
+    public double getCenterY(int sphere) {
+        return centerY[sphere];
+    }
+
+    public double getCenterZ(int sphere) {
+        return centerZ[sphere];
+    }
+
+    public double getRadius(int sphere) {
+        return radius[sphere];
+    }
+
+    public Material getMaterial(int sphere) {
+        return materials[materialIndex[sphere]];
+    }
+
+    /**
+     * Moves and resizes a sphere in place. The accelerator only sees the change after
+     * {@link #updateAccelerator()}, which must not run while rays are traced.
+     * @param sphere The sphere, in the current order.
+     * @param x The x coordinate of the new center.
+     * @param y The y coordinate of the new center.
+     * @param z The z coordinate of the new center.
+     * @param radius The new radius, greater than 0.
+     */
+    public void setSphere(int sphere, double x, double y, double z, double radius) {
+        if (!(radius > 0)) {
+            throw new IllegalArgumentException("The sphere radius must be positive.");
+        }
+        centerX[sphere] = x;
+        centerY[sphere] = y;
+        centerZ[sphere] = z;
+        this.radius[sphere] = radius;
+    }
+
+    /**
+     * @return The index of the sphere's material in {@link #getMaterials()}.
+     */
+    public int getMaterialIndex(int sphere) {
+        return materialIndex[sphere];
+    }
+
+    /**
+     * @return A copy of the material palette.
+     */
+    public Material[] getMaterials() {
+        return materials.clone();
+    }
+
+    public long contentHash() {
+        long[] materialHashes = new long[materials.length];
+        for (int i = 0; i < materials.length; i++) {
+            materialHashes[i] = materials[i].contentHash();
+        }
+        long hash = HASH_SEED;
+        for (int i = 0; i < size; i++) {
+            hash = Shape.hash(hash, centerX[i]);
+            hash = Shape.hash(hash, centerY[i]);
+            hash = Shape.hash(hash, centerZ[i]);
+            hash = Shape.hash(hash, radius[i]);
+            hash = Shape.hash(hash, materialHashes[materialIndex[i]]);
+        }
+        return hash;
+    }
+
+    /**
+     * @return The index the sphere had when it was packed, before any reordering.
+     */
+    public int getSourceIndex(int sphere) {
+        return sourceIndex[sphere];
+    }
+
+    /**
+     * Writes the outward unit normal of a sphere at a point on its surface into {@code out}.
+     */
+    public Vec3 getNormal(int sphere, Vec3 point, Vec3 out) {
+        double inverseRadius = 1.0 / radius[sphere];
+        return out.set((point.x - centerX[sphere]) * inverseRadius, (point.y - centerY[sphere]) * inverseRadius, (point.z - centerZ[sphere]) * inverseRadius);
+    }
+
+    /**
+     * @return Six doubles per sphere: minX, minY, minZ, maxX, maxY, maxZ.
+     */
+    public double[] getBounds() {
+        double[] bounds = new double[size * 6];
+        for (int i = 0; i < size; i++) {
+            bounds[i * 6] = centerX[i] - radius[i];
+            bounds[i * 6 + 1] = centerY[i] - radius[i];
+            bounds[i * 6 + 2] = centerZ[i] - radius[i];
+            bounds[i * 6 + 3] = centerX[i] + radius[i];
+            bounds[i * 6 + 4] = centerY[i] + radius[i];
+            bounds[i * 6 + 5] = centerZ[i] + radius[i];
+        }
+        return bounds;
+    }
+
+    /**
+     * Builds a BVH over the spheres and reorders the arrays to match its leaves.
+     * Sphere indices change; use {@link #getSourceIndex(int)} to map back.
+     * @return The hierarchy, which is also used by {@link #intersect(Vec3, Vec3, Hit)} from now on.
+     */
+    public synchronized BVH buildAccelerator() {
+        BVH bvh = BVH.build(getBounds(), this::intersectRange, SphereKernels.get().width());
+        int[] order = bvh.getPrimitiveOrder();
+        permute(centerX, order);
+        permute(centerY, order);
+        permute(centerZ, order);
+        permute(radius, order);
+        permute(materialIndex, order);
+        permute(sourceIndex, order);
+        accelerator = bvh;
+        builtCost = bvh.getSurfaceAreaCost();
+        return bvh;
+    }
+
+    /**
+     * Brings the accelerator up to date after spheres were moved with
+     * {@link #setSphere(int, double, double, double, double)}. The hierarchy is refitted to the new
+     * bounds, which keeps its structure and the sphere order. Once refitting has let its surface
+     * area cost grow to {@value #REBUILD_THRESHOLD} times the cost it was built with, it is rebuilt
+     * instead, which reorders the spheres like {@link #buildAccelerator()}.
+     * @return The hierarchy, a new one if it was built or rebuilt.
+     */
+    public synchronized BVH updateAccelerator() {
+        BVH bvh = accelerator;
+        if (bvh == null) {
+            return buildAccelerator();
+        }
+        bvh.refit(getBounds());
+        if (bvh.getSurfaceAreaCost() >= REBUILD_THRESHOLD * builtCost) {
+            return buildAccelerator();
+        }
+        return bvh;
+    }
+
+    /**
+     * Restores a hierarchy that was built over these spheres earlier, e.g. one loaded from a scene file.
+     * The arrays must already be in the hierarchy's order.
+     * @param nodeBounds Six doubles per node.
+     * @param nodeStart The left child of inner nodes, the first sphere of leaves.
+     * @param nodeCount Zero for inner nodes, the sphere count of leaves.
+     * @param leafWidth The leaf width the hierarchy was built with.
+     * @return The hierarchy, which is used by {@link #intersect(Vec3, Vec3, Hit)} from now on.
+     */
+    public synchronized BVH restoreAccelerator(double[] nodeBounds, int[] nodeStart, int[] nodeCount, int leafWidth) {
+        accelerator = BVH.restore(nodeBounds, nodeStart, nodeCount, size, this::intersectRange, leafWidth);
+        builtCost = accelerator.getSurfaceAreaCost();
+        return accelerator;
+    }
+
+    public BVH getAccelerator() {
+        return accelerator;
+    }
+
+    /**
+     * Finds the closest sphere hit by a ray, through the accelerator if one was built and
+     * by testing every sphere otherwise.
+     * @param origin The ray origin.
+     * @param direction The ray direction.
+     * @param hit Receives the closest hit; its current {@code t} acts as the maximum distance.
+     * @return True if a sphere closer than the initial {@code hit.t} was found.
+     */
+    public boolean intersect(Vec3 origin, Vec3 direction, Hit hit) {
+        BVH bvh = accelerator;
+        if (bvh != null) {
+            return bvh.intersect(origin, direction, hit);
+        }
+        hit.primitiveTests += size;
+        return intersectRange(0, size, origin, direction, hit);
+    }
+
+    /**
+     * Checks whether any sphere blocks a ray segment, returning at the first occluder found.
+     * @param origin The segment start.
+     * @param direction The ray direction.
+     * @param maxDistance Only hits with a ray parameter below this value count.
+     * @param hit Scratch state; on success {@code hit.primitive} identifies the occluder.
+     * @return True if the segment is blocked.
+     */
+    public boolean occluded(Vec3 origin, Vec3 direction, double maxDistance, Hit hit) {
+        BVH bvh = accelerator;
+        if (bvh != null) {
+            return bvh.occluded(origin, direction, maxDistance, hit);
+        }
+        hit.t = maxDistance;
+        hit.primitive = -1;
+        hit.primitiveTests += size;
+        return intersectRange(0, size, origin, direction, hit);
+    }
+
+    /**
+     * Tests a contiguous range of spheres with the fastest available kernel.
+     * @return True if {@code hit} was updated.
+     */
+    public boolean intersectRange(int first, int count, Vec3 origin, Vec3 direction, Hit hit) {
+        return SphereKernels.get().intersect(this, first, first + count, origin, direction, hit);
+    }
+
+    private static void permute(double[] values, int[] order) {
+        double[] source = values.clone();
+        for (int i = 0; i < order.length; i++) {
+            values[i] = source[order[i]];
+        }
+    }
+
+    private static void permute(int[] values, int[] order) {
+        int[] source = values.clone();
+        for (int i = 0; i < order.length; i++) {
+            values[i] = source[order[i]];
+        }
+    }
+}
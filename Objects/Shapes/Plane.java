@@ -0,0 +1,44 @@
+package Objects.Shapes;
+import Engine.Ray;
+import Vectors.Vec3;
+import Vectors.Vector;
+import java.awt.Color;
+
+public class Plane {
+    private Vec3 normal;
+    private Vec3 point;
+    private Color color;
+
+    public Plane(Vector normal, Vector point, Color color) {
+        this(Vec3.of(normal), Vec3.of(point), color);
+    }
+
+    public Plane(Vec3 normal, Vec3 point, Color color) {
+        this.normal = new Vec3(normal).normalize();
+        this.point = new Vec3(point);
+        this.color = color;
+    }
+
+    public Vec3 getNormal() {
+        return normal;
+    }
+
+    public Vec3 getPoint() {
+        return point;
+    }
+
+    public Color getColor() {
+        return color;
+    }
+
+    public double intersect(Ray ray) {
+        Vec3 origin = ray.getOrigin();
+        double denominator = normal.dot(ray.getDirection());
+        if (Math.abs(denominator) > 1e-6) { 
+            double p0l0Dot = (point.x - origin.x) * normal.x + (point.y - origin.y) * normal.y + (point.z - origin.z) * normal.z;
+            double t = p0l0Dot / denominator;
+            return t >= 0 ? t : Double.MAX_VALUE; 
+        }
+        return Double.MAX_VALUE;
+    }
+}
@@ -0,0 +1,46 @@
+package Objects.Shapes;
+
+import Acceleration.Hit;
+import Vectors.Vec3;
+
+/**
+ * Portable sphere kernel testing one sphere at a time.
+ */
+final class ScalarSphereKernel implements SphereKernel {
+    @Override
+    public int width() {
+        return 1;
+    }
+
+    @Override
+    public boolean intersect(PackedSpheres spheres, int start, int end, Vec3 origin, Vec3 direction, Hit hit) {
+        double[] centerX = spheres.centerX;
+        double[] centerY = spheres.centerY;
+        double[] centerZ = spheres.centerZ;
+        double[] radius = spheres.radius;
+        double a = direction.dot(direction);
+        boolean found = false;
+        for (int i = start; i < end; i++) {
+            double ocX = origin.x - centerX[i];
+            double ocY = origin.y - centerY[i];
+            double ocZ = origin.z - centerZ[i];
+            double halfB = ocX * direction.x + ocY * direction.y + ocZ * direction.z;
+            double c = ocX * ocX + ocY * ocY + ocZ * ocZ - radius[i] * radius[i];
+            double discriminant = halfB * halfB - a * c;
+            if (discriminant < 0) {
+                continue;
+            }
+            double root = Math.sqrt(discriminant);
+            double t = (-halfB - root) / a;
+            if (t <= EPSILON) {
+                t = (-halfB + root) / a;
+            }
+            if (t > EPSILON && t < hit.t) {
+                hit.t = t;
+                hit.primitive = i;
+                found = true;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,92 @@
+package Objects.Shapes;
+
+import Acceleration.BVH;
+import Acceleration.Hit;
+import Materials.Material;
+import Vectors.Vec3;
+
+/**
+ * A collection of primitives of one kind stored in packed arrays, e.g. {@link PackedSpheres} or a
+ * {@link TriangleMesh}. Primitives are addressed by index; building the accelerator reorders them
+ * so that every leaf of the hierarchy is a contiguous range tested by {@link #intersectRange}.
+ * Rays are given by origin and direction, and hits are reported as ray parameters in {@link Hit}.
+ */
+public interface Shape {
+    /**
+     * The starting value of a content hash.
+     */
+    long HASH_SEED = 0xCBF29CE484222325L;
+
+    /**
+     * @return The number of primitives.
+     */
+    int size();
+
+    /**
+     * @return Six doubles per primitive: minX, minY, minZ, maxX, maxY, maxZ.
+     */
+    double[] getBounds();
+
+    /**
+     * Builds a BVH over the primitives and reorders them to match its leaves.
+     * @return The hierarchy, which is also used by {@link #intersect(Vec3, Vec3, Hit)} from now on.
+     */
+    BVH buildAccelerator();
+
+    /**
+     * @return The hierarchy over the primitives, or null if none was built yet.
+     */
+    BVH getAccelerator();
+
+    /**
+     * Finds the closest primitive hit by a ray.
+     * @param origin The ray origin.
+     * @param direction The ray direction.
+     * @param hit Receives the closest hit; its current {@code t} acts as the maximum distance.
+     * @return True if a primitive closer than the initial {@code hit.t} was found.
+     */
+    boolean intersect(Vec3 origin, Vec3 direction, Hit hit);
+
+    /**
+     * Checks whether any primitive blocks a ray segment, returning at the first occluder found.
+     * @param origin The segment start.
+     * @param direction The ray direction.
+     * @param maxDistance Only hits with a ray parameter below this value count.
+     * @param hit Scratch state; on success {@code hit.primitive} identifies the occluder.
+     * @return True if the segment is blocked.
+     */
+    boolean occluded(Vec3 origin, Vec3 direction, double maxDistance, Hit hit);
+
+    /**
+     * Tests a contiguous range of primitives.
+     * @param hit The closest hit so far; updated with the primitive index if a closer one is found.
+     * @return True if {@code hit} was updated.
+     */
+    boolean intersectRange(int first, int count, Vec3 origin, Vec3 direction, Hit hit);
+
+    /**
+     * Writes the outward unit normal of a primitive at a point on its surface into {@code out}.
+     */
+    Vec3 getNormal(int primitive, Vec3 point, Vec3 out);
+
+    Material getMaterial(int primitive);
+
+    /**
+     * Hashes everything that decides how the primitives look: their geometry and the current state
+     * of their materials. Caches of rendered pixels compare it to recognise unchanged geometry.
+     * Takes time linear in the number of primitives.
+     */
+    long contentHash();
+
+    /**
+     * Folds a value into a running content hash, starting from {@link #HASH_SEED}. Changing any
+     * single value folded in changes the result.
+     */
+    static long hash(long hash, long value) {
+        return (hash ^ value) * 0x100000001B3L;
+    }
+
+    static long hash(long hash, double value) {
+        return hash(hash, Double.doubleToLongBits(value));
+    }
+}
@@ -1,13 +1,20 @@
 package Objects.Shapes;
 import Materials.Material;
+import Vectors.Vec3;
 import Vectors.Vector;
 public class Sphere {
+    private static final double EPSILON = 1e-6;
+
     private double radius;
-    private Vector center;
+    private Vec3 center;
     private Material material;
 
     public Sphere(Vector center, double radius, Material material){
-        this.center = center;
+        this(Vec3.of(center), radius, material);
+    }
+
+    public Sphere(Vec3 center, double radius, Material material){
+        this.center = new Vec3(center);
         this.radius = radius;
         this.material = material;
     }
@@ -15,11 +22,44 @@ public class Sphere {
     public double getRadius(){
         return radius;
     }
-    public Vector getCenter(){
+    public Vec3 getCenter(){
         return center;
     }
 
     public Material getMaterial(){
         return material;
     }
+
+    /**
+     * Intersects a ray with this sphere.
+     * @param origin The ray origin.
+     * @param direction The ray direction, not necessarily normalized.
+     * @return The nearest ray parameter in front of the origin, or Double.MAX_VALUE on a miss.
+     */
+    public double intersect(Vec3 origin, Vec3 direction){
+        double ocX = origin.x - center.x;
+        double ocY = origin.y - center.y;
+        double ocZ = origin.z - center.z;
+        double a = direction.dot(direction);
+        double halfB = ocX * direction.x + ocY * direction.y + ocZ * direction.z;
+        double c = ocX * ocX + ocY * ocY + ocZ * ocZ - radius * radius;
+        double discriminant = halfB * halfB - a * c;
+        if (discriminant < 0) {
+            return Double.MAX_VALUE;
+        }
+        double root = Math.sqrt(discriminant);
+        double t = (-halfB - root) / a;
+        if (t > EPSILON) {
+            return t;
+        }
+        t = (-halfB + root) / a;
+        return t > EPSILON ? t : Double.MAX_VALUE;
+    }
+
+    /**
+     * Writes the outward unit normal at a point on the surface into {@code out}.
+     */
+    public Vec3 getNormal(Vec3 point, Vec3 out){
+        return Vec3.subtract(point, center, out).scale(1.0 / radius);
+    }
 }
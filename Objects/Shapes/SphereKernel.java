@@ -0,0 +1,27 @@
+package Objects.Shapes;
+
+import Acceleration.Hit;
+import Vectors.Vec3;
+
+/**
+ * Closest-hit test of one ray against a contiguous range of packed spheres.
+ */
+interface SphereKernel {
+    double EPSILON = 1e-6;
+
+    /**
+     * @return The number of spheres tested per step.
+     */
+    int width();
+
+    /**
+     * @param spheres The sphere storage.
+     * @param start The first sphere to test.
+     * @param end One past the last sphere to test.
+     * @param origin The ray origin.
+     * @param direction The ray direction.
+     * @param hit The closest hit so far; updated with the sphere index if a closer sphere is found.
+     * @return True if {@code hit} was updated.
+     */
+    boolean intersect(PackedSpheres spheres, int start, int end, Vec3 origin, Vec3 direction, Hit hit);
+}
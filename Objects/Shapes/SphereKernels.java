@@ -0,0 +1,30 @@
+package Objects.Shapes;
+
+/**
+ * Selects the sphere intersection kernel once per JVM.
+ * The SIMD kernel is used when the JVM was started with
+ * {@code --add-modules jdk.incubator.vector}; otherwise, or when the system property
+ * {@code rtengine.simd} is set to {@code false}, the scalar kernel is used.
+ */
+final class SphereKernels {
+    private static final SphereKernel KERNEL = select();
+
+    private SphereKernels() {
+    }
+
+    static SphereKernel get() {
+        return KERNEL;
+    }
+
+    private static SphereKernel select() {
+        if (!Boolean.parseBoolean(System.getProperty("rtengine.simd", "true"))
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return new ScalarSphereKernel();
+        }
+        try {
+            return (SphereKernel) Class.forName("Objects.Shapes.VectorSphereKernel").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new ScalarSphereKernel();
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package Objects.Shapes;
+
+import Acceleration.BVH;
+import Acceleration.Hit;
+import Materials.Material;
+import Vectors.Vec3;
+
+/**
+ * An indexed triangle mesh. Vertex positions and normals live once in flat float arrays, three
+ * values per vertex, and every triangle refers to them through three indices, so vertices shared
+ * by neighbouring triangles are stored once and no object exists per triangle. Normals have
+ * their own indices, as in Wavefront OBJ files; triangles without them are shaded flat.
+ * Once {@link #buildAccelerator()} has run, the index arrays are kept in BVH order and every leaf
+ * is a contiguous range of triangles. Triangles are two-sided; the normal follows the
+ * counterclockwise winding of the vertices.
+ */
+public class TriangleMesh implements Shape {
+    private static final double EPSILON = 1e-6;
+    // Rays closer to parallel than this to a triangle's plane miss it
+    private static final double PARALLEL_EPSILON = 1e-12;
+
+    final float[] positions;
+    final float[] normals;
+    final int[] indices;
+    final int[] normalIndices;
+    private final Material material;
+    private final int size;
+    private BVH accelerator;
+
+    /**
+     * Wraps existing arrays without copying them.
+     * @param positions Three coordinates per vertex.
+     * @param indices Three vertex indices per triangle.
+     * @param material The material of every triangle.
+     */
+    public TriangleMesh(float[] positions, int[] indices, Material material) {
+        this(positions, indices, null, null, material);
+    }
+
+    /**
+     * Wraps existing arrays without copying them.
+     * @param positions Three coordinates per vertex.
+     * @param indices Three vertex indices per triangle.
+     * @param normals Three components per vertex normal, or null to shade every triangle flat.
+     * @param normalIndices Three normal indices per triangle, -1 where a triangle has none; null exactly when {@code normals} is.
+     * @param material The material of every triangle.
+     */
+    public TriangleMesh(float[] positions, int[] indices, float[] normals, int[] normalIndices, Material material) {
+        if (positions.length % 3 != 0 || indices.length % 3 != 0) {
+            throw new IllegalArgumentException("Positions and indices must come in groups of three.");
+        }
+        if ((normals == null) != (normalIndices == null)) {
+            throw new IllegalArgumentException("Normals and normal indices must be given together.");
+        }
+        checkIndices(indices, positions.length / 3, false);
+        if (normals != null) {
+            if (normals.length % 3 != 0 || normalIndices.length != indices.length) {
+                throw new IllegalArgumentException("Every triangle needs three normal indices into groups of three components.");
+            }
+            checkIndices(normalIndices, normals.length / 3, true);
+        }
+        this.positions = positions;
+        this.indices = indices;
+        this.normals = normals;
+        this.normalIndices = normalIndices;
+        this.material = material;
+        this.size = indices.length / 3;
+    }
+
+    private static void checkIndices(int[] indices, int count, boolean optional) {
+        for (int index : indices) {
+            if (index >= count || index < (optional ? -1 : 0)) {
+                throw new IllegalArgumentException("Index " + index + " is out of range for " + count + " entries.");
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public int getVertexCount() {
+        return positions.length / 3;
+    }
+
+    public boolean hasNormals() {
+        return normals != null;
+    }
+
+    @Override
+    public Material getMaterial(int triangle) {
+        return material;
+    }
+
+    @Override
+    public long contentHash() {
+        long hash = Shape.hash(HASH_SEED, material.contentHash());
+        for (float position : positions) {
+            hash = Shape.hash(hash, Float.floatToIntBits(position));
+        }
+        for (int index : indices) {
+            hash = Shape.hash(hash, index);
+        }
+        if (normals != null) {
+            for (float normal : normals) {
+                hash = Shape.hash(hash, Float.floatToIntBits(normal));
+            }
+            for (int index : normalIndices) {
+                hash = Shape.hash(hash, index);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Writes the unit normal at a point on a triangle into {@code out}: the vertex normals
+     * interpolated at the point if the triangle has them, the geometric normal otherwise.
+     */
+    @Override
+    public Vec3 getNormal(int triangle, Vec3 point, Vec3 out) {
+        int a = indices[triangle * 3] * 3;
+        int b = indices[triangle * 3 + 1] * 3;
+        int c = indices[triangle * 3 + 2] * 3;
+        double e1x = positions[b] - positions[a];
+        double e1y = positions[b + 1] - positions[a + 1];
+        double e1z = positions[b + 2] - positions[a + 2];
+        double e2x = positions[c] - positions[a];
+        double e2y = positions[c + 1] - positions[a + 1];
+        double e2z = positions[c + 2] - positions[a + 2];
+        if (normals != null) {
+            int na = normalIndices[triangle * 3];
+            int nb = normalIndices[triangle * 3 + 1];
+            int nc = normalIndices[triangle * 3 + 2];
+            if (na >= 0 && nb >= 0 && nc >= 0) {
+                // Barycentric coordinates of the point, weighting the normals of b and c
+                double px = point.x - positions[a];
+                double py = point.y - positions[a + 1];
+                double pz = point.z - positions[a + 2];
+                double d11 = e1x * e1x + e1y * e1y + e1z * e1z;
+                double d12 = e1x * e2x + e1y * e2y + e1z * e2z;
+                double d22 = e2x * e2x + e2y * e2y + e2z * e2z;
+                double dp1 = px * e1x + py * e1y + pz * e1z;
+                double dp2 = px * e2x + py * e2y + pz * e2z;
+                double inverse = 1.0 / (d11 * d22 - d12 * d12);
+                double v = (d22 * dp1 - d12 * dp2) * inverse;
+                double w = (d11 * dp2 - d12 * dp1) * inverse;
+                double u = 1 - v - w;
+                na *= 3;
+                nb *= 3;
+                nc *= 3;
+                out.set(u * normals[na] + v * normals[nb] + w * normals[nc],
+                        u * normals[na + 1] + v * normals[nb + 1] + w * normals[nc + 1],
+                        u * normals[na + 2] + v * normals[nb + 2] + w * normals[nc + 2]);
+                if (out.lengthSquared() > 0) {
+                    return out.normalize();
+                }
+            }
+        }
+        return out.set(e1y * e2z - e1z * e2y, e1z * e2x - e1x * e2z, e1x * e2y - e1y * e2x).normalize();
+    }
+
+    @Override
+    public double[] getBounds() {
+        double[] bounds = new double[size * 6];
+        for (int i = 0; i < size; i++) {
+            for (int axis = 0; axis < 3; axis++) {
+                double a = positions[indices[i * 3] * 3 + axis];
+                double b = positions[indices[i * 3 + 1] * 3 + axis];
+                double c = positions[indices[i * 3 + 2] * 3 + axis];
+                bounds[i * 6 + axis] = Math.min(a, Math.min(b, c));
+                bounds[i * 6 + 3 + axis] = Math.max(a, Math.max(b, c));
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * Builds a BVH over the triangles and reorders the index arrays to match its leaves.
+     * The vertex arrays are not touched.
+     */
+    @Override
+    public synchronized BVH buildAccelerator() {
+        BVH bvh = BVH.build(getBounds(), this::intersectRange, 1);
+        int[] order = bvh.getPrimitiveOrder();
+        permuteTriangles(indices, order);
+        if (normalIndices != null) {
+            permuteTriangles(normalIndices, order);
+        }
+        accelerator = bvh;
+        return bvh;
+    }
+
+    @Override
+    public BVH getAccelerator() {
+        return accelerator;
+    }
+
+    @Override
+    public boolean intersect(Vec3 origin, Vec3 direction, Hit hit) {
+        BVH bvh = accelerator;
+        if (bvh != null) {
+            return bvh.intersect(origin, direction, hit);
+        }
+        hit.primitiveTests += size;
+        return intersectRange(0, size, origin, direction, hit);
+    }
+
+    @Override
+    public boolean occluded(Vec3 origin, Vec3 direction, double maxDistance, Hit hit) {
+        BVH bvh = accelerator;
+        if (bvh != null) {
+            return bvh.occluded(origin, direction, maxDistance, hit);
+        }
+        hit.t = maxDistance;
+        hit.primitive = -1;
+        hit.primitiveTests += size;
+        return intersectRange(0, size, origin, direction, hit);
+    }
+
+    /**
+     * Tests a contiguous range of triangles with the Möller–Trumbore algorithm, which solves for
+     * the ray parameter and two barycentric coordinates at once without the triangle's plane.
+     */
+    @Override
+    public boolean intersectRange(int first, int count, Vec3 origin, Vec3 direction, Hit hit) {
+        float[] positions = this.positions;
+        int[] indices = this.indices;
+        double dx = direction.x;
+        double dy = direction.y;
+        double dz = direction.z;
+        boolean found = false;
+        for (int i = first; i < first + count; i++) {
+            int a = indices[i * 3] * 3;
+            int b = indices[i * 3 + 1] * 3;
+            int c = indices[i * 3 + 2] * 3;
+            double ax = positions[a];
+            double ay = positions[a + 1];
+            double az = positions[a + 2];
+            double e1x = positions[b] - ax;
+            double e1y = positions[b + 1] - ay;
+            double e1z = positions[b + 2] - az;
+            double e2x = positions[c] - ax;
+            double e2y = positions[c + 1] - ay;
+            double e2z = positions[c + 2] - az;
+            double px = dy * e2z - dz * e2y;
+            double py = dz * e2x - dx * e2z;
+            double pz = dx * e2y - dy * e2x;
+            double determinant = e1x * px + e1y * py + e1z * pz;
+            if (determinant > -PARALLEL_EPSILON && determinant < PARALLEL_EPSILON) {
+                continue;
+            }
+            double inverse = 1.0 / determinant;
+            double tx = origin.x - ax;
+            double ty = origin.y - ay;
+            double tz = origin.z - az;
+            double u = (tx * px + ty * py + tz * pz) * inverse;
+            if (u < 0 || u > 1) {
+                continue;
+            }
+            double qx = ty * e1z - tz * e1y;
+            double qy = tz * e1x - tx * e1z;
+            double qz = tx * e1y - ty * e1x;
+            double v = (dx * qx + dy * qy + dz * qz) * inverse;
+            if (v < 0 || u + v > 1) {
+                continue;
+            }
+            double t = (e2x * qx + e2y * qy + e2z * qz) * inverse;
+            if (t > EPSILON && t < hit.t) {
+                hit.t = t;
+                hit.primitive = i;
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    private static void permuteTriangles(int[] values, int[] order) {
+        int[] source = values.clone();
+        for (int i = 0; i < order.length; i++) {
+            System.arraycopy(source, order[i] * 3, values, i * 3, 3);
+        }
+    }
+}
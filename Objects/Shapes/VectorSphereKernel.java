@@ -0,0 +1,63 @@
+package Objects.Shapes;
+
+import Acceleration.Hit;
+import Vectors.Vec3;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Sphere kernel that tests one ray against {@code SPECIES.length()} spheres per step
+ * (4 with AVX2, 8 with AVX-512) using the incubating Vector API.
+ * Only loaded when the {@code jdk.incubator.vector} module is present, see {@link SphereKernels}.
+ */
+final class VectorSphereKernel implements SphereKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final ScalarSphereKernel TAIL = new ScalarSphereKernel();
+
+    @Override
+    public int width() {
+        return SPECIES.length();
+    }
+
+    @Override
+    public boolean intersect(PackedSpheres spheres, int start, int end, Vec3 origin, Vec3 direction, Hit hit) {
+        int lanes = SPECIES.length();
+        if (end - start < lanes) {
+            return TAIL.intersect(spheres, start, end, origin, direction, hit);
+        }
+        double a = direction.dot(direction);
+        double inverseA = 1.0 / a;
+        boolean found = false;
+        int i = start;
+        for (; i + lanes <= end; i += lanes) {
+            DoubleVector ocX = DoubleVector.fromArray(SPECIES, spheres.centerX, i).neg().add(origin.x);
+            DoubleVector ocY = DoubleVector.fromArray(SPECIES, spheres.centerY, i).neg().add(origin.y);
+            DoubleVector ocZ = DoubleVector.fromArray(SPECIES, spheres.centerZ, i).neg().add(origin.z);
+            DoubleVector radius = DoubleVector.fromArray(SPECIES, spheres.radius, i);
+
+            DoubleVector halfB = ocX.mul(direction.x).add(ocY.mul(direction.y)).add(ocZ.mul(direction.z));
+            DoubleVector c = ocX.mul(ocX).add(ocY.mul(ocY)).add(ocZ.mul(ocZ)).sub(radius.mul(radius));
+            DoubleVector discriminant = halfB.mul(halfB).sub(c.mul(a));
+            VectorMask<Double> hits = discriminant.compare(VectorOperators.GE, 0.0);
+            if (!hits.anyTrue()) {
+                continue;
+            }
+            DoubleVector root = discriminant.max(0.0).sqrt();
+            DoubleVector near = halfB.neg().sub(root).mul(inverseA);
+            DoubleVector far = halfB.neg().add(root).mul(inverseA);
+            DoubleVector t = near.blend(far, near.compare(VectorOperators.LE, SphereKernel.EPSILON));
+            hits = hits.and(t.compare(VectorOperators.GT, SphereKernel.EPSILON)).and(t.compare(VectorOperators.LT, hit.t));
+            if (!hits.anyTrue()) {
+                continue;
+            }
+            double closest = t.reduceLanes(VectorOperators.MIN, hits);
+            int lane = t.compare(VectorOperators.EQ, closest).and(hits).firstTrue();
+            hit.t = closest;
+            hit.primitive = i + lane;
+            found = true;
+        }
+        return TAIL.intersect(spheres, i, end, origin, direction, hit) | found;
+    }
+}
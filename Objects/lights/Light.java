@@ -1,21 +1,40 @@
 package Objects.lights;
+import Vectors.Vec3;
 import Vectors.Vector;
 
+/**
+ * A point light. Its luminance is the intensity it emits in every direction: a surface at distance
+ * {@code d} receives {@code luminance / d²} of it, scaled by the cosine of the angle of incidence.
+ */
 public class Light {
-    private Vector position;
+    private Vec3 position;
     private double luminance;
 
     public Light(Vector position, double luminance) {
-        this.position = position;
+        this(Vec3.of(position), luminance);
+    }
+
+    public Light(Vec3 position, double luminance) {
+        this.position = new Vec3(position);
         this.luminance = luminance;
     }
 
-    public Vector getPosition() {
+    public Vec3 getPosition() {
         return position;
     }
 
+    /**
+     * Moves the light. Scenes only see the new position after {@code Scene.updateLights()}.
+     */
     public void setPosition(Vector position) {
-        this.position = position;
+        this.position = Vec3.of(position);
+    }
+
+    /**
+     * Moves the light. Scenes only see the new position after {@code Scene.updateLights()}.
+     */
+    public void setPosition(Vec3 position) {
+        this.position = new Vec3(position);
     }
     
     public double getLuminance() {
@@ -0,0 +1,254 @@
+package Objects.lights;
+
+import Vectors.Vec3;
+import java.util.List;
+
+/**
+ * A bounding volume hierarchy over point lights for picking the lights worth shading a point with.
+ * Every node stores the bounds and the summed luminance of the lights below it. Sampling walks
+ * from the root to a single light, choosing at each node between the two children in proportion
+ * to an estimate of how much light each could deliver to the shading point: the luminance over
+ * the squared distance, times an upper bound of the cosine between the surface normal and the
+ * directions towards the child's bounds. One pick therefore costs time logarithmic in the light
+ * count, and the probability of the pick is known, so dividing by it keeps the estimate unbiased.
+ * <p>
+ * Positions and luminances are copied when the tree is built. The lights are stored in tree order;
+ * {@link #getLight(int)} maps an index back to the light.
+ */
+public final class LightTree {
+    // Keeps the falloff finite for shading points on top of a light
+    private static final double MIN_DISTANCE_SQUARED = 1e-8;
+
+    /**
+     * The result of {@link #sample}: the picked light and the probability of picking it.
+     */
+    public static final class Sample {
+        public int light = -1;
+        public double probability;
+    }
+
+    private final Light[] lights;
+    private final double[] positionX;
+    private final double[] positionY;
+    private final double[] positionZ;
+    private final double[] luminance;
+    private final double[] nodeBounds;
+    private final double[] nodeLuminance;
+    // The left child of inner nodes, whose right child follows it; ~light for leaves
+    private final int[] nodeChild;
+    private int nodesUsed;
+
+    /**
+     * Builds the tree by splitting the lights at the median of the widest axis of their positions.
+     * @param lights The lights; later changes to them are not seen by the tree.
+     */
+    public LightTree(List<Light> lights) {
+        int count = lights.size();
+        this.lights = lights.toArray(new Light[0]);
+        this.positionX = new double[count];
+        this.positionY = new double[count];
+        this.positionZ = new double[count];
+        this.luminance = new double[count];
+        int nodes = Math.max(1, 2 * count - 1);
+        this.nodeBounds = new double[nodes * 6];
+        this.nodeLuminance = new double[nodes];
+        this.nodeChild = new int[nodes];
+        if (count == 0) {
+            return;
+        }
+        double[] source = new double[count * 3];
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            Vec3 position = this.lights[i].getPosition();
+            source[i * 3] = position.x;
+            source[i * 3 + 1] = position.y;
+            source[i * 3 + 2] = position.z;
+            order[i] = i;
+        }
+        nodesUsed = 1;
+        build(0, source, order, 0, count);
+
+        // Store the lights in tree order so every leaf refers to its own position
+        Light[] unordered = this.lights.clone();
+        for (int i = 0; i < count; i++) {
+            Light light = unordered[order[i]];
+            this.lights[i] = light;
+            positionX[i] = source[order[i] * 3];
+            positionY[i] = source[order[i] * 3 + 1];
+            positionZ[i] = source[order[i] * 3 + 2];
+            luminance[i] = light.getLuminance();
+        }
+        sumLuminance(0);
+    }
+
+    private void build(int node, double[] positions, int[] order, int start, int end) {
+        double[] bounds = nodeBounds;
+        int offset = node * 6;
+        for (int axis = 0; axis < 3; axis++) {
+            bounds[offset + axis] = Double.POSITIVE_INFINITY;
+            bounds[offset + 3 + axis] = Double.NEGATIVE_INFINITY;
+        }
+        for (int i = start; i < end; i++) {
+            for (int axis = 0; axis < 3; axis++) {
+                double value = positions[order[i] * 3 + axis];
+                bounds[offset + axis] = Math.min(bounds[offset + axis], value);
+                bounds[offset + 3 + axis] = Math.max(bounds[offset + 3 + axis], value);
+            }
+        }
+        if (end - start == 1) {
+            nodeChild[node] = ~start;
+            return;
+        }
+        int axis = 0;
+        for (int candidate = 1; candidate < 3; candidate++) {
+            if (bounds[offset + 3 + candidate] - bounds[offset + candidate] > bounds[offset + 3 + axis] - bounds[offset + axis]) {
+                axis = candidate;
+            }
+        }
+        int middle = (start + end) >>> 1;
+        select(positions, order, axis, start, end, middle);
+        int left = nodesUsed;
+        nodesUsed += 2;
+        nodeChild[node] = left;
+        build(left, positions, order, start, middle);
+        build(left + 1, positions, order, middle, end);
+    }
+
+    /**
+     * Partially sorts {@code order[start, end)} along an axis so the light at {@code k} has no
+     * greater coordinate before it and no smaller one after it.
+     */
+    private static void select(double[] positions, int[] order, int axis, int start, int end, int k) {
+        int low = start;
+        int high = end - 1;
+        while (low < high) {
+            double pivot = positions[order[(low + high) >>> 1] * 3 + axis];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (positions[order[i] * 3 + axis] < pivot) {
+                    i++;
+                }
+                while (positions[order[j] * 3 + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = order[i];
+                    order[i] = order[j];
+                    order[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                high = j;
+            } else if (k >= i) {
+                low = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private double sumLuminance(int node) {
+        int child = nodeChild[node];
+        double sum = child < 0 ? luminance[~child] : sumLuminance(child) + sumLuminance(child + 1);
+        nodeLuminance[node] = sum;
+        return sum;
+    }
+
+    public int size() {
+        return lights.length;
+    }
+
+    /**
+     * @return The light with the given index in tree order.
+     */
+    public Light getLight(int light) {
+        return lights[light];
+    }
+
+    /**
+     * Writes the position of a light, as it was when the tree was built, into {@code out}.
+     */
+    public Vec3 getPosition(int light, Vec3 out) {
+        return out.set(positionX[light], positionY[light], positionZ[light]);
+    }
+
+    public double getLuminance(int light) {
+        return luminance[light];
+    }
+
+    /**
+     * Picks one light for a shading point, with a probability that follows its estimated contribution.
+     * @param point The shading point.
+     * @param normal The unit surface normal; lights below the surface are never picked.
+     * @param u A uniform random value in [0, 1).
+     * @param out Receives the light and the probability with which it was picked.
+     * @return False if no light can reach the point.
+     */
+    public boolean sample(Vec3 point, Vec3 normal, double u, Sample out) {
+        if (lights.length == 0) {
+            return false;
+        }
+        int node = 0;
+        double probability = 1;
+        while (nodeChild[node] >= 0) {
+            int left = nodeChild[node];
+            double leftImportance = importance(left, point, normal);
+            double total = leftImportance + importance(left + 1, point, normal);
+            if (!(total > 0)) {
+                return false;
+            }
+            // Reuse the random value for the next decision by rescaling the chosen interval to [0, 1)
+            double leftProbability = leftImportance / total;
+            if (u < leftProbability) {
+                node = left;
+                u /= leftProbability;
+                probability *= leftProbability;
+            } else {
+                node = left + 1;
+                u = (u - leftProbability) / (1 - leftProbability);
+                probability *= 1 - leftProbability;
+            }
+            u = Math.min(u, Math.nextDown(1.0));
+        }
+        if (!(importance(node, point, normal) > 0)) {
+            return false;
+        }
+        out.light = ~nodeChild[node];
+        out.probability = probability;
+        return true;
+    }
+
+    /**
+     * Estimates the light a node can deliver to a shading point.
+     */
+    private double importance(int node, Vec3 point, Vec3 normal) {
+        int offset = node * 6;
+        double extentX = nodeBounds[offset + 3] - nodeBounds[offset];
+        double extentY = nodeBounds[offset + 4] - nodeBounds[offset + 1];
+        double extentZ = nodeBounds[offset + 5] - nodeBounds[offset + 2];
+        double toX = nodeBounds[offset] + 0.5 * extentX - point.x;
+        double toY = nodeBounds[offset + 1] + 0.5 * extentY - point.y;
+        double toZ = nodeBounds[offset + 2] + 0.5 * extentZ - point.z;
+        double distanceSquared = toX * toX + toY * toY + toZ * toZ;
+        double radiusSquared = 0.25 * (extentX * extentX + extentY * extentY + extentZ * extentZ);
+
+        double cosine = 1;
+        if (distanceSquared > radiusSquared) {
+            // The bounds cover a cone of directions around the center; bound the cosine over that cone
+            double distance = Math.sqrt(distanceSquared);
+            double cosCenter = (toX * normal.x + toY * normal.y + toZ * normal.z) / distance;
+            double sinCone = Math.sqrt(radiusSquared) / distance;
+            double cosCone = Math.sqrt(1 - sinCone * sinCone);
+            if (cosCenter < cosCone) {
+                cosine = cosCenter * cosCone + Math.sqrt(Math.max(0, 1 - cosCenter * cosCenter)) * sinCone;
+            }
+            if (cosine <= 0) {
+                return 0;
+            }
+        }
+        return nodeLuminance[node] * cosine / Math.max(Math.max(distanceSquared, radiusSquared), MIN_DISTANCE_SQUARED);
+    }
+}
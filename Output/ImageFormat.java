@@ -0,0 +1,86 @@
+package Output;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.zip.Deflater;
+
+/**
+ * The file formats the streaming writers can produce.
+ */
+public enum ImageFormat {
+    PNG("image/png"),
+    PPM("image/x-portable-pixmap"),
+    PFM("application/octet-stream");
+
+    private final String mediaType;
+
+    ImageFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    /**
+     * @return The MIME type of images in this format.
+     */
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Picks the format matching a file name extension.
+     * @param path The output path.
+     * @return The format for its extension.
+     * @throws IllegalArgumentException if the extension is not supported.
+     */
+    public static ImageFormat fromPath(Path path) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        if (dot < 0) {
+            throw new IllegalArgumentException("Cannot infer image format from " + name + ", expected .png, .ppm or .pfm.");
+        }
+        return fromName(name.substring(dot + 1));
+    }
+
+    public static ImageFormat fromName(String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported image format: " + name + ", expected png, ppm or pfm.");
+        }
+    }
+
+    /**
+     * Opens a streaming writer for this format.
+     * @param path The file to create or overwrite.
+     * @return The sink, which the caller must close.
+     * @throws IOException if the file cannot be opened.
+     */
+    public RasterSink open(Path path) throws IOException {
+        switch (this) {
+            case PNG:
+                return new PngWriter(path);
+            case PPM:
+                return new PpmWriter(path);
+            default:
+                return new PfmWriter(path);
+        }
+    }
+
+    /**
+     * Opens a streaming writer for this format on a channel that is written front to back.
+     * @param channel The destination, closed together with the sink.
+     * @return The sink, which the caller must close.
+     * @throws IllegalArgumentException for PFM, which stores the bottom row first and needs a seekable file.
+     */
+    public RasterSink open(WritableByteChannel channel) {
+        switch (this) {
+            case PNG:
+                return new PngWriter(channel, Deflater.BEST_SPEED);
+            case PPM:
+                return new PpmWriter(channel);
+            default:
+                throw new IllegalArgumentException("PFM images can only be written to files.");
+        }
+    }
+}
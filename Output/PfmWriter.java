@@ -0,0 +1,61 @@
+package Output;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams a frame as a little-endian colour PFM file holding unclamped linear radiance.
+ * PFM stores the bottom row first, so every band is written at its final file
+ * position instead of being appended.
+ */
+public class PfmWriter implements RasterSink {
+    private final FileChannel channel;
+    private ByteBuffer buffer;
+    private int width;
+    private int height;
+    private long headerLength;
+
+    public PfmWriter(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Override
+    public void begin(int width, int height) throws IOException {
+        this.width = width;
+        this.height = height;
+        // A negative scale marks the samples as little-endian
+        byte[] header = ("PF\n" + width + " " + height + "\n-1.0\n").getBytes(StandardCharsets.US_ASCII);
+        headerLength = header.length;
+        Channels.writeFully(channel, ByteBuffer.wrap(header), 0);
+    }
+
+    @Override
+    public void writeRows(int firstRow, int rowCount, float[] linearRgb) throws IOException {
+        int rowBytes = width * 3 * Float.BYTES;
+        if (buffer == null || buffer.capacity() < rowBytes) {
+            buffer = ByteBuffer.allocateDirect(rowBytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        for (int row = 0; row < rowCount; row++) {
+            buffer.clear();
+            buffer.asFloatBuffer().put(linearRgb, row * width * 3, width * 3);
+            buffer.limit(rowBytes);
+            long position = headerLength + (long) (height - 1 - (firstRow + row)) * rowBytes;
+            Channels.writeFully(channel, buffer, position);
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
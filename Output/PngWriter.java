@@ -0,0 +1,137 @@
+package Output;
+
+import Colors.LinearColor;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Streams a frame as an 8-bit RGB PNG file.
+ * Each band is filtered and fed to a single deflate stream whose output is
+ * flushed to the channel as IDAT chunks, so encoding overlaps with rendering and
+ * memory use is bounded by the band size rather than the frame size.
+ */
+public class PngWriter implements RasterSink {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final byte FILTER_SUB = 1;
+
+    private final WritableByteChannel channel;
+    private final Deflater deflater;
+    private final byte[] compressed = new byte[CHUNK_SIZE];
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer chunkBuffer = ByteBuffer.allocateDirect(CHUNK_SIZE + 12);
+    private byte[] raw;
+    private int width;
+
+    public PngWriter(Path path) throws IOException {
+        this(path, Deflater.BEST_SPEED);
+    }
+
+    /**
+     * @param path The file to write.
+     * @param compressionLevel A {@link Deflater} compression level.
+     * @throws IOException if the file cannot be opened.
+     */
+    public PngWriter(Path path, int compressionLevel) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), compressionLevel);
+    }
+
+    /**
+     * Writes the image to any channel, e.g. a network response.
+     * @param channel The destination, closed together with the writer.
+     * @param compressionLevel A {@link Deflater} compression level.
+     */
+    public PngWriter(WritableByteChannel channel, int compressionLevel) {
+        this.channel = channel;
+        this.deflater = new Deflater(compressionLevel);
+    }
+
+    @Override
+    public void begin(int width, int height) throws IOException {
+        this.width = width;
+        Channels.writeFully(channel, ByteBuffer.wrap(SIGNATURE));
+        ByteBuffer header = ByteBuffer.allocate(13);
+        header.putInt(width).putInt(height)
+                .put((byte) 8)  // bit depth
+                .put((byte) 2)  // colour type: truecolour
+                .put((byte) 0)  // compression method
+                .put((byte) 0)  // filter method
+                .put((byte) 0); // no interlacing
+        writeChunk("IHDR", header.array(), header.position());
+    }
+
+    @Override
+    public void writeRows(int firstRow, int rowCount, float[] linearRgb) throws IOException {
+        int rowBytes = width * 3 + 1;
+        int size = rowBytes * rowCount;
+        if (raw == null || raw.length < size) {
+            raw = new byte[size];
+        }
+        for (int row = 0; row < rowCount; row++) {
+            int out = row * rowBytes;
+            int in = row * width * 3;
+            raw[out++] = FILTER_SUB;
+            int previousR = 0;
+            int previousG = 0;
+            int previousB = 0;
+            for (int x = 0; x < width; x++) {
+                int r = LinearColor.encodeChannel(linearRgb[in++]);
+                int g = LinearColor.encodeChannel(linearRgb[in++]);
+                int b = LinearColor.encodeChannel(linearRgb[in++]);
+                raw[out++] = (byte) (r - previousR);
+                raw[out++] = (byte) (g - previousG);
+                raw[out++] = (byte) (b - previousB);
+                previousR = r;
+                previousG = g;
+                previousB = b;
+            }
+        }
+        deflater.setInput(raw, 0, size);
+        while (!deflater.needsInput()) {
+            drain();
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        deflater.finish();
+        while (!deflater.finished()) {
+            drain();
+        }
+        writeChunk("IEND", compressed, 0);
+        if (channel instanceof FileChannel file) {
+            file.force(false);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        deflater.end();
+        channel.close();
+    }
+
+    private void drain() throws IOException {
+        int length = deflater.deflate(compressed);
+        if (length > 0) {
+            writeChunk("IDAT", compressed, length);
+        }
+    }
+
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        crc.reset();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        chunkBuffer.clear();
+        chunkBuffer.putInt(length).put(typeBytes).put(data, 0, length).putInt((int) crc.getValue());
+        chunkBuffer.flip();
+        Channels.writeFully(channel, chunkBuffer);
+    }
+}
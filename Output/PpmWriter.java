@@ -0,0 +1,63 @@
+package Output;
+
+import Colors.LinearColor;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams a frame as a binary (P6) PPM file with 8-bit sRGB samples.
+ */
+public class PpmWriter implements RasterSink {
+    private final WritableByteChannel channel;
+    private ByteBuffer buffer;
+    private int width;
+
+    public PpmWriter(Path path) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    /**
+     * Writes the image to any channel, e.g. a network response.
+     * @param channel The destination, closed together with the writer.
+     */
+    public PpmWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void begin(int width, int height) throws IOException {
+        this.width = width;
+        Channels.writeFully(channel, ByteBuffer.wrap(("P6\n" + width + " " + height + "\n255\n").getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Override
+    public void writeRows(int firstRow, int rowCount, float[] linearRgb) throws IOException {
+        int size = width * rowCount * 3;
+        if (buffer == null || buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(size);
+        }
+        buffer.clear();
+        for (int i = 0; i < size; i++) {
+            buffer.put((byte) LinearColor.encodeChannel(linearRgb[i]));
+        }
+        buffer.flip();
+        Channels.writeFully(channel, buffer);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (channel instanceof FileChannel file) {
+            file.force(false);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,34 @@
+package Output;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Receives a rendered frame as a sequence of row bands, top row first.
+ * Implementations encode and write each band as it arrives so a frame never
+ * has to be held in memory as a whole.
+ */
+public interface RasterSink extends Closeable {
+    /**
+     * Called once before the first band.
+     * @param width The frame width in pixels.
+     * @param height The frame height in pixels.
+     * @throws IOException if the header cannot be written.
+     */
+    void begin(int width, int height) throws IOException;
+
+    /**
+     * Writes a band of consecutive rows. Bands arrive in increasing row order without gaps.
+     * @param firstRow The index of the first row in the band.
+     * @param rowCount The number of rows in the band.
+     * @param linearRgb Three linear-light floats per pixel, row-major. Only valid for the duration of the call.
+     * @throws IOException if the band cannot be written.
+     */
+    void writeRows(int firstRow, int rowCount, float[] linearRgb) throws IOException;
+
+    /**
+     * Called once after the last band to flush trailing data.
+     * @throws IOException if the trailer cannot be written.
+     */
+    void finish() throws IOException;
+}
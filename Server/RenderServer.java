@@ -0,0 +1,437 @@
+package Server;
+
+import Engine.Camera;
+import Engine.Renderer;
+import Engine.Scene;
+import Engine.SceneFile;
+import Output.ImageFormat;
+import Output.RasterSink;
+import Vectors.Vec3;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A long-running render service on a local HTTP endpoint, so many small renders share one warm JVM.
+ * {@code POST /render} takes a scene file (see {@link SceneFile}) as the request body and answers
+ * with the encoded image; the query string selects the size, format and camera:
+ * {@code width}, {@code height}, {@code format} (png or ppm), and optionally {@code eye},
+ * {@code target} and {@code up} as {@code x,y,z} with a vertical field of view {@code fov} in
+ * degrees. Without {@code eye} the scene file's camera is used.
+ * <p>
+ * Parsed scenes are kept in an LRU cache keyed by the SHA-256 of their file, returned in the
+ * {@code X-Scene-Hash} header; a later request may send an empty body with {@code scene=HASH}
+ * to render the cached scene from another camera without uploading it again.
+ * <p>
+ * Every request runs on its own virtual thread where the JDK provides them, and on a plain thread
+ * otherwise. Rendering itself is CPU-bound and shares one worker pool, so admission control lets
+ * only a few renders run at a time and queues a bounded number of others; requests beyond that,
+ * or queued longer than the queue timeout, are answered with 503 and a {@code Retry-After}
+ * header instead of slowing down every render in progress. A request is admitted before its body
+ * is read, so only running renders hold scene files in memory; waiting and rejected requests never
+ * read theirs, and bodies that announce more than the scene limit are refused up front.
+ */
+public class RenderServer implements Closeable {
+    public static final int DEFAULT_CACHE_SIZE = 16;
+    public static final long DEFAULT_QUEUE_TIMEOUT_MILLIS = 30_000;
+    public static final int DEFAULT_MAX_SCENE_BYTES = 1 << 24;
+    static final int MAX_IMAGE_EDGE = 16384;
+    private static final int DEFAULT_EDGE = 256;
+    private static final double DEFAULT_FIELD_OF_VIEW = 60;
+
+    private final int port;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int maxConcurrentRenders = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private int maxQueuedRenders = 4 * maxConcurrentRenders;
+    private long queueTimeoutMillis = DEFAULT_QUEUE_TIMEOUT_MILLIS;
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+    private int maxSceneBytes = DEFAULT_MAX_SCENE_BYTES;
+
+    private HttpServer server;
+    private ExecutorService requests;
+    private ForkJoinPool workers;
+    private SceneCache scenes;
+    private Semaphore renders;
+    private final AtomicInteger queued = new AtomicInteger();
+
+    /**
+     * @param port The port to listen on, on the loopback interface only; 0 picks a free port.
+     */
+    public RenderServer(int port) {
+        if (port < 0 || port > 65535) {
+            throw new IllegalArgumentException("The port must be between 0 and 65535.");
+        }
+        this.port = port;
+    }
+
+    /**
+     * Sets the number of worker threads shared by all renders.
+     * @param parallelism The number of workers, at least 1.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1.");
+        }
+        checkNotStarted();
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets how many renders may run at the same time and how many more may wait for a turn.
+     * @param concurrent The number of concurrent renders, at least 1.
+     * @param queued The number of waiting renders, at least 0.
+     */
+    public void setAdmission(int concurrent, int queued) {
+        if (concurrent < 1 || queued < 0) {
+            throw new IllegalArgumentException("At least one concurrent render is needed and the queue cannot be negative.");
+        }
+        checkNotStarted();
+        this.maxConcurrentRenders = concurrent;
+        this.maxQueuedRenders = queued;
+    }
+
+    public int getMaxConcurrentRenders() {
+        return maxConcurrentRenders;
+    }
+
+    public int getMaxQueuedRenders() {
+        return maxQueuedRenders;
+    }
+
+    /**
+     * @param millis How long a request may wait for a turn before it is rejected, at least 1.
+     */
+    public void setQueueTimeout(long millis) {
+        if (millis < 1) {
+            throw new IllegalArgumentException("The queue timeout must be at least 1 ms.");
+        }
+        checkNotStarted();
+        this.queueTimeoutMillis = millis;
+    }
+
+    public long getQueueTimeout() {
+        return queueTimeoutMillis;
+    }
+
+    /**
+     * @param scenes The number of parsed scenes kept, at least 1.
+     */
+    public void setCacheSize(int scenes) {
+        if (scenes < 1) {
+            throw new IllegalArgumentException("The scene cache must hold at least one scene.");
+        }
+        checkNotStarted();
+        this.cacheSize = scenes;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * @param bytes The largest scene file accepted as a request body, at least 1 and below 2 GiB. Every running
+     *              render may hold one, so this bounds the memory of uploads.
+     */
+    public void setMaxSceneBytes(int bytes) {
+        if (bytes < 1 || bytes == Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The scene limit must be at least 1 byte and below 2 GiB.");
+        }
+        checkNotStarted();
+        this.maxSceneBytes = bytes;
+    }
+
+    public int getMaxSceneBytes() {
+        return maxSceneBytes;
+    }
+
+    /**
+     * Binds the port and starts answering requests in the background.
+     * @throws IOException if the port cannot be bound.
+     */
+    public synchronized void start() throws IOException {
+        checkNotStarted();
+        scenes = new SceneCache(cacheSize);
+        renders = new Semaphore(maxConcurrentRenders, true);
+        workers = new ForkJoinPool(parallelism);
+        requests = newRequestExecutor();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(requests);
+        server.createContext("/render", this::handle);
+        server.start();
+    }
+
+    /**
+     * @return The bound port, which differs from the requested one if that was 0.
+     */
+    public synchronized int getPort() {
+        if (server == null) {
+            throw new IllegalStateException("The server has not been started.");
+        }
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests and ends the worker threads; renders in progress are abandoned.
+     */
+    @Override
+    public synchronized void close() {
+        if (server == null) {
+            return;
+        }
+        server.stop(0);
+        requests.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private void checkNotStarted() {
+        if (server != null) {
+            throw new IllegalStateException("The server has already been started.");
+        }
+    }
+
+    /**
+     * Runs every request on its own virtual thread on Java 21 and later. The build targets Java 17,
+     * so the factory is looked up reflectively and older runtimes fall back to a cached pool.
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "render-request");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if (!method.equals("POST") && !method.equals("GET")) {
+                exchange.getResponseHeaders().set("Allow", "GET, POST");
+                sendError(exchange, 405, "Use POST with a scene file, or GET with a cached scene hash.");
+                return;
+            }
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            int width = intParameter(query, "width", DEFAULT_EDGE);
+            int height = intParameter(query, "height", DEFAULT_EDGE);
+            if (width < 1 || height < 1 || width > MAX_IMAGE_EDGE || height > MAX_IMAGE_EDGE) {
+                throw new IllegalArgumentException("Width and height must be between 1 and " + MAX_IMAGE_EDGE + ".");
+            }
+            ImageFormat format = ImageFormat.fromName(query.getOrDefault("format", "png"));
+            if (format == ImageFormat.PFM) {
+                throw new IllegalArgumentException("PFM images can only be written to files, use png or ppm.");
+            }
+            if (contentLength(exchange) > maxSceneBytes) {
+                sendError(exchange, 413, "Scene files are limited to " + maxSceneBytes + " bytes.");
+                return;
+            }
+            if (!admit()) {
+                exchange.getResponseHeaders().set("Retry-After", Long.toString(Math.max(1, queueTimeoutMillis / 1000)));
+                sendError(exchange, 503, "Too many renders in progress, try again later.");
+                return;
+            }
+            try {
+                render(exchange, query, width, height, format);
+            } finally {
+                renders.release();
+            }
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Reads the scene and renders it; the caller holds a render slot.
+     */
+    private void render(HttpExchange exchange, Map<String, String> query, int width, int height, ImageFormat format) throws IOException {
+        byte[] body = readBody(exchange.getRequestBody(), maxSceneBytes);
+        if (body == null) {
+            sendError(exchange, 413, "Scene files are limited to " + maxSceneBytes + " bytes.");
+            return;
+        }
+        String hash = body.length > 0 ? hash(body) : query.get("scene");
+        if (hash == null) {
+            throw new IllegalArgumentException("Send a scene file as the body or the hash of a cached scene as scene=HASH.");
+        }
+        Scene scene = scenes.get(hash);
+        if (scene == null) {
+            if (body.length == 0) {
+                sendError(exchange, 404, "Scene " + hash + " is not cached, send its file instead.");
+                return;
+            }
+            try {
+                scene = SceneFile.read(ByteBuffer.wrap(body));
+            } catch (IOException e) {
+                sendError(exchange, 400, "Invalid scene file: " + e.getMessage());
+                return;
+            }
+            scenes.put(hash, scene);
+        }
+        // The view builds the cached scene's hierarchies on first use and shares them afterwards
+        Camera camera = camera(query, scene.getCamera(), width / (double) height);
+        Renderer renderer = new Renderer(scene.withCamera(camera), workers);
+
+        exchange.getResponseHeaders().set("Content-Type", format.getMediaType());
+        exchange.getResponseHeaders().set("X-Scene-Hash", hash);
+        exchange.sendResponseHeaders(200, 0);
+        try (RasterSink sink = format.open(Channels.newChannel(exchange.getResponseBody()))) {
+            renderer.render(width, height, sink);
+        }
+    }
+
+    /**
+     * Waits for a render slot unless the queue is full.
+     * @return True if the caller holds a slot and must release it.
+     */
+    private boolean admit() {
+        if (renders.tryAcquire()) {
+            return true;
+        }
+        if (queued.incrementAndGet() > maxQueuedRenders) {
+            queued.decrementAndGet();
+            return false;
+        }
+        try {
+            return renders.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return The camera given by the query, or the scene's camera if the query names no eye point.
+     */
+    static Camera camera(Map<String, String> query, Camera sceneCamera, double aspectRatio) {
+        String eye = query.get("eye");
+        if (eye == null) {
+            return sceneCamera;
+        }
+        String target = query.get("target");
+        if (target == null) {
+            throw new IllegalArgumentException("A target point is required together with the eye point.");
+        }
+        double fieldOfView = doubleParameter(query, "fov", DEFAULT_FIELD_OF_VIEW);
+        if (!(fieldOfView > 0 && fieldOfView < 180)) {
+            throw new IllegalArgumentException("The field of view must be between 0 and 180 degrees.");
+        }
+        Vec3 up = query.containsKey("up") ? parseVec3("up", query.get("up")) : new Vec3(0, 1, 0);
+        return new Camera(parseVec3("eye", eye), parseVec3("target", target), up, fieldOfView, aspectRatio);
+    }
+
+    static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Query parameters must look like name=value: " + pair);
+            }
+            parameters.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static int intParameter(Map<String, String> query, String name, int fallback) {
+        String value = query.get(name);
+        try {
+            return value == null ? fallback : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be an integer: " + value);
+        }
+    }
+
+    private static double doubleParameter(Map<String, String> query, String name, double fallback) {
+        String value = query.get(name);
+        try {
+            return value == null ? fallback : Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number: " + value);
+        }
+    }
+
+    private static Vec3 parseVec3(String name, String value) {
+        String[] parts = value.split(",");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException(name + " must look like x,y,z: " + value);
+        }
+        try {
+            return new Vec3(Double.parseDouble(parts[0]), Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must look like x,y,z: " + value);
+        }
+    }
+
+    /**
+     * @return The announced body length, or -1 if the request does not announce one, e.g. when it is chunked.
+     */
+    private static long contentLength(HttpExchange exchange) {
+        String value = exchange.getRequestHeaders().getFirst("Content-Length");
+        try {
+            return value == null ? -1 : Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Content-Length must be an integer: " + value);
+        }
+    }
+
+    /**
+     * @return The whole body, or null if it is larger than the limit.
+     */
+    private static byte[] readBody(InputStream in, int maxBytes) throws IOException {
+        byte[] body = in.readNBytes(maxBytes + 1);
+        return body.length > maxBytes ? null : body;
+    }
+
+    static String hash(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] text = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, text.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(text);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package Server;
+
+import Engine.Scene;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The most recently used parsed scenes, keyed by the hash of their scene file, so repeated renders
+ * of one scene skip parsing and building its hierarchies. The least recently used scene is evicted
+ * once the cache is full.
+ */
+final class SceneCache {
+    private final Map<String, Scene> scenes;
+
+    /**
+     * @param capacity The number of scenes kept, at least 1.
+     */
+    SceneCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The scene cache must hold at least one scene.");
+        }
+        this.scenes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Scene> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return The scene with the given hash, marked as most recently used, or null if it is not cached.
+     */
+    synchronized Scene get(String hash) {
+        return scenes.get(hash);
+    }
+
+    synchronized void put(String hash, Scene scene) {
+        scenes.put(hash, scene);
+    }
+
+    synchronized int size() {
+        return scenes.size();
+    }
+}
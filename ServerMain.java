@@ -0,0 +1,75 @@
+import Server.RenderServer;
+import java.io.IOException;
+
+/**
+ * Runs a {@link RenderServer} on the loopback interface until the process is stopped.
+ * Usage: {@code java -cp target/classes ServerMain [--port 8080] [--threads N] [--renders N] [--queue N] [--cache N] [--max-scene BYTES]}
+ */
+public class ServerMain {
+    private static final String USAGE = "Usage: ServerMain [--port PORT] [--threads COUNT] [--renders COUNT] [--queue COUNT] [--cache SCENES] [--max-scene BYTES]";
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+
+        int port = 8080;
+        Integer threads = null;
+        Integer renders = null;
+        Integer queue = null;
+        Integer cache = null;
+        Integer maxScene = null;
+        RenderServer server;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + option);
+                }
+                String value = args[++i];
+                switch (option) {
+                    case "--port":
+                        port = Integer.parseInt(value);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "--renders":
+                        renders = Integer.parseInt(value);
+                        break;
+                    case "--queue":
+                        queue = Integer.parseInt(value);
+                        break;
+                    case "--cache":
+                        cache = Integer.parseInt(value);
+                        break;
+                    case "--max-scene":
+                        maxScene = Integer.parseInt(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + option);
+                }
+            }
+            server = new RenderServer(port);
+            if (threads != null) {
+                server.setParallelism(threads);
+            }
+            if (renders != null || queue != null) {
+                int concurrent = renders != null ? renders : server.getMaxConcurrentRenders();
+                server.setAdmission(concurrent, queue != null ? queue : 4 * concurrent);
+            }
+            if (cache != null) {
+                server.setCacheSize(cache);
+            }
+            if (maxScene != null) {
+                server.setMaxSceneBytes(maxScene);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        server.start();
+        System.out.println("Rendering on http://localhost:" + server.getPort() + "/render");
+    }
+}
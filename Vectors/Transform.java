@@ -0,0 +1,237 @@
+package Vectors;
+
+/**
+ * An immutable affine transform of 3D space: a 3x3 linear part followed by a translation.
+ * The inverse is computed once on construction, since instanced geometry needs it for every
+ * ray it tests. Points, directions and normals are written into caller supplied vectors so
+ * the rendering hot paths do not allocate.
+ */
+public final class Transform {
+    private static final Transform IDENTITY = new Transform(new double[]{1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0});
+
+    // Row-major 3x4 matrices: m[row * 4 + column], column 3 is the translation
+    private final double[] matrix;
+    private final double[] inverse;
+    private final boolean identity;
+
+    private Transform(double[] matrix) {
+        this.matrix = matrix;
+        this.inverse = invert(matrix);
+        boolean isIdentity = true;
+        for (int i = 0; i < 12; i++) {
+            // The diagonal sits at every fifth value
+            isIdentity &= matrix[i] == (i % 5 == 0 ? 1 : 0);
+        }
+        this.identity = isIdentity;
+    }
+
+    public static Transform identity() {
+        return IDENTITY;
+    }
+
+    public static Transform translation(double x, double y, double z) {
+        return new Transform(new double[]{1, 0, 0, x, 0, 1, 0, y, 0, 0, 1, z});
+    }
+
+    public static Transform translation(Vec3 offset) {
+        return translation(offset.x, offset.y, offset.z);
+    }
+
+    public static Transform scaling(double factor) {
+        return scaling(factor, factor, factor);
+    }
+
+    /**
+     * @throws IllegalArgumentException if a factor is zero, which would make the transform singular.
+     */
+    public static Transform scaling(double x, double y, double z) {
+        return new Transform(new double[]{x, 0, 0, 0, 0, y, 0, 0, 0, 0, z, 0});
+    }
+
+    /**
+     * Creates a rotation around an axis through the origin.
+     * @param axis The rotation axis; it does not need to be normalized.
+     * @param radians The counterclockwise angle when looking against the axis.
+     * @return The rotation.
+     */
+    public static Transform rotation(Vec3 axis, double radians) {
+        double length = axis.length();
+        if (length == 0) {
+            throw new IllegalArgumentException("The rotation axis must not be zero.");
+        }
+        double x = axis.x / length;
+        double y = axis.y / length;
+        double z = axis.z / length;
+        double cos = Math.cos(radians);
+        double sin = Math.sin(radians);
+        double t = 1 - cos;
+        return new Transform(new double[]{
+                t * x * x + cos, t * x * y - sin * z, t * x * z + sin * y, 0,
+                t * x * y + sin * z, t * y * y + cos, t * y * z - sin * x, 0,
+                t * x * z - sin * y, t * y * z + sin * x, t * z * z + cos, 0});
+    }
+
+    /**
+     * Creates a transform from the rows of its 3x4 matrix.
+     * @param values Twelve values, row by row; the fourth value of each row is the translation.
+     * @throws IllegalArgumentException if the linear part is singular.
+     */
+    public static Transform of(double... values) {
+        if (values.length != 12) {
+            throw new IllegalArgumentException("An affine transform needs twelve values.");
+        }
+        return new Transform(values.clone());
+    }
+
+    /**
+     * Returns the transform that applies this transform first and {@code next} second.
+     */
+    public Transform then(Transform next) {
+        return new Transform(multiply(next.matrix, matrix));
+    }
+
+    /**
+     * @return The transform undoing this one.
+     */
+    public Transform inverse() {
+        return new Transform(inverse.clone());
+    }
+
+    public boolean isIdentity() {
+        return identity;
+    }
+
+    /**
+     * @return A copy of the 3x4 matrix, row by row.
+     */
+    public double[] getMatrix() {
+        return matrix.clone();
+    }
+
+    /**
+     * Writes the transformed point into {@code out}, which may alias {@code point}.
+     */
+    public Vec3 transformPoint(Vec3 point, Vec3 out) {
+        return apply(matrix, point, 1, out);
+    }
+
+    /**
+     * Writes the transformed direction, ignoring the translation, into {@code out}, which may alias {@code direction}.
+     */
+    public Vec3 transformDirection(Vec3 direction, Vec3 out) {
+        return apply(matrix, direction, 0, out);
+    }
+
+    /**
+     * Writes the point mapped back by the inverse transform into {@code out}, which may alias {@code point}.
+     */
+    public Vec3 inverseTransformPoint(Vec3 point, Vec3 out) {
+        return apply(inverse, point, 1, out);
+    }
+
+    /**
+     * Writes the direction mapped back by the inverse transform into {@code out}, which may alias {@code direction}.
+     */
+    public Vec3 inverseTransformDirection(Vec3 direction, Vec3 out) {
+        return apply(inverse, direction, 0, out);
+    }
+
+    /**
+     * Transforms a surface normal with the inverse transpose, so it stays perpendicular to the
+     * transformed surface under non-uniform scaling, and normalizes it.
+     * @param normal The normal in the untransformed space.
+     * @param out Receives the unit normal; may alias {@code normal}.
+     * @return {@code out}.
+     */
+    public Vec3 transformNormal(Vec3 normal, Vec3 out) {
+        double x = inverse[0] * normal.x + inverse[4] * normal.y + inverse[8] * normal.z;
+        double y = inverse[1] * normal.x + inverse[5] * normal.y + inverse[9] * normal.z;
+        double z = inverse[2] * normal.x + inverse[6] * normal.y + inverse[10] * normal.z;
+        return out.set(x, y, z).normalize();
+    }
+
+    /**
+     * Computes the axis-aligned box around a transformed box.
+     * @param bounds Six doubles starting at {@code offset}: minX, minY, minZ, maxX, maxY, maxZ.
+     * @param out Receives the transformed box at {@code outOffset}; may be {@code bounds} itself.
+     */
+    public void transformBounds(double[] bounds, int offset, double[] out, int outOffset) {
+        double minX = 0, minY = 0, minZ = 0, maxX = 0, maxY = 0, maxZ = 0;
+        for (int row = 0; row < 3; row++) {
+            // Each output axis is the translation plus the extremes of every column's contribution
+            double min = matrix[row * 4 + 3];
+            double max = min;
+            for (int column = 0; column < 3; column++) {
+                double factor = matrix[row * 4 + column];
+                double a = factor * bounds[offset + column];
+                double b = factor * bounds[offset + 3 + column];
+                min += Math.min(a, b);
+                max += Math.max(a, b);
+            }
+            if (row == 0) {
+                minX = min;
+                maxX = max;
+            } else if (row == 1) {
+                minY = min;
+                maxY = max;
+            } else {
+                minZ = min;
+                maxZ = max;
+            }
+        }
+        out[outOffset] = minX;
+        out[outOffset + 1] = minY;
+        out[outOffset + 2] = minZ;
+        out[outOffset + 3] = maxX;
+        out[outOffset + 4] = maxY;
+        out[outOffset + 5] = maxZ;
+    }
+
+    private static Vec3 apply(double[] m, Vec3 v, double w, Vec3 out) {
+        return out.set(
+                m[0] * v.x + m[1] * v.y + m[2] * v.z + m[3] * w,
+                m[4] * v.x + m[5] * v.y + m[6] * v.z + m[7] * w,
+                m[8] * v.x + m[9] * v.y + m[10] * v.z + m[11] * w);
+    }
+
+    private static double[] multiply(double[] a, double[] b) {
+        double[] result = new double[12];
+        for (int row = 0; row < 3; row++) {
+            for (int column = 0; column < 4; column++) {
+                double value = column == 3 ? a[row * 4 + 3] : 0;
+                for (int k = 0; k < 3; k++) {
+                    value += a[row * 4 + k] * b[k * 4 + column];
+                }
+                result[row * 4 + column] = value;
+            }
+        }
+        return result;
+    }
+
+    private static double[] invert(double[] m) {
+        double c00 = m[5] * m[10] - m[6] * m[9];
+        double c01 = m[6] * m[8] - m[4] * m[10];
+        double c02 = m[4] * m[9] - m[5] * m[8];
+        double determinant = m[0] * c00 + m[1] * c01 + m[2] * c02;
+        if (determinant == 0 || !Double.isFinite(determinant)) {
+            throw new IllegalArgumentException("The transform must be invertible.");
+        }
+        double s = 1 / determinant;
+        double[] inverse = {
+                c00 * s, (m[2] * m[9] - m[1] * m[10]) * s, (m[1] * m[6] - m[2] * m[5]) * s, 0,
+                c01 * s, (m[0] * m[10] - m[2] * m[8]) * s, (m[2] * m[4] - m[0] * m[6]) * s, 0,
+                c02 * s, (m[1] * m[8] - m[0] * m[9]) * s, (m[0] * m[5] - m[1] * m[4]) * s, 0};
+        // The inverse translation is the inverse linear part applied to the negated translation
+        for (int row = 0; row < 3; row++) {
+            inverse[row * 4 + 3] = -(inverse[row * 4] * m[3] + inverse[row * 4 + 1] * m[7] + inverse[row * 4 + 2] * m[11]);
+        }
+        return inverse;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + matrix[0] + ", " + matrix[1] + ", " + matrix[2] + ", " + matrix[3] + "; "
+                + matrix[4] + ", " + matrix[5] + ", " + matrix[6] + ", " + matrix[7] + "; "
+                + matrix[8] + ", " + matrix[9] + ", " + matrix[10] + ", " + matrix[11] + "]";
+    }
+}
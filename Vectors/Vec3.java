@@ -0,0 +1,188 @@
+package Vectors;
+
+import java.util.List;
+
+/**
+ * A fixed-size 3-dimensional vector backed by primitive fields.
+ * Unlike {@link Vector}, every operation either mutates this vector in place or
+ * writes into a caller supplied output vector, so the rendering hot paths can
+ * reuse scratch instances instead of allocating per pixel.
+ * All mutating methods return the receiver to allow chaining.
+ */
+public final class Vec3 {
+    public double x;
+    public double y;
+    public double z;
+
+    public Vec3() {
+    }
+
+    public Vec3(double x, double y, double z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    public Vec3(Vec3 other) {
+        this(other.x, other.y, other.z);
+    }
+
+    /**
+     * Creates a Vec3 from the first three components of a general vector.
+     * @param vector The vector to convert.
+     * @return A new Vec3 holding the same components.
+     * @throws IllegalArgumentException if the vector is not 3-dimensional.
+     */
+    public static Vec3 of(Vector vector) {
+        if (vector.getLength() != 3) {
+            throw new IllegalArgumentException("Vec3 can only be created from a 3-dimensional vector.");
+        }
+        return new Vec3(vector.getDirection().get(0), vector.getDirection().get(1), vector.getDirection().get(2));
+    }
+
+    /**
+     * Converts this vector into the general purpose list backed representation.
+     * @return A new Vector with the same components.
+     */
+    public Vector toVector() {
+        return new Vector(List.of(x, y, z));
+    }
+
+    public Vec3 set(double x, double y, double z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    public Vec3 set(Vec3 other) {
+        return set(other.x, other.y, other.z);
+    }
+
+    public Vec3 add(Vec3 other) {
+        x += other.x;
+        y += other.y;
+        z += other.z;
+        return this;
+    }
+
+    public Vec3 subtract(Vec3 other) {
+        x -= other.x;
+        y -= other.y;
+        z -= other.z;
+        return this;
+    }
+
+    public Vec3 scale(double scalar) {
+        x *= scalar;
+        y *= scalar;
+        z *= scalar;
+        return this;
+    }
+
+    /**
+     * Adds a scaled vector to this one, i.e. {@code this += other * scalar}.
+     * @param other The vector to add.
+     * @param scalar The factor applied to {@code other}.
+     * @return This vector.
+     */
+    public Vec3 addScaled(Vec3 other, double scalar) {
+        x += other.x * scalar;
+        y += other.y * scalar;
+        z += other.z * scalar;
+        return this;
+    }
+
+    public double dot(Vec3 other) {
+        return x * other.x + y * other.y + z * other.z;
+    }
+
+    public double lengthSquared() {
+        return x * x + y * y + z * z;
+    }
+
+    public double length() {
+        return Math.sqrt(lengthSquared());
+    }
+
+    /**
+     * Normalizes this vector in place. A zero vector is left unchanged.
+     * @return This vector.
+     */
+    public Vec3 normalize() {
+        double lengthSquared = lengthSquared();
+        if (lengthSquared > 0) {
+            scale(1.0 / Math.sqrt(lengthSquared));
+        }
+        return this;
+    }
+
+    /**
+     * Writes {@code a + b} into {@code out}. {@code out} may alias either input.
+     */
+    public static Vec3 add(Vec3 a, Vec3 b, Vec3 out) {
+        return out.set(a.x + b.x, a.y + b.y, a.z + b.z);
+    }
+
+    /**
+     * Writes {@code a - b} into {@code out}. {@code out} may alias either input.
+     */
+    public static Vec3 subtract(Vec3 a, Vec3 b, Vec3 out) {
+        return out.set(a.x - b.x, a.y - b.y, a.z - b.z);
+    }
+
+    /**
+     * Writes {@code a * scalar} into {@code out}. {@code out} may alias {@code a}.
+     */
+    public static Vec3 scale(Vec3 a, double scalar, Vec3 out) {
+        return out.set(a.x * scalar, a.y * scalar, a.z * scalar);
+    }
+
+    /**
+     * Writes {@code origin + direction * t} into {@code out}. {@code out} may alias either input.
+     */
+    public static Vec3 pointAt(Vec3 origin, Vec3 direction, double t, Vec3 out) {
+        return out.set(origin.x + direction.x * t, origin.y + direction.y * t, origin.z + direction.z * t);
+    }
+
+    /**
+     * Writes the cross product {@code a x b} into {@code out}. {@code out} may alias either input.
+     */
+    public static Vec3 cross(Vec3 a, Vec3 b, Vec3 out) {
+        return out.set(a.y * b.z - a.z * b.y, a.z * b.x - a.x * b.z, a.x * b.y - a.y * b.x);
+    }
+
+    /**
+     * Reflects {@code direction} around the unit {@code normal} and writes the result into {@code out}.
+     * {@code out} may alias either input.
+     */
+    public static Vec3 reflect(Vec3 direction, Vec3 normal, Vec3 out) {
+        double scaledDot = 2 * direction.dot(normal);
+        return out.set(direction.x - normal.x * scaledDot, direction.y - normal.y * scaledDot, direction.z - normal.z * scaledDot);
+    }
+
+    /**
+     * Refracts a unit {@code direction} through a surface with Snell's law and writes the result into {@code out}.
+     * {@code out} may alias either input.
+     * @param direction The unit direction of the incoming ray.
+     * @param normal The unit surface normal on the side the ray comes from, i.e. {@code direction . normal <= 0}.
+     * @param eta The ratio of the index of refraction on the incoming side to the one on the far side.
+     * @param out Receives the unit refracted direction.
+     * @return False under total internal reflection, in which case {@code out} is unchanged.
+     */
+    public static boolean refract(Vec3 direction, Vec3 normal, double eta, Vec3 out) {
+        double cosIncident = -direction.dot(normal);
+        double k = 1 - eta * eta * (1 - cosIncident * cosIncident);
+        if (k < 0) {
+            return false;
+        }
+        double normalScale = eta * cosIncident - Math.sqrt(k);
+        out.set(direction.x * eta + normal.x * normalScale, direction.y * eta + normal.y * normalScale, direction.z * eta + normal.z * normalScale);
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + x + ", " + y + ", " + z + "]";
+    }
+}
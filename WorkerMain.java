@@ -0,0 +1,56 @@
+import Distributed.RenderWorker;
+import java.io.IOException;
+
+/**
+ * Runs a render worker that connects to a coordinator started with {@code HeadlessMain --listen}.
+ * Usage: {@code java -cp target/classes WorkerMain --connect host:port [--threads N]}
+ */
+public class WorkerMain {
+    private static final String USAGE = "Usage: WorkerMain --connect HOST:PORT [--threads COUNT]";
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+
+        String host = null;
+        int port = 0;
+        Integer threads = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + option);
+                }
+                String value = args[++i];
+                switch (option) {
+                    case "--connect":
+                        int separator = value.lastIndexOf(':');
+                        if (separator < 0) {
+                            throw new IllegalArgumentException("Address must look like localhost:7070: " + value);
+                        }
+                        host = value.substring(0, separator);
+                        port = Integer.parseInt(value.substring(separator + 1));
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + option);
+                }
+            }
+            if (host == null) {
+                throw new IllegalArgumentException("A coordinator address is required.");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        RenderWorker worker = new RenderWorker(host, port);
+        if (threads != null) {
+            worker.setParallelism(threads);
+        }
+        worker.run();
+    }
+}
@@ -0,0 +1,71 @@
+package Benchmarks;
+
+import Engine.Camera;
+import Engine.Ray;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Primary ray generation, allocating a new ray per call versus reusing one, and a 32x32 tile of
+ * rays generated one at a time versus in one batch into primitive arrays.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CameraBenchmark {
+    private static final int TILE = 32;
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+
+    private final Camera camera = Scenes.camera();
+    private final Ray ray = new Ray();
+    private double u = 0.25;
+    private double v = 0.75;
+    private final double[] directionX = new double[TILE * TILE];
+    private final double[] directionY = new double[TILE * TILE];
+    private final double[] directionZ = new double[TILE * TILE];
+
+    @Benchmark
+    public Ray getRayAllocating() {
+        return camera.getRay(u, v);
+    }
+
+    @Benchmark
+    public Ray getRayInPlace() {
+        return camera.getRay(u, v, ray);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TILE * TILE)
+    public double[] tilePerRay() {
+        int index = 0;
+        for (int y = 0; y < TILE; y++) {
+            for (int x = 0; x < TILE; x++, index++) {
+                camera.getRay((x + 0.5) / WIDTH, (y + 0.5) / HEIGHT, ray);
+                directionX[index] = ray.getDirection().x;
+                directionY[index] = ray.getDirection().y;
+                directionZ[index] = ray.getDirection().z;
+            }
+        }
+        return directionX;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TILE * TILE)
+    public double[] tileBatch() {
+        camera.getRays(0, 0, TILE, TILE, WIDTH, HEIGHT, 0.5, 0.5, directionX, directionY, directionZ, 0);
+        return directionX;
+    }
+}
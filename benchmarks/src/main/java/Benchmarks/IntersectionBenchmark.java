@@ -0,0 +1,54 @@
+package Benchmarks;
+
+import Engine.Ray;
+import Materials.Material;
+import Objects.Shapes.Plane;
+import Objects.Shapes.Sphere;
+import Vectors.Vec3;
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single primitive intersection tests, for both a hitting and a missing ray.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntersectionBenchmark {
+    private final Sphere sphere = new Sphere(new Vec3(0.0, 0.0, -3.0), 1.0, new Material(Color.green));
+    private final Plane plane = new Plane(new Vec3(0.0, 1.0, 0.0), new Vec3(0.0, -1.0, 0.0), Color.gray);
+    private final Ray hitRay = new Ray(new Vec3(0.0, 0.0, 0.0), new Vec3(0.1, -0.2, -1.0));
+    private final Ray missRay = new Ray(new Vec3(0.0, 0.0, 0.0), new Vec3(2.0, 1.0, -1.0));
+
+    @Benchmark
+    public double sphereHit() {
+        return sphere.intersect(hitRay.getOrigin(), hitRay.getDirection());
+    }
+
+    @Benchmark
+    public double sphereMiss() {
+        return sphere.intersect(missRay.getOrigin(), missRay.getDirection());
+    }
+
+    @Benchmark
+    public double planeHit() {
+        return plane.intersect(hitRay);
+    }
+
+    @Benchmark
+    public double planeMiss() {
+        return plane.intersect(missRay);
+    }
+}
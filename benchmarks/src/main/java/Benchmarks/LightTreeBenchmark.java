@@ -0,0 +1,75 @@
+package Benchmarks;
+
+import Objects.lights.Light;
+import Objects.lights.LightTree;
+import Vectors.Vec3;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Picking one light per shading point from a {@link LightTree} over lights scattered above a
+ * ground plane. The cost should grow with the logarithm of the light count. Scores are picks
+ * per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LightTreeBenchmark {
+    private static final int POINT_COUNT = 1024;
+
+    @Param({"16", "1024", "65536"})
+    public int lights;
+
+    private LightTree tree;
+    private Vec3[] points;
+    private double[] randoms;
+    private final Vec3 normal = new Vec3(0, 1, 0);
+    private final LightTree.Sample sample = new LightTree.Sample();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(7);
+        List<Light> scattered = new ArrayList<>(lights);
+        for (int i = 0; i < lights; i++) {
+            Vec3 position = new Vec3(random.nextDouble() * 100 - 50, random.nextDouble() * 5, random.nextDouble() * -100);
+            scattered.add(new Light(position, 1 + random.nextDouble()));
+        }
+        tree = new LightTree(scattered);
+
+        points = new Vec3[POINT_COUNT];
+        randoms = new double[POINT_COUNT];
+        for (int i = 0; i < POINT_COUNT; i++) {
+            points[i] = new Vec3(random.nextDouble() * 100 - 50, -1, random.nextDouble() * -100);
+            randoms[i] = random.nextDouble();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINT_COUNT)
+    public int sample() {
+        int sum = 0;
+        for (int i = 0; i < POINT_COUNT; i++) {
+            if (tree.sample(points[i], normal, randoms[i], sample)) {
+                sum += sample.light;
+            }
+        }
+        return sum;
+    }
+}
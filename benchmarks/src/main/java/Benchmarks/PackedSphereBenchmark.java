@@ -0,0 +1,97 @@
+package Benchmarks;
+
+import Acceleration.Hit;
+import Engine.Camera;
+import Engine.Ray;
+import Materials.Material;
+import Objects.Shapes.PackedSpheres;
+import Objects.Shapes.Sphere;
+import Vectors.Vec3;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Closest-hit queries against packed spheres, brute force and through the BVH, with the
+ * SIMD kernel switched on and off. Each parameter combination runs in its own fork, so the
+ * kernel choice made on first use follows the {@code simd} parameter. Scores are rays per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class PackedSphereBenchmark {
+    private static final int RAY_COUNT = 1024;
+
+    @Param({"true", "false"})
+    public boolean simd;
+
+    @Param({"64", "1024"})
+    public int sphereCount;
+
+    private PackedSpheres bruteForce;
+    private PackedSpheres accelerated;
+    private Ray[] rays;
+    private final Hit hit = new Hit();
+
+    @Setup
+    public void setUp() {
+        System.setProperty("rtengine.simd", Boolean.toString(simd));
+        Random random = new Random(7);
+        Material material = new Material(Color.green);
+        List<Sphere> spheres = new ArrayList<>();
+        for (int i = 0; i < sphereCount; i++) {
+            Vec3 center = new Vec3(random.nextDouble() * 8 - 4, random.nextDouble() * 6 - 3, -2 - random.nextDouble() * 6);
+            spheres.add(new Sphere(center, 0.2, material));
+        }
+        bruteForce = PackedSpheres.of(spheres);
+        accelerated = PackedSpheres.of(spheres);
+        accelerated.buildAccelerator();
+
+        Camera camera = Scenes.camera();
+        rays = new Ray[RAY_COUNT];
+        for (int i = 0; i < RAY_COUNT; i++) {
+            rays[i] = camera.getRay(random.nextDouble(), random.nextDouble());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAY_COUNT)
+    public int bruteForce() {
+        int hits = 0;
+        for (Ray ray : rays) {
+            if (bruteForce.intersect(ray.getOrigin(), ray.getDirection(), hit.reset())) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAY_COUNT)
+    public int bvh() {
+        int hits = 0;
+        for (Ray ray : rays) {
+            if (accelerated.intersect(ray.getOrigin(), ray.getDirection(), hit.reset())) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,82 @@
+package Benchmarks;
+
+import Materials.Material;
+import Objects.Shapes.PackedSpheres;
+import java.awt.Color;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Updating the hierarchy over packed spheres after every sphere has moved a little, as between two
+ * frames of an animation: refitting the existing hierarchy against rebuilding it. Scores are
+ * milliseconds per update.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RefitBenchmark {
+    @Param({"4096", "262144"})
+    public int spheres;
+
+    private PackedSpheres packed;
+    private double[] offsets;
+    private int frame;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(11);
+        double extent = Math.cbrt(spheres) * 2;
+        double[] centerX = new double[spheres];
+        double[] centerY = new double[spheres];
+        double[] centerZ = new double[spheres];
+        double[] radius = new double[spheres];
+        offsets = new double[spheres];
+        for (int i = 0; i < spheres; i++) {
+            centerX[i] = random.nextDouble() * extent;
+            centerY[i] = random.nextDouble() * extent;
+            centerZ[i] = random.nextDouble() * extent;
+            radius[i] = 0.2 + random.nextDouble() * 0.3;
+            offsets[i] = random.nextDouble() * 2 * Math.PI;
+        }
+        packed = new PackedSpheres(centerX, centerY, centerZ, radius, new int[spheres], new Material[] {new Material(Color.red)});
+        packed.buildAccelerator();
+    }
+
+    /**
+     * Moves every sphere a short step along its own circle.
+     */
+    private void move() {
+        frame++;
+        for (int i = 0; i < spheres; i++) {
+            double angle = offsets[packed.getSourceIndex(i)] + frame * 0.05;
+            packed.setSphere(i, packed.getCenterX(i) + 0.05 * Math.cos(angle), packed.getCenterY(i),
+                    packed.getCenterZ(i) + 0.05 * Math.sin(angle), packed.getRadius(i));
+        }
+    }
+
+    @Benchmark
+    public Object refit() {
+        move();
+        return packed.updateAccelerator();
+    }
+
+    @Benchmark
+    public Object rebuild() {
+        move();
+        return packed.buildAccelerator();
+    }
+}
@@ -0,0 +1,74 @@
+package Benchmarks;
+
+import Engine.Renderer;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Full frame rendering at several resolutions. The primary score is frames per second;
+ * the {@code primaryRays} secondary score reports primary rays per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class RenderBenchmark {
+    @Param({"320x240", "1280x720", "1920x1080"})
+    public String resolution;
+
+    @Param({"100"})
+    public int sphereCount;
+
+    private Renderer renderer;
+    private BufferedImage image;
+
+    /**
+     * Counts primary rays so JMH reports them as a rate next to the frame rate.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class RayCounter {
+        public long primaryRays;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            primaryRays = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        String[] size = resolution.split("x");
+        image = new BufferedImage(Integer.parseInt(size[0]), Integer.parseInt(size[1]), BufferedImage.TYPE_INT_RGB);
+        renderer = new Renderer(Scenes.randomSpheres(sphereCount));
+    }
+
+    @Benchmark
+    public BufferedImage renderSingleThreaded(RayCounter counter) {
+        renderer.render(image);
+        counter.primaryRays += (long) image.getWidth() * image.getHeight();
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage renderTiled(RayCounter counter) {
+        renderer.renderTiled(image);
+        counter.primaryRays += (long) image.getWidth() * image.getHeight();
+        return image;
+    }
+}
@@ -0,0 +1,59 @@
+package Benchmarks;
+
+import Engine.Renderer;
+import Engine.Scene;
+import Objects.lights.Light;
+import Vectors.Vec3;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A light-tuning loop: the light moves before every frame while camera and geometry stay put,
+ * rendered with and without the first-hit cache. Scores are frames per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class ReshadeBenchmark {
+    @Param({"true", "false"})
+    public boolean firstHitCaching;
+
+    @Param({"1000", "100000"})
+    public int sphereCount;
+
+    private Scene scene;
+    private Renderer renderer;
+    private BufferedImage image;
+    private int frame;
+
+    @Setup
+    public void setUp() {
+        image = new BufferedImage(1280, 720, BufferedImage.TYPE_INT_RGB);
+        scene = Scenes.randomSpheres(sphereCount);
+        renderer = new Renderer(scene);
+        renderer.setFirstHitCaching(firstHitCaching);
+        renderer.renderTiled(image);
+    }
+
+    @Benchmark
+    public BufferedImage moveLight() {
+        double angle = 0.1 * frame++;
+        scene.setLight(new Light(new Vec3(-3.0 + Math.cos(angle), -1.0, -2.0 + Math.sin(angle)), 8.0));
+        renderer.renderTiled(image);
+        return image;
+    }
+}
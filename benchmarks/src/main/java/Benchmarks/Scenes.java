@@ -0,0 +1,55 @@
+package Benchmarks;
+
+import Engine.Camera;
+import Engine.Scene;
+import Materials.Material;
+import Objects.Shapes.Plane;
+import Objects.Shapes.Sphere;
+import Objects.lights.Light;
+import Vectors.Vec3;
+import java.awt.Color;
+import java.util.Random;
+
+/**
+ * Deterministic scenes shared by the benchmarks.
+ */
+final class Scenes {
+    private Scenes() {
+    }
+
+    static Camera camera() {
+        return new Camera(
+                new Vec3(0.0, 0.0, 0.0),
+                // The same view as DemoScene: image row 0 is its top, so the plane starts at the top left corner
+                new Vec3(-2.0, 1.5, -1.0),
+                new Vec3(4.0, 0.0, 0.0),
+                new Vec3(0.0, -3.0, 0.0)
+        );
+    }
+
+    /**
+     * Builds a scene with the given number of spheres scattered in front of the camera.
+     * The sphere radius shrinks with the count so the projected coverage stays similar.
+     * @param sphereCount The number of spheres.
+     * @return The scene, with its acceleration structure already built.
+     */
+    static Scene randomSpheres(int sphereCount) {
+        Light light = new Light(new Vec3(-3.0, -1.0, -2.0), 8.0);
+        Plane groundPlane = new Plane(new Vec3(0.0, 1.0, 0.0), new Vec3(0.0, -1.0, 0.0), Color.gray);
+        Scene scene = new Scene(camera(), light, groundPlane);
+
+        Random random = new Random(42);
+        Material[] materials = {
+                new Material(Color.green),
+                new Material(Color.red, 64, 0.8, 0.3, 0.0),
+                new Material(Color.blue, 16, 0.2, 0.0, 0.0)
+        };
+        double radius = Math.max(0.01, 1.5 / Math.cbrt(sphereCount));
+        for (int i = 0; i < sphereCount; i++) {
+            Vec3 center = new Vec3(random.nextDouble() * 8 - 4, random.nextDouble() * 6 - 3, -2 - random.nextDouble() * 6);
+            scene.addObject(new Sphere(center, radius, materials[i % materials.length]));
+        }
+        scene.getAccelerator();
+        return scene;
+    }
+}
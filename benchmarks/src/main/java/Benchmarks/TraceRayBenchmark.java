@@ -0,0 +1,63 @@
+package Benchmarks;
+
+import Colors.LinearColor;
+import Engine.Camera;
+import Engine.Ray;
+import Engine.Renderer;
+import Engine.Scene;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Traces a fixed 64x64 grid of primary rays against scenes of increasing size.
+ * Each invocation traces every ray in the grid, so the reported score is rays per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class TraceRayBenchmark {
+    private static final int GRID = 64;
+
+    @Param({"1", "100", "10000", "100000"})
+    public int sphereCount;
+
+    private Renderer renderer;
+    private Ray[] rays;
+    private final LinearColor color = new LinearColor();
+
+    @Setup
+    public void setUp() {
+        Scene scene = Scenes.randomSpheres(sphereCount);
+        renderer = new Renderer(scene);
+        Camera camera = scene.getCamera();
+        rays = new Ray[GRID * GRID];
+        for (int y = 0; y < GRID; y++) {
+            for (int x = 0; x < GRID; x++) {
+                rays[y * GRID + x] = camera.getRay((x + 0.5) / GRID, (y + 0.5) / GRID);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GRID * GRID)
+    public void traceRay(Blackhole blackhole) {
+        for (Ray ray : rays) {
+            blackhole.consume(renderer.traceRay(ray, 0, color).r);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package Benchmarks;
+
+import Acceleration.Hit;
+import Engine.Camera;
+import Engine.Ray;
+import Materials.Material;
+import Objects.Shapes.TriangleMesh;
+import java.awt.Color;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Closest-hit queries against an indexed triangle mesh, a tessellated sphere in front of the
+ * camera, through its BVH. Scores are rays per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TriangleMeshBenchmark {
+    private static final int RAY_COUNT = 1024;
+
+    @Param({"64", "1024"})
+    public int rings;
+
+    private TriangleMesh mesh;
+    private Ray[] rays;
+    private final Hit hit = new Hit();
+
+    @Setup
+    public void setUp() {
+        // A sphere of radius 2 at (0, 0, -5) with 2 * rings segments around its axis
+        int columns = 2 * rings + 1;
+        float[] positions = new float[(rings + 1) * columns * 3];
+        for (int i = 0; i <= rings; i++) {
+            for (int j = 0; j < columns; j++) {
+                double theta = Math.PI * i / rings;
+                double phi = Math.PI * j / rings;
+                int vertex = (i * columns + j) * 3;
+                positions[vertex] = (float) (2 * Math.sin(theta) * Math.cos(phi));
+                positions[vertex + 1] = (float) (2 * Math.cos(theta));
+                positions[vertex + 2] = (float) (2 * Math.sin(theta) * Math.sin(phi) - 5);
+            }
+        }
+        int[] indices = new int[rings * (columns - 1) * 6];
+        int index = 0;
+        for (int i = 0; i < rings; i++) {
+            for (int j = 0; j < columns - 1; j++) {
+                int a = i * columns + j;
+                int b = a + columns;
+                indices[index++] = a;
+                indices[index++] = a + 1;
+                indices[index++] = b + 1;
+                indices[index++] = a;
+                indices[index++] = b + 1;
+                indices[index++] = b;
+            }
+        }
+        mesh = new TriangleMesh(positions, indices, new Material(Color.green));
+        mesh.buildAccelerator();
+
+        Random random = new Random(7);
+        Camera camera = Scenes.camera();
+        rays = new Ray[RAY_COUNT];
+        for (int i = 0; i < RAY_COUNT; i++) {
+            rays[i] = camera.getRay(random.nextDouble(), random.nextDouble());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAY_COUNT)
+    public int bvh() {
+        int hits = 0;
+        for (Ray ray : rays) {
+            if (mesh.intersect(ray.getOrigin(), ray.getDirection(), hit.reset())) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,83 @@
+package Benchmarks;
+
+import Vectors.Vec3;
+import Vectors.Vector;
+import Vectors.VectorCalculations;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the list backed {@link Vector} operations with their primitive {@link Vec3} counterparts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VectorBenchmark {
+    private final Vector vector1 = new Vector(List.of(1.0, 2.0, 3.0));
+    private final Vector vector2 = new Vector(List.of(-4.0, 0.5, 2.5));
+    private final Vec3 vec1 = new Vec3(1.0, 2.0, 3.0);
+    private final Vec3 vec2 = new Vec3(-4.0, 0.5, 2.5);
+    private final Vec3 out = new Vec3();
+
+    @Benchmark
+    public Vector vectorAdd() {
+        return VectorCalculations.addVectors(vector1, vector2);
+    }
+
+    @Benchmark
+    public Vec3 vec3Add() {
+        return Vec3.add(vec1, vec2, out);
+    }
+
+    @Benchmark
+    public Vector vectorSubtract() {
+        return VectorCalculations.subtractVectors(vector1, vector2);
+    }
+
+    @Benchmark
+    public Vec3 vec3Subtract() {
+        return Vec3.subtract(vec1, vec2, out);
+    }
+
+    @Benchmark
+    public Vector vectorScale() {
+        return VectorCalculations.multiplyVectorByScalar(vector1, 1.5);
+    }
+
+    @Benchmark
+    public Vec3 vec3Scale() {
+        return Vec3.scale(vec1, 1.5, out);
+    }
+
+    @Benchmark
+    public double vectorDot() {
+        return VectorCalculations.calculateDotProduct(vector1, vector2);
+    }
+
+    @Benchmark
+    public double vec3Dot() {
+        return vec1.dot(vec2);
+    }
+
+    @Benchmark
+    public Vector vectorCross() {
+        return VectorCalculations.calculateCrossProduct(vector1, vector2);
+    }
+
+    @Benchmark
+    public Vec3 vec3Cross() {
+        return Vec3.cross(vec1, vec2, out);
+    }
+}